@@ -1,11 +1,18 @@
 package com.tuberlin.dbpro.controllers;
 
 import com.tuberlin.dbpro.models.frontend.*;
+import com.tuberlin.dbpro.services.BandStorageService;
+import com.tuberlin.dbpro.services.BatchQueryService;
 import com.tuberlin.dbpro.services.FrontendService;
 import com.tuberlin.dbpro.services.LabelService;
+import com.tuberlin.dbpro.services.QueryExecutionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import reactor.core.publisher.Flux;
 import java.util.List;
 
 /**
@@ -29,6 +36,24 @@ public class ApiController {
     @Autowired
     LabelService labelService;
 
+    /**
+     * Service instance running queries on the bounded query executor with timeouts.
+     */
+    @Autowired
+    QueryExecutionService queryExecutionService;
+
+    /**
+     * Service instance executing batches of query requests.
+     */
+    @Autowired
+    BatchQueryService batchQueryService;
+
+    /**
+     * Service instance for reading single band images.
+     */
+    @Autowired
+    BandStorageService bandStorageService;
+
     /**
      * Supported query types related to labels:
      * contains ALL (and maybe more), contains ONLY, contains SOME (maybe even only one)
@@ -61,46 +86,234 @@ public class ApiController {
     /**
      * POST REST interface consuming JSON requests from frontend for analogue queries.
      * @param inputRequest Input request from frontend including requested coordinates or labels
-     * @return Output response object containing image patch names
+     * @return Deferred output response object containing image patch names
      */
     @PostMapping(path = "/query-analogue", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
-    public OutputResponse getImagePatchNamesAnalogue(@RequestBody InputRequest inputRequest) {
+    public DeferredResult<OutputResponse> getImagePatchNamesAnalogue(@RequestBody InputRequest inputRequest) {
         System.out.println("QUERY TYPE: " + inputRequest.getQueryType() +
                 ", GEOSPATIAL OPERATOR: " + inputRequest.getGeospatialQueryOperator());
         double time = System.currentTimeMillis();
 
         if(frontendService.isValidAnalogueInputRequest(inputRequest) && this.isQueryTypeSupported(inputRequest)
                 && this.isGeospatialOperatorSupported(inputRequest)) {
-            OutputResponse response = this.frontendService.getOutputResponse(inputRequest);
-            System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
-            System.out.println("--------------------------------------------------------------------------------");
+            return this.queryExecutionService.submit(() -> {
+                OutputResponse response = this.frontendService.getOutputResponse(inputRequest);
+                System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
+                System.out.println("--------------------------------------------------------------------------------");
 
-            return response;
+                return response;
+            });
         }
 
-        return new OutputResponse();
+        return completed(new OutputResponse());
     }
 
     /**
-     * POST REST interface consuming JSON requests from frontend for visual queries.
+     * POST REST interface consuming JSON requests from frontend for visual queries. If the request carries the map
+     * zoom level (and optionally a cluster radius in pixels), crowded grid cells are returned as "cluster:" lines.
      * @param inputRequest Input request from frontend including requested coordinates or labels
-     * @return Output response object containing image patch names
+     * @return Deferred output response object containing image patch names (or clusters)
      */
     @PostMapping(path = "/query-visual", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
-    public OutputResponse getImagePatchNamesVisual(@RequestBody InputRequest inputRequest) {
+    public DeferredResult<OutputResponse> getImagePatchNamesVisual(@RequestBody InputRequest inputRequest) {
         System.out.println("QUERY TYPE: " + inputRequest.getQueryType() +
                 ", GEOSPATIAL OPERATOR: " + inputRequest.getGeospatialQueryOperator());
         double time = System.currentTimeMillis();
 
         if(this.isQueryTypeSupported(inputRequest) && this.isGeospatialOperatorSupported(inputRequest)) {
-            OutputResponse response = this.frontendService.getOutputResponse(inputRequest);
-            System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
-            System.out.println("--------------------------------------------------------------------------------");
+            return this.queryExecutionService.submit(() -> {
+                OutputResponse response = this.frontendService.getOutputResponse(inputRequest);
+                System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
+                System.out.println("--------------------------------------------------------------------------------");
+
+                return response;
+            });
+        }
+
+        return completed(new OutputResponse());
+    }
+
+    /**
+     * POST REST interface consuming JSON requests for a single page of query results: at most limit image
+     * patches ordered by name, starting after the patch name passed as pageAfter. The response carries the
+     * pageAfter token of the next page (nextPageAfter), which is null on the last page.
+     * @param inputRequest Input request including requested coordinates or labels, pageAfter and limit
+     * @return Deferred output response object containing image patch names and the next page token
+     */
+    @PostMapping(path = "/query-page", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
+    public DeferredResult<OutputResponse> getImagePatchNamesPage(@RequestBody InputRequest inputRequest) {
+        System.out.println("QUERY TYPE: " + inputRequest.getQueryType() +
+                ", GEOSPATIAL OPERATOR: " + inputRequest.getGeospatialQueryOperator() +
+                ", PAGE AFTER: " + inputRequest.getPageAfter() + ", LIMIT: " + inputRequest.getLimit());
+        double time = System.currentTimeMillis();
+
+        if(frontendService.isValidAnalogueInputRequest(inputRequest) && this.isQueryTypeSupported(inputRequest)
+                && this.isGeospatialOperatorSupported(inputRequest)) {
+            return this.queryExecutionService.submit(() -> {
+                OutputResponse response = this.frontendService.getOutputResponsePage(inputRequest);
+                System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
+                System.out.println("--------------------------------------------------------------------------------");
+
+                return response;
+            });
+        }
+
+        return completed(new OutputResponse());
+    }
+
+    /**
+     * POST REST interface consuming the same JSON requests as the analogue queries, streaming the matching image
+     * patches as newline-delimited JSON (one patch per line) while the database cursor yields them. The request
+     * thread is released during the query, so many long-running queries share a small number of threads.
+     * @param inputRequest Input request including requested coordinates or labels
+     * @return Stream of matching image patches
+     */
+    @PostMapping(path = "/query-stream", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<PatchResponse> getImagePatchStream(@RequestBody InputRequest inputRequest) {
+        System.out.println("QUERY TYPE: " + inputRequest.getQueryType() +
+                ", GEOSPATIAL OPERATOR: " + inputRequest.getGeospatialQueryOperator() + ", STREAMED");
+        long time = System.currentTimeMillis();
+
+        if(frontendService.isValidAnalogueInputRequest(inputRequest) && this.isQueryTypeSupported(inputRequest)
+                && this.isGeospatialOperatorSupported(inputRequest)) {
+            return this.frontendService.getPatchStream(inputRequest)
+                    .doOnComplete(() -> System.out.println("Streamed response time in ms: " +
+                            (System.currentTimeMillis() - time)));
+        }
+
+        return Flux.empty();
+    }
+
+    /**
+     * POST REST interface consuming a JSON array of analogue query requests (e.g. one per grid cell of a tiling
+     * job), streaming one batch response per request as newline-delimited JSON in request order. Identical
+     * requests are executed once; an invalid or failing request yields an error line instead of aborting the batch.
+     * @param inputRequests Input requests including requested coordinates or labels
+     * @return Stream of batch responses in request order
+     */
+    @PostMapping(path = "/query-batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<BatchResponse> getImagePatchNamesBatch(@RequestBody List<InputRequest> inputRequests) {
+        System.out.println("BATCH OF " + inputRequests.size() + " QUERIES");
+        long time = System.currentTimeMillis();
 
-            return response;
+        return this.batchQueryService.execute(inputRequests, inputRequest ->
+                frontendService.isValidAnalogueInputRequest(inputRequest) && this.isQueryTypeSupported(inputRequest)
+                        && this.isGeospatialOperatorSupported(inputRequest))
+                .doOnComplete(() -> System.out.println("Batch response time in ms: " +
+                        (System.currentTimeMillis() - time)));
+    }
+
+    /**
+     * POST REST interface consuming the viewport of a map (rectangle as geometry) and optional labels, returning
+     * the label histograms of the grid cells covering the viewport from the materialized label grid - one indexed
+     * read regardless of the number of image patches in the viewport.
+     * @param inputRequest Input request including the viewport rectangle and requested labels
+     * @return Overview response object containing the grid cells with their label counts
+     */
+    @PostMapping(path = "/overview", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
+    public OverviewResponse getOverview(@RequestBody InputRequest inputRequest) {
+        double time = System.currentTimeMillis();
+        OverviewResponse response = this.frontendService.getOverviewResponse(inputRequest);
+        System.out.println("Overview response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
+        return response;
+    }
+
+    /**
+     * POST REST interface consuming the same JSON requests as the analogue queries, returning only the number of
+     * matching image patches.
+     * @param inputRequest Input request including requested coordinates or labels
+     * @return Deferred summary response object containing the number of matching image patches
+     */
+    @PostMapping(path = "/query-count", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
+    public DeferredResult<SummaryResponse> getImagePatchCount(@RequestBody InputRequest inputRequest) {
+        return this.getSummaryResponse(inputRequest, false);
+    }
+
+    /**
+     * POST REST interface consuming the same JSON requests as the analogue queries, returning only the number of
+     * matching image patches and the number of matching image patches per label.
+     * @param inputRequest Input request including requested coordinates or labels
+     * @return Deferred summary response object containing the total and the per-label counts
+     */
+    @PostMapping(path = "/query-summary", consumes = MediaType.APPLICATION_JSON_VALUE, produces = "application/json")
+    public DeferredResult<SummaryResponse> getImagePatchSummary(@RequestBody InputRequest inputRequest) {
+        return this.getSummaryResponse(inputRequest, true);
+    }
+
+    /**
+     * Validates a count or summary request and returns its summary response.
+     * @param inputRequest Input request including requested coordinates or labels
+     * @param withLabels whether the per-label counts are requested
+     * @return Deferred summary response object (empty for invalid requests)
+     */
+    private DeferredResult<SummaryResponse> getSummaryResponse(InputRequest inputRequest, boolean withLabels) {
+        System.out.println("QUERY TYPE: " + inputRequest.getQueryType() +
+                ", GEOSPATIAL OPERATOR: " + inputRequest.getGeospatialQueryOperator() +
+                (withLabels ? ", SUMMARY ONLY" : ", COUNT ONLY"));
+        double time = System.currentTimeMillis();
+
+        if(frontendService.isValidAnalogueInputRequest(inputRequest) && this.isQueryTypeSupported(inputRequest)
+                && this.isGeospatialOperatorSupported(inputRequest)) {
+            return this.queryExecutionService.submit(() -> {
+                SummaryResponse response = this.frontendService.getSummaryResponse(inputRequest, withLabels);
+                System.out.println("Response time in ms: " + String.valueOf((System.currentTimeMillis() - time)));
+                System.out.println("--------------------------------------------------------------------------------");
+
+                return response;
+            });
+        }
+
+        return completed(new SummaryResponse());
+    }
+
+    /**
+     * Returns a deferred result that is already completed (for requests not passed on to the query executor).
+     * @param response response object
+     * @param <T> response type
+     * @return completed deferred result
+     */
+    private static <T> DeferredResult<T> completed(T response) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    /**
+     * GET REST interface streaming a single band image of an image patch, e.g. /patches/{patchName}/bands/B08.
+     * @param patchName name of the image patch
+     * @param band band name
+     * @return band image (TIFF or raw raster) or 404 if the band does not exist
+     */
+    @GetMapping(path = "/patches/{patchName}/bands/{band}")
+    public ResponseEntity<Resource> getBand(@PathVariable String patchName, @PathVariable String band) {
+        return this.toBandResponse(this.bandStorageService.getBand(patchName, band));
+    }
+
+    /**
+     * GET REST interface streaming a single band image by the GridFS file id kept in the patch images document.
+     * @param fileId GridFS file id of the band image
+     * @return band image (TIFF or raw raster) or 404 if the band does not exist
+     */
+    @GetMapping(path = "/bands/{fileId}")
+    public ResponseEntity<Resource> getBandById(@PathVariable String fileId) {
+        return this.toBandResponse(this.bandStorageService.getBandById(fileId));
+    }
+
+    /**
+     * Wraps a band image into a response; the resource is streamed to the client without full buffering.
+     * @param band band image or null
+     * @return band image response or 404
+     */
+    private ResponseEntity<Resource> toBandResponse(Resource band) {
+        if (band == null) {
+            return ResponseEntity.notFound().build();
         }
 
-        return new OutputResponse();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(this.bandStorageService.getContentType(band)))
+                .body(band);
     }
 
     /**
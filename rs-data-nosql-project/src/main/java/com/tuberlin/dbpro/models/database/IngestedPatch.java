@@ -0,0 +1,96 @@
+package com.tuberlin.dbpro.models.database;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+/**
+ * IngestedPatch class / collection persisted in database: manifest entry of an image patch folder whose documents
+ * have been committed, used to skip unchanged folders when resuming or repeating an ingestion.
+ */
+@Document(collection = "ingestion_manifest")
+public class IngestedPatch {
+
+    /**
+     * Name of the image patch (equals the folder name).
+     */
+    @Id
+    private String patchName;
+
+    /**
+     * Latest modification time of the files in the image patch folder (ms since epoch).
+     */
+    private long lastModified;
+
+    /**
+     * Total size of the files in the image patch folder in bytes.
+     */
+    private long size;
+
+    /**
+     * Time the image patch was committed to the database.
+     */
+    private Date ingestedAt;
+
+    /**
+     * Returns name of image patch.
+     * @return name of image patch
+     */
+    public String getPatchName() { return patchName; }
+
+    /**
+     * Sets image patch name.
+     * @param patchName name of image patch
+     */
+    public void setPatchName(String patchName) { this.patchName = patchName; }
+
+    /**
+     * Returns latest modification time of the image patch files.
+     * @return latest modification time in ms since epoch
+     */
+    public long getLastModified() { return lastModified; }
+
+    /**
+     * Sets latest modification time of the image patch files.
+     * @param lastModified latest modification time in ms since epoch
+     */
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+    /**
+     * Returns total size of the image patch files.
+     * @return total size in bytes
+     */
+    public long getSize() { return size; }
+
+    /**
+     * Sets total size of the image patch files.
+     * @param size total size in bytes
+     */
+    public void setSize(long size) { this.size = size; }
+
+    /**
+     * Returns time the image patch was committed.
+     * @return commit time
+     */
+    public Date getIngestedAt() { return ingestedAt; }
+
+    /**
+     * Sets time the image patch was committed.
+     * @param ingestedAt commit time
+     */
+    public void setIngestedAt(Date ingestedAt) { this.ingestedAt = ingestedAt; }
+
+    /**
+     * Returns string representation of the manifest entry.
+     * @return string representation of the manifest entry
+     */
+    @Override
+    public String toString() {
+        return "IngestedPatch{" +
+                "patchName='" + patchName + '\'' +
+                ", lastModified=" + lastModified +
+                ", size=" + size +
+                ", ingestedAt=" + ingestedAt +
+                '}';
+    }
+}
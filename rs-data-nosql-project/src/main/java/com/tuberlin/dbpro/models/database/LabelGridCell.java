@@ -0,0 +1,114 @@
+package com.tuberlin.dbpro.models.database;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LabelGridCell class / collection persisted in database: materialized label histogram of a grid cell, i.e. the
+ * number of image patches (by upper left corner) and the number of image patches per label within a geohash cell.
+ * Cells of all geohash precisions (zoom levels) share the collection and are keyed by their geohash.
+ */
+@Document(collection = "label_grid_cells")
+public class LabelGridCell {
+
+    /**
+     * Geohash of the cell (its length is the zoom level)
+     */
+    @Id
+    private String id;
+
+    /**
+     * Zoom level of the cell (geohash precision)
+     */
+    private int level;
+
+    /**
+     * Number of image patches in the cell
+     */
+    private long total;
+
+    /**
+     * Number of image patches in the cell per character label (as single-character string)
+     */
+    private Map<String, Long> labels = new TreeMap<>();
+
+    /**
+     * Returns geohash of the cell.
+     * @return geohash of the cell
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets geohash of the cell.
+     * @param id geohash of the cell
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns zoom level of the cell.
+     * @return geohash precision of the cell
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets zoom level of the cell.
+     * @param level geohash precision of the cell
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Returns number of image patches in the cell.
+     * @return number of image patches
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Sets number of image patches in the cell.
+     * @param total number of image patches
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Returns number of image patches in the cell per character label.
+     * @return label counts by character label
+     */
+    public Map<String, Long> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets number of image patches in the cell per character label.
+     * @param labels label counts by character label
+     */
+    public void setLabels(Map<String, Long> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns string representation of LabelGridCell object.
+     * @return string representation of LabelGridCell object
+     */
+    @Override
+    public String toString() {
+        return "LabelGridCell{" +
+                "id='" + id + '\'' +
+                ", level=" + level +
+                ", total=" + total +
+                ", labels=" + labels +
+                '}';
+    }
+}
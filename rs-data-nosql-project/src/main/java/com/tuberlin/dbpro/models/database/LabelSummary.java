@@ -0,0 +1,81 @@
+package com.tuberlin.dbpro.models.database;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read model of the label summary of a query result: total number of matching image patches and the number of
+ * matching image patches per character label.
+ */
+public class LabelSummary {
+
+    /**
+     * Total number of matching image patches.
+     */
+    private long total;
+
+    /**
+     * Number of matching image patches per character label, ordered by label.
+     */
+    private Map<Character, Long> labelCounts = new TreeMap<>();
+
+    /**
+     * Creates an empty label summary (needed for mapping).
+     */
+    public LabelSummary() {
+    }
+
+    /**
+     * Creates a label summary.
+     * @param total total number of matching image patches
+     * @param labelCounts number of matching image patches per character label
+     */
+    public LabelSummary(long total, Map<Character, Long> labelCounts) {
+        this.total = total;
+        this.labelCounts = labelCounts;
+    }
+
+    /**
+     * Returns total number of matching image patches.
+     * @return total number of matching image patches
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Sets total number of matching image patches.
+     * @param total total number of matching image patches
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Returns number of matching image patches per character label.
+     * @return number of matching image patches per character label
+     */
+    public Map<Character, Long> getLabelCounts() {
+        return labelCounts;
+    }
+
+    /**
+     * Sets number of matching image patches per character label.
+     * @param labelCounts number of matching image patches per character label
+     */
+    public void setLabelCounts(Map<Character, Long> labelCounts) {
+        this.labelCounts = labelCounts;
+    }
+
+    /**
+     * Returns string representation of the label summary.
+     * @return string representation of the label summary
+     */
+    @Override
+    public String toString() {
+        return "LabelSummary{" +
+                "total=" + total +
+                ", labelCounts=" + labelCounts +
+                '}';
+    }
+}
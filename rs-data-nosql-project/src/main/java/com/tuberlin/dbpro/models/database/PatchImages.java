@@ -3,6 +3,7 @@ package com.tuberlin.dbpro.models.database;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.Arrays;
+import java.util.Map;
 
 /**
  * PatchImages class / collection persisted in database: contains photos of image patch and corresponding id.
@@ -21,6 +22,11 @@ public class PatchImages {
      */
     private Photo[] photos;
 
+    /**
+     * GridFS file ids of the band images by photo title (set instead of photos if bands are stored in GridFS)
+     */
+    private Map<String, String> bandFileIds;
+
     /**
      * Returns name of image patch.
      * @return name of image patch
@@ -45,6 +51,18 @@ public class PatchImages {
      */
     public void setPhotos(Photo[] photos) { this.photos = photos; }
 
+    /**
+     * Returns GridFS file ids of the band images by photo title.
+     * @return GridFS file ids of the band images
+     */
+    public Map<String, String> getBandFileIds() { return bandFileIds; }
+
+    /**
+     * Sets GridFS file ids of the band images.
+     * @param bandFileIds GridFS file ids by photo title
+     */
+    public void setBandFileIds(Map<String, String> bandFileIds) { this.bandFileIds = bandFileIds; }
+
     /**
      * Returns string representation of patch images.
      * @return string representation of patch images
@@ -54,6 +72,7 @@ public class PatchImages {
         return "Images{" +
                 "patchName='" + patchName + '\'' +
                 ", photos=" + Arrays.toString(photos) +
+                ", bandFileIds=" + bandFileIds +
                 '}';
     }
 }
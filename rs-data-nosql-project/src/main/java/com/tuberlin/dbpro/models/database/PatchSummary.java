@@ -0,0 +1,124 @@
+package com.tuberlin.dbpro.models.database;
+
+import java.util.List;
+
+/**
+ * Read model of a single image patch containing only what query results show: name, labels and the upper left
+ * corner of the patch.
+ */
+public class PatchSummary {
+
+    /**
+     * Name of the image patch.
+     */
+    private String patchName;
+
+    /**
+     * Character labels of the image patch, in ascending order.
+     */
+    private List<Character> labels;
+
+    /**
+     * Longitude and latitude of the upper left corner of the image patch (EPSG:4326).
+     */
+    private double longitude;
+    private double latitude;
+
+    /**
+     * Creates an empty patch summary (needed for mapping).
+     */
+    public PatchSummary() {
+    }
+
+    /**
+     * Creates a patch summary.
+     * @param patchName name of the image patch
+     * @param labels character labels of the image patch
+     * @param longitude longitude of the upper left corner
+     * @param latitude latitude of the upper left corner
+     */
+    public PatchSummary(String patchName, List<Character> labels, double longitude, double latitude) {
+        this.patchName = patchName;
+        this.labels = labels;
+        this.longitude = longitude;
+        this.latitude = latitude;
+    }
+
+    /**
+     * Returns name of image patch.
+     * @return name of image patch
+     */
+    public String getPatchName() {
+        return patchName;
+    }
+
+    /**
+     * Sets name of image patch.
+     * @param patchName name of image patch
+     */
+    public void setPatchName(String patchName) {
+        this.patchName = patchName;
+    }
+
+    /**
+     * Returns character labels of image patch.
+     * @return character labels of image patch
+     */
+    public List<Character> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets character labels of image patch.
+     * @param labels character labels of image patch
+     */
+    public void setLabels(List<Character> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns longitude of the upper left corner.
+     * @return longitude of the upper left corner
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Sets longitude of the upper left corner.
+     * @param longitude longitude of the upper left corner
+     */
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns latitude of the upper left corner.
+     * @return latitude of the upper left corner
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Sets latitude of the upper left corner.
+     * @param latitude latitude of the upper left corner
+     */
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Returns string representation of the patch summary.
+     * @return string representation of the patch summary
+     */
+    @Override
+    public String toString() {
+        return "PatchSummary{" +
+                "patchName='" + patchName + '\'' +
+                ", labels=" + labels +
+                ", longitude=" + longitude +
+                ", latitude=" + latitude +
+                '}';
+    }
+}
@@ -24,6 +24,23 @@ public class Photo {
      */
     private Binary photo;
 
+    /**
+     * Encoding of the binary photo: "tiff" (original file, also if unset), "uint16" or "uint16-deflate"
+     * (little-endian uint16 pixels in row-major order, optionally deflated).
+     */
+    private String encoding;
+
+    /**
+     * Width and height of the photo in pixels (only set for raw raster encodings).
+     */
+    private int width;
+    private int height;
+
+    /**
+     * Pixel size of the photo in metres (only set for raw raster encodings).
+     */
+    private double resolution;
+
     /**
      * Returns the title of the photo.
      * @return title of the photo
@@ -56,6 +73,70 @@ public class Photo {
         this.photo = photo;
     }
 
+    /**
+     * Returns encoding of the binary photo.
+     * @return encoding of the binary photo
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets encoding of the binary photo.
+     * @param encoding encoding to set
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Returns width of the photo in pixels.
+     * @return width of the photo in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Sets width of the photo in pixels.
+     * @param width width to set
+     */
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Returns height of the photo in pixels.
+     * @return height of the photo in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets height of the photo in pixels.
+     * @param height height to set
+     */
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * Returns pixel size of the photo in metres.
+     * @return pixel size in metres
+     */
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Sets pixel size of the photo in metres.
+     * @param resolution pixel size to set
+     */
+    public void setResolution(double resolution) {
+        this.resolution = resolution;
+    }
+
     /**
      * Returns string representation of the photo.
      * @return string representation of the photo
@@ -65,6 +146,10 @@ public class Photo {
         return "Photo{" +
                 "title='" + title + '\'' +
                 ", image=" + photo +
+                ", encoding='" + encoding + '\'' +
+                ", width=" + width +
+                ", height=" + height +
+                ", resolution=" + resolution +
                 '}';
     }
 }
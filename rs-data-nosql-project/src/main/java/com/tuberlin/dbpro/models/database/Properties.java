@@ -9,8 +9,9 @@ import java.util.List;
 public class Properties {
 
     /**
-     * Name of the image patch.
+     * Name of the image patch, indexed as natural key for idempotent (re-)ingestion.
      */
+    @Indexed(name = "patch-name-index")
     private String patchName;
 
     /**
@@ -19,6 +20,20 @@ public class Properties {
     @Indexed(name = "multikey-label-index")
     private List<Character> labels;
 
+    /**
+     * Label set of the image patch as 64-bit mask (bit i set for label character 65 + i), queried with
+     * $bitsAllSet, $bitsAnySet and equality; only stored with query.label-encoding=bitmask and not indexed, as
+     * the bitwise predicates cannot use an index
+     */
+    private Long labelMask;
+
+    /**
+     * Geohash cells (precision 5) overlapped by the footprint of the image patch, multi-key index on list for
+     * spatial prefiltering
+     */
+    @Indexed(name = "geohash-cell-index")
+    private List<String> geohashCells;
+
     /**
      * Returns name of image patch.
      * @return name of image patch
@@ -51,6 +66,38 @@ public class Properties {
         this.labels = labels;
     }
 
+    /**
+     * Returns label mask of image patch.
+     * @return label mask (null for documents not migrated yet)
+     */
+    public Long getLabelMask() {
+        return labelMask;
+    }
+
+    /**
+     * Sets label mask of image patch.
+     * @param labelMask label mask of image patch
+     */
+    public void setLabelMask(Long labelMask) {
+        this.labelMask = labelMask;
+    }
+
+    /**
+     * Returns geohash cells of image patch.
+     * @return geohash cells (null for documents not migrated yet)
+     */
+    public List<String> getGeohashCells() {
+        return geohashCells;
+    }
+
+    /**
+     * Sets geohash cells of image patch.
+     * @param geohashCells geohash cells overlapped by the footprint of the image patch
+     */
+    public void setGeohashCells(List<String> geohashCells) {
+        this.geohashCells = geohashCells;
+    }
+
     /**
      * Returns string representation of Properties object.
      * @return string representation of Properties object.
@@ -60,6 +107,8 @@ public class Properties {
         return "Properties{" +
                 "patchName='" + patchName + '\'' +
                 ", labels=" + labels +
+                ", labelMask=" + labelMask +
+                ", geohashCells=" + geohashCells +
                 '}';
     }
 }
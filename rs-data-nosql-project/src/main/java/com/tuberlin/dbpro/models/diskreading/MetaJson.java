@@ -23,6 +23,11 @@ public class MetaJson {
      */
     private String projection;
 
+    /**
+     * EPSG code of the source CRS, extracted from the projection information (e.g. "32634").
+     */
+    private String epsgCode;
+
     /**
      * Acquisition data of image patch.
      */
@@ -81,6 +86,22 @@ public class MetaJson {
         this.projection = projection;
     }
 
+    /**
+     * Returns EPSG code of the source CRS of the image patch.
+     * @return EPSG code of the source CRS
+     */
+    public String getEpsgCode() {
+        return epsgCode;
+    }
+
+    /**
+     * Sets EPSG code of the source CRS of the image patch.
+     * @param epsgCode EPSG code of the source CRS
+     */
+    public void setEpsgCode(String epsgCode) {
+        this.epsgCode = epsgCode;
+    }
+
     /**
      * Returns acquisition date of image patch as string.
      * @return returns acquisition date of image patch
@@ -123,6 +144,7 @@ public class MetaJson {
                 "labels=" + labels +
                 ", coordinates=" + coordinates +
                 ", projection='" + projection + '\'' +
+                ", epsgCode='" + epsgCode + '\'' +
                 ", acquisition_date='" + acquisition_date + '\'' +
                 ", tile_source='" + tile_source + '\'' +
                 '}';
@@ -134,6 +156,6 @@ public class MetaJson {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(labels, coordinates, projection, acquisition_date, tile_source);
+        return Objects.hash(labels, coordinates, projection, epsgCode, acquisition_date, tile_source);
     }
 }
@@ -0,0 +1,184 @@
+package com.tuberlin.dbpro.models.diskreading;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.PatchImages;
+import org.bson.types.Binary;
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-patch ingestion state travelling through the ingestion pipeline stages (scan, read, parse, persist).
+ */
+public class PatchFolder {
+
+    /**
+     * Name of the image patch (equals the folder name).
+     */
+    private final String patchName;
+
+    /**
+     * Folder on disk containing the band images and the meta JSON file of the image patch (null for archives).
+     */
+    private final File folder;
+
+    /**
+     * Band image files of the image patch, sorted by name.
+     */
+    private File[] bandFiles;
+
+    /**
+     * Meta JSON file of the image patch.
+     */
+    private File metadataFile;
+
+    /**
+     * Latest modification time of the image patch files (ms since epoch) and their total size in bytes.
+     */
+    private long lastModified;
+    private long size;
+
+    /**
+     * Raw bytes of the meta JSON file (only set for patches read from an archive).
+     */
+    private byte[] metadata;
+
+    /**
+     * Map containing the photo title and corresponding binary photo of the image patch (filled by the read stage).
+     */
+    private final Map<String, Binary> photos = new TreeMap<>();
+
+    /**
+     * GeoJson object mapped from the meta JSON file (filled by the parse stage).
+     */
+    private GeoJson geoJson;
+
+    /**
+     * Patch images object built from the read photos (filled by the parse stage).
+     */
+    private PatchImages patchImages;
+
+    /**
+     * Creates the ingestion state of a single image patch folder.
+     * @param patchName name of the image patch
+     * @param folder folder containing the image patch files
+     */
+    public PatchFolder(String patchName, File folder) {
+        this.patchName = patchName;
+        this.folder = folder;
+    }
+
+    /**
+     * Returns name of image patch.
+     * @return name of image patch
+     */
+    public String getPatchName() { return patchName; }
+
+    /**
+     * Returns folder containing the image patch files.
+     * @return folder containing the image patch files
+     */
+    public File getFolder() { return folder; }
+
+    /**
+     * Returns band image files of the image patch.
+     * @return band image files of the image patch
+     */
+    public File[] getBandFiles() { return bandFiles; }
+
+    /**
+     * Sets band image files of the image patch.
+     * @param bandFiles band image files of the image patch
+     */
+    public void setBandFiles(File[] bandFiles) { this.bandFiles = bandFiles; }
+
+    /**
+     * Returns meta JSON file of the image patch.
+     * @return meta JSON file of the image patch
+     */
+    public File getMetadataFile() { return metadataFile; }
+
+    /**
+     * Sets meta JSON file of the image patch.
+     * @param metadataFile meta JSON file of the image patch
+     */
+    public void setMetadataFile(File metadataFile) { this.metadataFile = metadataFile; }
+
+    /**
+     * Returns latest modification time of the image patch files.
+     * @return latest modification time in ms since epoch
+     */
+    public long getLastModified() { return lastModified; }
+
+    /**
+     * Sets latest modification time of the image patch files.
+     * @param lastModified latest modification time in ms since epoch
+     */
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+    /**
+     * Returns total size of the image patch files.
+     * @return total size in bytes
+     */
+    public long getSize() { return size; }
+
+    /**
+     * Sets total size of the image patch files.
+     * @param size total size in bytes
+     */
+    public void setSize(long size) { this.size = size; }
+
+    /**
+     * Returns raw bytes of the meta JSON file.
+     * @return raw bytes of the meta JSON file
+     */
+    public byte[] getMetadata() { return metadata; }
+
+    /**
+     * Sets raw bytes of the meta JSON file.
+     * @param metadata raw bytes of the meta JSON file
+     */
+    public void setMetadata(byte[] metadata) { this.metadata = metadata; }
+
+    /**
+     * Returns map of photo titles and binary photos of the image patch.
+     * @return map of photo titles and binary photos
+     */
+    public Map<String, Binary> getPhotos() { return photos; }
+
+    /**
+     * Returns mapped GeoJson object of the image patch.
+     * @return mapped GeoJson object
+     */
+    public GeoJson getGeoJson() { return geoJson; }
+
+    /**
+     * Sets mapped GeoJson object of the image patch.
+     * @param geoJson mapped GeoJson object
+     */
+    public void setGeoJson(GeoJson geoJson) { this.geoJson = geoJson; }
+
+    /**
+     * Returns patch images object of the image patch.
+     * @return patch images object
+     */
+    public PatchImages getPatchImages() { return patchImages; }
+
+    /**
+     * Sets patch images object of the image patch.
+     * @param patchImages patch images object
+     */
+    public void setPatchImages(PatchImages patchImages) { this.patchImages = patchImages; }
+
+    /**
+     * Returns string representation of the patch folder.
+     * @return string representation of the patch folder
+     */
+    @Override
+    public String toString() {
+        return "PatchFolder{" +
+                "patchName='" + patchName + '\'' +
+                ", folder=" + folder +
+                '}';
+    }
+}
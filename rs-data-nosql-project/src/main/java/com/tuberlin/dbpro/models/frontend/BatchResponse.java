@@ -0,0 +1,102 @@
+package com.tuberlin.dbpro.models.frontend;
+
+/**
+ * Response class for a single sub-request of a batch query, sent to frontend as one line of the streamed batch
+ * result - containing either the output response or the error of the sub-request.
+ */
+public class BatchResponse {
+
+    /**
+     * Position of the sub-request in the batch.
+     */
+    private int index;
+
+    /**
+     * Output response of the sub-request (null if it failed).
+     */
+    private OutputResponse response;
+
+    /**
+     * Error message of the sub-request (null if it succeeded).
+     */
+    private String error;
+
+    /**
+     * Creates an empty batch response (needed for mapping).
+     */
+    public BatchResponse() {
+    }
+
+    /**
+     * Creates a batch response.
+     * @param index position of the sub-request in the batch
+     * @param response output response or null
+     * @param error error message or null
+     */
+    public BatchResponse(int index, OutputResponse response, String error) {
+        this.index = index;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * Returns position of the sub-request in the batch.
+     * @return position of the sub-request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets position of the sub-request in the batch.
+     * @param index position of the sub-request
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns output response of the sub-request.
+     * @return output response or null if the sub-request failed
+     */
+    public OutputResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Sets output response of the sub-request.
+     * @param response output response
+     */
+    public void setResponse(OutputResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * Returns error message of the sub-request.
+     * @return error message or null if the sub-request succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Sets error message of the sub-request.
+     * @param error error message
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Returns string representation of batch response.
+     * @return string representation of batch response
+     */
+    @Override
+    public String toString() {
+        return "BatchResponse{" +
+                "index=" + index +
+                ", response=" + response +
+                ", error=" + error +
+                '}';
+    }
+}
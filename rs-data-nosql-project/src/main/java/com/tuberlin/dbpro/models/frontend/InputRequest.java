@@ -1,5 +1,6 @@
 package com.tuberlin.dbpro.models.frontend;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import java.util.List;
 
 /**
@@ -27,6 +28,33 @@ public class InputRequest {
      */
     private String geospatialQueryOperator;
 
+    /**
+     * Keyset pagination token: name of the last image patch of the previous page (null for the first page).
+     */
+    @JsonAlias("page_after")
+    private String pageAfter;
+
+    /**
+     * Maximum number of image patches per page (null for the configured default page size).
+     */
+    private Integer limit;
+
+    /**
+     * Whether only the total and the label summary of the matching image patches are requested.
+     */
+    private Boolean summaryOnly;
+
+    /**
+     * Map zoom level of the visual query (null for individual image patches instead of clusters).
+     */
+    private Integer zoom;
+
+    /**
+     * Cluster radius in screen pixels at the requested zoom level (null for the configured default radius).
+     */
+    @JsonAlias("cluster_radius")
+    private Integer clusterRadius;
+
     /**
      * Returns geometry of requested polygon.
      * @return geometry of requested polygon
@@ -91,6 +119,86 @@ public class InputRequest {
         this.geospatialQueryOperator = geospatialQueryOperator;
     }
 
+    /**
+     * Returns name of the last image patch of the previous page.
+     * @return name of the last image patch of the previous page
+     */
+    public String getPageAfter() {
+        return pageAfter;
+    }
+
+    /**
+     * Sets name of the last image patch of the previous page.
+     * @param pageAfter name of the last image patch of the previous page
+     */
+    public void setPageAfter(String pageAfter) {
+        this.pageAfter = pageAfter;
+    }
+
+    /**
+     * Returns maximum number of image patches per page.
+     * @return maximum number of image patches per page
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets maximum number of image patches per page.
+     * @param limit maximum number of image patches per page
+     */
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Returns whether only the total and the label summary are requested.
+     * @return whether only the total and the label summary are requested
+     */
+    public Boolean getSummaryOnly() {
+        return summaryOnly;
+    }
+
+    /**
+     * Sets whether only the total and the label summary are requested.
+     * @param summaryOnly whether only the total and the label summary are requested
+     */
+    public void setSummaryOnly(Boolean summaryOnly) {
+        this.summaryOnly = summaryOnly;
+    }
+
+    /**
+     * Returns map zoom level of the visual query.
+     * @return map zoom level
+     */
+    public Integer getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Sets map zoom level of the visual query.
+     * @param zoom map zoom level
+     */
+    public void setZoom(Integer zoom) {
+        this.zoom = zoom;
+    }
+
+    /**
+     * Returns cluster radius in screen pixels.
+     * @return cluster radius in screen pixels
+     */
+    public Integer getClusterRadius() {
+        return clusterRadius;
+    }
+
+    /**
+     * Sets cluster radius in screen pixels.
+     * @param clusterRadius cluster radius in screen pixels
+     */
+    public void setClusterRadius(Integer clusterRadius) {
+        this.clusterRadius = clusterRadius;
+    }
+
     /**
      * Returns string representation of input request.
      * @return string representation of input request
@@ -101,6 +209,12 @@ public class InputRequest {
                 "geometry=" + geometry +
                 ", labels=" + labels +
                 ", queryType=" + queryType +
+                ", geospatialQueryOperator=" + geospatialQueryOperator +
+                ", pageAfter=" + pageAfter +
+                ", limit=" + limit +
+                ", summaryOnly=" + summaryOnly +
+                ", zoom=" + zoom +
+                ", clusterRadius=" + clusterRadius +
                 '}';
     }
 }
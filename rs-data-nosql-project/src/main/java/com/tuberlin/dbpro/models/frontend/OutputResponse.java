@@ -12,6 +12,11 @@ public class OutputResponse {
      */
     private List<String> patchNames;
 
+    /**
+     * Keyset pagination token of the next page: name of the last returned image patch, null on the last page.
+     */
+    private String nextPageAfter;
+
     /**
      * Returns list of matching image names.
      * @return list of matching image names
@@ -28,6 +33,22 @@ public class OutputResponse {
         this.patchNames = patchNames;
     }
 
+    /**
+     * Returns the pagination token of the next page.
+     * @return name of the last returned image patch or null on the last page
+     */
+    public String getNextPageAfter() {
+        return nextPageAfter;
+    }
+
+    /**
+     * Sets the pagination token of the next page.
+     * @param nextPageAfter name of the last returned image patch or null on the last page
+     */
+    public void setNextPageAfter(String nextPageAfter) {
+        this.nextPageAfter = nextPageAfter;
+    }
+
     /**
      * Returns string representation of output response.
      * @return string representation of output response
@@ -36,6 +57,7 @@ public class OutputResponse {
     public String toString() {
         return "OutputResponse{" +
                 "patchNames=" + patchNames +
+                ", nextPageAfter=" + nextPageAfter +
                 '}';
     }
 }
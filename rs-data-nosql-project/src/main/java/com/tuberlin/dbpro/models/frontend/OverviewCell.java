@@ -0,0 +1,158 @@
+package com.tuberlin.dbpro.models.frontend;
+
+import java.util.Map;
+
+/**
+ * Response class for a single grid cell of a map overview - containing the bounds of the cell, the number of image
+ * patches in it and the number of image patches per requested label.
+ */
+public class OverviewCell {
+
+    /**
+     * Geohash of the cell.
+     */
+    private String cell;
+
+    /**
+     * Bounds of the cell (longitude and latitude of the lower left and the upper right corner).
+     */
+    private double minLongitude;
+    private double minLatitude;
+    private double maxLongitude;
+    private double maxLatitude;
+
+    /**
+     * Number of image patches in the cell.
+     */
+    private long total;
+
+    /**
+     * Number of image patches in the cell per requested label (labels without patches are left out).
+     */
+    private Map<String, Long> labels;
+
+    /**
+     * Returns geohash of the cell.
+     * @return geohash of the cell
+     */
+    public String getCell() {
+        return cell;
+    }
+
+    /**
+     * Sets geohash of the cell.
+     * @param cell geohash of the cell
+     */
+    public void setCell(String cell) {
+        this.cell = cell;
+    }
+
+    /**
+     * Returns minimum longitude of the cell.
+     * @return minimum longitude
+     */
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    /**
+     * Sets minimum longitude of the cell.
+     * @param minLongitude minimum longitude
+     */
+    public void setMinLongitude(double minLongitude) {
+        this.minLongitude = minLongitude;
+    }
+
+    /**
+     * Returns minimum latitude of the cell.
+     * @return minimum latitude
+     */
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    /**
+     * Sets minimum latitude of the cell.
+     * @param minLatitude minimum latitude
+     */
+    public void setMinLatitude(double minLatitude) {
+        this.minLatitude = minLatitude;
+    }
+
+    /**
+     * Returns maximum longitude of the cell.
+     * @return maximum longitude
+     */
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * Sets maximum longitude of the cell.
+     * @param maxLongitude maximum longitude
+     */
+    public void setMaxLongitude(double maxLongitude) {
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * Returns maximum latitude of the cell.
+     * @return maximum latitude
+     */
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    /**
+     * Sets maximum latitude of the cell.
+     * @param maxLatitude maximum latitude
+     */
+    public void setMaxLatitude(double maxLatitude) {
+        this.maxLatitude = maxLatitude;
+    }
+
+    /**
+     * Returns number of image patches in the cell.
+     * @return number of image patches
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Sets number of image patches in the cell.
+     * @param total number of image patches
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Returns number of image patches in the cell per requested label.
+     * @return label counts by label name
+     */
+    public Map<String, Long> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets number of image patches in the cell per requested label.
+     * @param labels label counts by label name
+     */
+    public void setLabels(Map<String, Long> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns string representation of overview cell.
+     * @return string representation of overview cell
+     */
+    @Override
+    public String toString() {
+        return "OverviewCell{" +
+                "cell=" + cell +
+                ", total=" + total +
+                ", labels=" + labels +
+                '}';
+    }
+}
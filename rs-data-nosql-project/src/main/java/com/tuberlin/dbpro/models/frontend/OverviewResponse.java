@@ -0,0 +1,65 @@
+package com.tuberlin.dbpro.models.frontend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response class sent to frontend for map overview queries - containing the label histograms of the grid cells
+ * covering the viewport at a single zoom level.
+ */
+public class OverviewResponse {
+
+    /**
+     * Zoom level (geohash precision) of the returned grid cells.
+     */
+    private int level;
+
+    /**
+     * Grid cells containing image patches.
+     */
+    private List<OverviewCell> cells = new ArrayList<>();
+
+    /**
+     * Returns zoom level of the returned grid cells.
+     * @return geohash precision of the grid cells
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets zoom level of the returned grid cells.
+     * @param level geohash precision of the grid cells
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Returns grid cells containing image patches.
+     * @return grid cells
+     */
+    public List<OverviewCell> getCells() {
+        return cells;
+    }
+
+    /**
+     * Sets grid cells containing image patches.
+     * @param cells grid cells
+     */
+    public void setCells(List<OverviewCell> cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Returns string representation of overview response.
+     * @return string representation of overview response
+     */
+    @Override
+    public String toString() {
+        return "OverviewResponse{" +
+                "level=" + level +
+                ", cells=" + cells +
+                '}';
+    }
+}
@@ -0,0 +1,123 @@
+package com.tuberlin.dbpro.models.frontend;
+
+import java.util.List;
+
+/**
+ * Response class for a single matching image patch, sent to frontend as one line of a streamed query result.
+ */
+public class PatchResponse {
+
+    /**
+     * Name of the image patch.
+     */
+    private String patchName;
+
+    /**
+     * Latitude and longitude of the upper left corner of the image patch.
+     */
+    private double latitude;
+    private double longitude;
+
+    /**
+     * Decoded labels of the image patch.
+     */
+    private List<String> labels;
+
+    /**
+     * Creates an empty patch response (needed for mapping).
+     */
+    public PatchResponse() {
+    }
+
+    /**
+     * Creates a patch response.
+     * @param patchName name of the image patch
+     * @param latitude latitude of the upper left corner
+     * @param longitude longitude of the upper left corner
+     * @param labels decoded labels of the image patch
+     */
+    public PatchResponse(String patchName, double latitude, double longitude, List<String> labels) {
+        this.patchName = patchName;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.labels = labels;
+    }
+
+    /**
+     * Returns name of image patch.
+     * @return name of image patch
+     */
+    public String getPatchName() {
+        return patchName;
+    }
+
+    /**
+     * Sets name of image patch.
+     * @param patchName name of image patch
+     */
+    public void setPatchName(String patchName) {
+        this.patchName = patchName;
+    }
+
+    /**
+     * Returns latitude of the upper left corner.
+     * @return latitude of the upper left corner
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Sets latitude of the upper left corner.
+     * @param latitude latitude of the upper left corner
+     */
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Returns longitude of the upper left corner.
+     * @return longitude of the upper left corner
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Sets longitude of the upper left corner.
+     * @param longitude longitude of the upper left corner
+     */
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns decoded labels of image patch.
+     * @return decoded labels of image patch
+     */
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets decoded labels of image patch.
+     * @param labels decoded labels of image patch
+     */
+    public void setLabels(List<String> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns string representation of patch response.
+     * @return string representation of patch response
+     */
+    @Override
+    public String toString() {
+        return "PatchResponse{" +
+                "patchName='" + patchName + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                ", labels=" + labels +
+                '}';
+    }
+}
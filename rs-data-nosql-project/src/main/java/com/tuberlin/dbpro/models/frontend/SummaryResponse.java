@@ -0,0 +1,64 @@
+package com.tuberlin.dbpro.models.frontend;
+
+import java.util.Map;
+
+/**
+ * Response class sent to frontend for count and summary queries - containing the number of matching image patches
+ * and, for summary queries, the number of matching image patches per label.
+ */
+public class SummaryResponse {
+
+    /**
+     * Total number of matching image patches.
+     */
+    private long total;
+
+    /**
+     * Number of matching image patches per label, most frequent label first (null for count queries).
+     */
+    private Map<String, Long> labels;
+
+    /**
+     * Returns total number of matching image patches.
+     * @return total number of matching image patches
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Sets total number of matching image patches.
+     * @param total total number of matching image patches
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Returns number of matching image patches per label.
+     * @return number of matching image patches per label
+     */
+    public Map<String, Long> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Sets number of matching image patches per label.
+     * @param labels number of matching image patches per label
+     */
+    public void setLabels(Map<String, Long> labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Returns string representation of summary response.
+     * @return string representation of summary response
+     */
+    @Override
+    public String toString() {
+        return "SummaryResponse{" +
+                "total=" + total +
+                ", labels=" + labels +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package com.tuberlin.dbpro.repositories;
+
+import com.tuberlin.dbpro.models.database.IngestedPatch;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+/**
+ * Repository for the ingestion manifest: one entry per committed image patch folder.
+ */
+public interface IngestionManifestRepository extends MongoRepository<IngestedPatch, String> {
+}
@@ -1,7 +1,6 @@
 package com.tuberlin.dbpro.rsdatanosqlproject;
 
 import com.tuberlin.dbpro.controllers.ApiController;
-import com.tuberlin.dbpro.repositories.GeoJsonRepository;
 import com.tuberlin.dbpro.repositories.PatchImageRepository;
 import com.tuberlin.dbpro.services.DatabaseService;
 import com.tuberlin.dbpro.services.DiskReadingService;
@@ -16,7 +15,7 @@ import org.springframework.data.mongodb.repository.config.EnableMongoRepositorie
  */
 @SpringBootApplication
 @ComponentScan(basePackageClasses = {ApiController.class, DiskReadingService.class,
-        FrontendService.class, DatabaseService.class, GeoJsonRepository.class, PatchImageRepository.class})
+        FrontendService.class, DatabaseService.class, PatchImageRepository.class})
 @EnableMongoRepositories(basePackages = {"com.tuberlin.dbpro.repositories"})
 public class RsDataNosqlProjectApplication {
 
@@ -0,0 +1,136 @@
+package com.tuberlin.dbpro.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads band image files through a reusable direct buffer per thread instead of allocating a fresh heap array per
+ * band: the file channel transfers the file straight into off-heap memory, which is then handed to the encoder as a
+ * stream. Files larger than the pooled buffer limit are memory-mapped instead.
+ */
+final class BandFileReader {
+
+    /**
+     * Initial capacity of a pooled buffer (a 10 m BigEarthNet band has about 30 kB).
+     */
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    /**
+     * Size above which files are memory-mapped instead of being read into the pooled buffer.
+     */
+    static final int MAX_POOLED_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Reusable direct buffer of every worker thread.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(INITIAL_CAPACITY));
+
+    private BandFileReader() {
+    }
+
+    /**
+     * Returns the content of the given file as a read-only buffer. Pooled buffers are reused by the next read on
+     * the same thread, so the content has to be consumed before.
+     * @param file band image file
+     * @return read-only buffer positioned at the start of the content
+     * @throws IOException if the file cannot be read
+     */
+    static ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_POOLED_SIZE) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+            }
+
+            ByteBuffer buffer = BUFFERS.get();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit((int) size) << 1);
+                BUFFERS.set(buffer);
+            }
+
+            buffer.clear();
+            buffer.limit((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // file shrank while reading
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Returns the content of the given file as a stream over the (pooled or mapped) buffer.
+     * @param file band image file
+     * @return stream over the file content
+     * @throws IOException if the file cannot be read
+     */
+    static InputStream open(File file) throws IOException {
+        return asInputStream(read(file));
+    }
+
+    /**
+     * Returns a stream over the remaining bytes of the given buffer.
+     * @param buffer buffer containing the content
+     * @return stream over the buffer content
+     */
+    static InputStream asInputStream(ByteBuffer buffer) {
+        return new ByteBufferInputStream(buffer);
+    }
+
+    /**
+     * Input stream reading the remaining bytes of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        /**
+         * Buffer containing the content.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates a stream over the remaining bytes of the given buffer.
+         * @param buffer buffer containing the content
+         */
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int read = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long bytes) {
+            int skipped = (int) Math.max(0, Math.min(bytes, this.buffer.remaining()));
+            this.buffer.position(this.buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.tuberlin.dbpro.services;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.tuberlin.dbpro.models.database.PatchImages;
+import com.tuberlin.dbpro.models.database.Photo;
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import com.tuberlin.dbpro.repositories.PatchImageRepository;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.gridfs.GridFsCriteria.whereFilename;
+
+/**
+ * Service storing band images in GridFS: every TIFF is streamed from disk into GridFS chunks and back out again,
+ * so neither ingestion nor a single band request needs the full image patch on the heap, and no document comes
+ * close to the 16 MB document limit. The patch images document only keeps the GridFS file ids of its bands.
+ */
+@Service
+public class BandStorageService {
+
+    /**
+     * Content type of band images stored as TIFF files.
+     */
+    private static final String TIFF_CONTENT_TYPE = "image/tiff";
+
+    /**
+     * Content type of band images stored with a raw raster encoding.
+     */
+    private static final String RASTER_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * GridFsTemplate instance for the band image files.
+     */
+    @Autowired
+    private GridFsTemplate gridFsTemplate;
+
+    /**
+     * Patch image repository instance for bands stored inline.
+     */
+    @Autowired
+    private PatchImageRepository patchImageRepository;
+
+    /**
+     * Streams the band images of an image patch into GridFS (files from disk without heap buffering, or the already
+     * read bytes of an archive patch) and returns the patch images object referencing them. Bands of an earlier load
+     * of the same patch are replaced, so repeated loads do not leave orphaned files behind.
+     * @param patchFolder ingestion state of the image patch
+     * @param bandEncoding encoding of the stored band images (see RasterCodec)
+     * @return patch images object containing the GridFS file ids of the bands
+     * @throws IOException if a band image cannot be read
+     */
+    PatchImages storeBands(PatchFolder patchFolder, String bandEncoding) throws IOException {
+        Map<String, String> bandFileIds = new TreeMap<>();
+
+        if (patchFolder.getBandFiles() != null) {
+            for (File bandFile : patchFolder.getBandFiles()) {
+                String title = bandFile.getName().substring(0, bandFile.getName().length() - 4);
+                // read through the pooled direct buffer of this persist worker: no heap array per band
+                bandFileIds.put(title, this.storeBand(patchFolder.getPatchName(), title,
+                        BandFileReader.read(bandFile), bandEncoding));
+            }
+        } else {
+            for (Map.Entry<String, Binary> photo : patchFolder.getPhotos().entrySet()) {
+                bandFileIds.put(photo.getKey(), this.storeBand(patchFolder.getPatchName(), photo.getKey(),
+                        ByteBuffer.wrap(photo.getValue().getData()), bandEncoding));
+            }
+            patchFolder.getPhotos().clear();
+        }
+
+        PatchImages patchImages = new PatchImages();
+        patchImages.setPatchName(patchFolder.getPatchName());
+        patchImages.setBandFileIds(bandFileIds);
+        return patchImages;
+    }
+
+    /**
+     * Streams a single band image into GridFS, replacing an earlier version of it. TIFF files are converted into
+     * the raw raster encoding first, whose width, height and resolution are kept in the file metadata. Earlier
+     * versions are only deleted once the new file is stored, so a failed write keeps the old band.
+     * @param patchName name of the image patch
+     * @param title title of the band image (file name without extension)
+     * @param tiff band image TIFF content
+     * @param bandEncoding encoding of the stored band image
+     * @return GridFS file id of the stored band image
+     * @throws IOException if the band image cannot be stored
+     */
+    private String storeBand(String patchName, String title, ByteBuffer tiff, String bandEncoding)
+            throws IOException {
+        Document metadata = new Document("patchName", patchName)
+                .append("band", title.substring(title.lastIndexOf('_') + 1));
+        ObjectId fileId;
+        if (RasterCodec.TIFF.equals(bandEncoding)) {
+            try (InputStream content = BandFileReader.asInputStream(tiff)) {
+                fileId = this.gridFsTemplate.store(content, title, TIFF_CONTENT_TYPE, metadata);
+            }
+        } else {
+            RasterCodec.Raster raster = RasterCodec.decodeTiff(tiff);
+            metadata.append("encoding", bandEncoding)
+                    .append("width", raster.width)
+                    .append("height", raster.height)
+                    .append("resolution", raster.resolution);
+            fileId = this.gridFsTemplate.store(new ByteArrayInputStream(RasterCodec.encode(raster, bandEncoding)),
+                    title, RASTER_CONTENT_TYPE, metadata);
+        }
+
+        this.gridFsTemplate.delete(new Query(whereFilename().is(title).and("_id").ne(fileId)));
+        return fileId.toHexString();
+    }
+
+    /**
+     * Returns a single band image of an image patch, e.g. band "B08". Bands stored in GridFS are streamed chunk by
+     * chunk; bands stored inline in the patch images document are returned from it.
+     * @param patchName name of the image patch
+     * @param band band name
+     * @return band image or null if the band does not exist
+     */
+    public Resource getBand(String patchName, String band) {
+        String title = patchName + "_" + band;
+        GridFSFile file = this.gridFsTemplate.findOne(new Query(whereFilename().is(title)));
+        if (file != null) {
+            return this.gridFsTemplate.getResource(file);
+        }
+
+        // fallback for patches ingested with ingestion.band-storage=inline
+        PatchImages patchImages = this.patchImageRepository.findById(patchName).orElse(null);
+        if (patchImages == null || patchImages.getPhotos() == null) {
+            return null;
+        }
+        for (Photo photo : patchImages.getPhotos()) {
+            if (photo.getTitle().equals(title)) {
+                boolean tiff = photo.getEncoding() == null || RasterCodec.TIFF.equals(photo.getEncoding());
+                return new InlineBandResource(photo.getPhoto().getData(), title,
+                        tiff ? TIFF_CONTENT_TYPE : RASTER_CONTENT_TYPE);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a single band image by the GridFS file id kept in the patch images document.
+     * @param fileId GridFS file id of the band image
+     * @return band image or null if no such file exists
+     */
+    public Resource getBandById(String fileId) {
+        if (!ObjectId.isValid(fileId)) {
+            return null;
+        }
+
+        GridFSFile file = this.gridFsTemplate.findOne(new Query(where("_id").is(new ObjectId(fileId))));
+        return file != null ? this.gridFsTemplate.getResource(file) : null;
+    }
+
+    /**
+     * Returns the content type of a band image returned by this service.
+     * @param band band image
+     * @return content type of the band image
+     */
+    public String getContentType(Resource band) {
+        if (band instanceof GridFsResource) {
+            return ((GridFsResource) band).getContentType();
+        }
+        if (band instanceof InlineBandResource) {
+            return ((InlineBandResource) band).contentType;
+        }
+        return TIFF_CONTENT_TYPE;
+    }
+
+    /**
+     * Sets GridFS template for test compatibility (injected in production).
+     * @param gridFsTemplate GridFS template for test compatibility
+     */
+    void setGridFsTemplate(GridFsTemplate gridFsTemplate) {
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    /**
+     * Band image stored inline in the patch images document.
+     */
+    private static class InlineBandResource extends ByteArrayResource {
+
+        /**
+         * Content type of the band image.
+         */
+        private final String contentType;
+
+        /**
+         * Creates an inline band image resource.
+         * @param data band image data
+         * @param title title of the band image
+         * @param contentType content type of the band image
+         */
+        private InlineBandResource(byte[] data, String title, String contentType) {
+            super(data, title);
+            this.contentType = contentType;
+        }
+    }
+}
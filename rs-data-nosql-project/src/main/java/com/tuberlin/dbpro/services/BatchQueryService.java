@@ -0,0 +1,141 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.frontend.BatchResponse;
+import com.tuberlin.dbpro.models.frontend.InputRequest;
+import com.tuberlin.dbpro.models.frontend.OutputResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Service class executing batches of input requests (e.g. one per grid cell of a tiling job): identical
+ * sub-requests are executed once, distinct ones concurrently on the bounded query executor (at most
+ * query.batch-concurrency per batch), and the results are emitted in request order as soon as they are available.
+ * A failing sub-request yields an error response without aborting the batch.
+ */
+@Service
+public class BatchQueryService {
+
+    /**
+     * Frontend service instance answering the single sub-requests.
+     */
+    @Autowired
+    private FrontendService frontendService;
+
+    /**
+     * Query execution service instance providing the bounded query executor.
+     */
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    /**
+     * Maximum number of sub-requests of a batch executed at the same time.
+     */
+    @Value("${query.batch-concurrency:4}")
+    private int concurrency = 4;
+
+    /**
+     * Returns the stream of output responses of a batch of input requests, in request order.
+     * @param inputRequests input requests of the batch
+     * @param isSupported validation of a single input request
+     * @return stream of batch responses
+     */
+    public Flux<BatchResponse> execute(List<InputRequest> inputRequests, Predicate<InputRequest> isSupported) {
+        return this.execute(inputRequests, isSupported, this.frontendService::getOutputResponse);
+    }
+
+    /**
+     * Returns the stream of responses of a batch of input requests computed by the passed query, in request order.
+     * @param inputRequests input requests of the batch
+     * @param isSupported validation of a single input request
+     * @param query computation of the output response of a single input request
+     * @return stream of batch responses
+     */
+    Flux<BatchResponse> execute(List<InputRequest> inputRequests, Predicate<InputRequest> isSupported,
+                                Function<InputRequest, OutputResponse> query) {
+        // identical sub-requests share a single cached execution
+        Map<String, Mono<OutputResponse>> distinctResults = new HashMap<>();
+        List<Mono<OutputResponse>> results = new ArrayList<>(inputRequests.size());
+        for (InputRequest inputRequest : inputRequests) {
+            results.add(distinctResults.computeIfAbsent(String.valueOf(inputRequest), key ->
+                    isSupported(inputRequest, isSupported)
+                            ? this.submit(inputRequest, query).cache()
+                            : Mono.error(new IllegalArgumentException("unsupported request"))));
+        }
+        System.out.println("BATCH QUERY - " + inputRequests.size() + " requests, " + distinctResults.size() +
+                " distinct");
+
+        return Flux.range(0, results.size())
+                .flatMapSequential(index -> results.get(index)
+                        .map(response -> new BatchResponse(index, response, null))
+                        .onErrorResume(error -> Mono.just(new BatchResponse(index, null, getErrorMessage(error)))),
+                        this.concurrency);
+    }
+
+    /**
+     * Returns the lazy execution of a single sub-request on the query executor; cancelling the subscription (e.g.
+     * on client disconnect) cancels the query.
+     * @param inputRequest input request
+     * @param query computation of the output response
+     * @return output response of the sub-request
+     */
+    private Mono<OutputResponse> submit(InputRequest inputRequest, Function<InputRequest, OutputResponse> query) {
+        return Mono.defer(() -> {
+            CompletableFuture<OutputResponse> future =
+                    this.queryExecutionService.submitFuture(() -> query.apply(inputRequest));
+            return Mono.fromFuture(future).doOnCancel(() -> future.cancel(true));
+        });
+    }
+
+    /**
+     * Returns whether a sub-request is valid; malformed sub-requests failing the validation itself are invalid.
+     * @param inputRequest input request or null
+     * @param isSupported validation of a single input request
+     * @return whether the sub-request is valid
+     */
+    private static boolean isSupported(InputRequest inputRequest, Predicate<InputRequest> isSupported) {
+        try {
+            return inputRequest != null && isSupported.test(inputRequest);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the error message of a failed sub-request.
+     * @param error error of the sub-request
+     * @return error message
+     */
+    static String getErrorMessage(Throwable error) {
+        if (error instanceof RejectedExecutionException) {
+            return "query rejected";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    /**
+     * Sets query execution service for test compatibility (injected in production).
+     * @param queryExecutionService Query execution service for test compatibility
+     */
+    void setQueryExecutionService(QueryExecutionService queryExecutionService) {
+        this.queryExecutionService = queryExecutionService;
+    }
+
+    /**
+     * Sets maximum number of concurrent sub-requests for test compatibility (configured in production).
+     * @param concurrency maximum number of sub-requests executed at the same time
+     */
+    void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+}
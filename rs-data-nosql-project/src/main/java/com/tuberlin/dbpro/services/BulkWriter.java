@@ -0,0 +1,324 @@
+package com.tuberlin.dbpro.services;
+
+import com.mongodb.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Batching writer collecting documents of one collection and persisting them with unordered bulk writes instead of
+ * one save() round trip per document. A batch is written as soon as it is full or the flush interval has elapsed.
+ * Documents are upserted by a key field, so writing the same document twice (e.g. when resuming an interrupted
+ * load) replaces it instead of duplicating it. Failed documents are reported and kept for inspection, but never
+ * abort the remaining load; successfully written documents are passed to the registered commit listeners, newly
+ * inserted ones (no document with their key existed before) also to the insert listeners.
+ * @param <T> entity type of the collection
+ */
+class BulkWriter<T> {
+
+    /**
+     * Maximum number of failed documents kept in memory for inspection.
+     */
+    private static final int MAX_KEPT_FAILED_DOCUMENTS = 10000;
+
+    /**
+     * MongoTemplate instance executing the bulk operations.
+     */
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Entity class of the written documents.
+     */
+    private final Class<T> entityClass;
+
+    /**
+     * Key field identifying a document (e.g. "_id") and function extracting its value from an entity.
+     */
+    private final String keyField;
+    private final Function<T, Object> keyExtractor;
+
+    /**
+     * Listeners notified with the documents of every committed batch.
+     */
+    private final List<Consumer<List<T>>> commitListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listeners notified with the newly inserted documents of every committed batch.
+     */
+    private final List<Consumer<List<T>>> insertListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of documents per bulk write.
+     */
+    private final int batchSize;
+
+    /**
+     * Documents buffered for the next bulk write.
+     */
+    private List<T> buffer;
+
+    /**
+     * Documents that could not be written (bounded by MAX_KEPT_FAILED_DOCUMENTS).
+     */
+    private final List<T> failedDocuments = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Number of failed documents already returned by getNewFailedDocuments (guarded by failedDocuments).
+     */
+    private int reportedFailedDocuments;
+
+    /**
+     * Total number of written and failed documents.
+     */
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * Scheduler flushing incomplete batches after the flush interval.
+     */
+    private final ScheduledExecutorService flushScheduler;
+
+    /**
+     * Creates a batching writer for the collection of the given entity class.
+     * @param mongoTemplate MongoTemplate instance executing the bulk operations
+     * @param entityClass entity class of the written documents
+     * @param keyField key field identifying a document
+     * @param keyExtractor function extracting the key value from an entity
+     * @param batchSize number of documents per bulk write
+     * @param flushIntervalMillis maximum time in ms a buffered document waits before being written (0 disables)
+     */
+    BulkWriter(MongoTemplate mongoTemplate, Class<T> entityClass, String keyField, Function<T, Object> keyExtractor,
+               int batchSize, long flushIntervalMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.entityClass = entityClass;
+        this.keyField = keyField;
+        this.keyExtractor = keyExtractor;
+        this.batchSize = Math.max(1, batchSize);
+        this.buffer = new ArrayList<>(this.batchSize);
+
+        if (flushIntervalMillis > 0) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bulk-writer-" + entityClass.getSimpleName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushScheduler.scheduleWithFixedDelay(this::flushScheduled, flushIntervalMillis,
+                    flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flushScheduler = null;
+        }
+    }
+
+    /**
+     * Registers a listener notified with the successfully written documents of every batch.
+     * @param listener commit listener
+     */
+    void addCommitListener(Consumer<List<T>> listener) {
+        this.commitListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener notified with the newly inserted documents of every batch (replaced documents are
+     * left out, e.g. for counters that must not count a re-ingested document twice).
+     * @param listener insert listener
+     */
+    void addInsertListener(Consumer<List<T>> listener) {
+        this.insertListeners.add(listener);
+    }
+
+    /**
+     * Adds a document to the current batch and writes the batch once it is full.
+     * @param document document to persist
+     */
+    void write(T document) {
+        List<T> fullBatch = null;
+
+        synchronized (this) {
+            this.buffer.add(document);
+            if (this.buffer.size() >= this.batchSize) {
+                fullBatch = this.buffer;
+                this.buffer = new ArrayList<>(this.batchSize);
+            }
+        }
+
+        // written outside of the lock so other threads can fill the next batch in the meantime
+        if (fullBatch != null) {
+            this.writeBatch(fullBatch);
+        }
+    }
+
+    /**
+     * Writes all currently buffered documents.
+     */
+    void flush() {
+        List<T> batch;
+
+        synchronized (this) {
+            if (this.buffer.isEmpty()) {
+                return;
+            }
+            batch = this.buffer;
+            this.buffer = new ArrayList<>(this.batchSize);
+        }
+
+        this.writeBatch(batch);
+    }
+
+    /**
+     * Writes all currently buffered documents from the flush scheduler, which an exception would cancel for good.
+     */
+    private void flushScheduled() {
+        try {
+            this.flush();
+        } catch (RuntimeException e) {
+            System.out.println("BULK WRITE FLUSH FAILED " + this.entityClass.getSimpleName());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes remaining documents and stops the flush scheduler.
+     */
+    void close() {
+        if (this.flushScheduler != null) {
+            this.flushScheduler.shutdownNow();
+        }
+        this.flush();
+    }
+
+    /**
+     * Writes a batch with unordered bulk upserts, so a failing document does not stop the rest of the batch.
+     * @param batch documents to write
+     */
+    private void writeBatch(List<T> batch) {
+        long start = System.currentTimeMillis();
+        List<T> committed = batch;
+        List<Integer> insertedIndexes = new ArrayList<>();
+        int failed = 0;
+
+        try {
+            BulkOperations bulkOperations = this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    this.entityClass);
+            for (T document : batch) {
+                Query key = Query.query(Criteria.where(this.keyField).is(this.keyExtractor.apply(document)));
+                bulkOperations.replaceOne(key, document, FindAndReplaceOptions.options().upsert());
+            }
+            // upserts are reported by their index in the batch
+            bulkOperations.execute().getUpserts().forEach(upsert -> insertedIndexes.add(upsert.getIndex()));
+        } catch (BulkOperationException e) {
+            e.getResult().getUpserts().forEach(upsert -> insertedIndexes.add(upsert.getIndex()));
+            Set<Integer> failedIndexes = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                System.out.println("BULK WRITE ERROR " + this.entityClass.getSimpleName() + ": " + error.getMessage());
+                this.keepFailedDocument(batch.get(error.getIndex()));
+                failedIndexes.add(error.getIndex());
+            }
+            failed = failedIndexes.size();
+
+            committed = new ArrayList<>(batch.size() - failed);
+            for (int i = 0; i < batch.size(); i++) {
+                if (!failedIndexes.contains(i)) {
+                    committed.add(batch.get(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            // whole batch lost (e.g. connection problem): report it, but keep the load going
+            e.printStackTrace();
+            batch.forEach(this::keepFailedDocument);
+            committed = Collections.emptyList();
+            failed = batch.size();
+        }
+
+        this.writtenCount.addAndGet(batch.size() - failed);
+        this.failedCount.addAndGet(failed);
+        if (!committed.isEmpty()) {
+            this.notifyListeners(this.commitListeners, committed);
+        }
+        if (!insertedIndexes.isEmpty()) {
+            List<T> inserted = new ArrayList<>(insertedIndexes.size());
+            for (int index : insertedIndexes) {
+                inserted.add(batch.get(index));
+            }
+            this.notifyListeners(this.insertListeners, inserted);
+        }
+        System.out.println("BULK WRITE " + this.entityClass.getSimpleName() + ": " + batch.size() +
+                " documents in " + (System.currentTimeMillis() - start) + " ms (" + failed + " failed)");
+    }
+
+    /**
+     * Notifies listeners about written documents. A failing listener is reported, but neither affects the other
+     * listeners nor marks the already written documents as failed.
+     * @param listeners commit or insert listeners
+     * @param documents written documents
+     */
+    private void notifyListeners(List<Consumer<List<T>>> listeners, List<T> documents) {
+        for (Consumer<List<T>> listener : listeners) {
+            try {
+                listener.accept(documents);
+            } catch (RuntimeException e) {
+                System.out.println("BULK WRITE LISTENER FAILED " + this.entityClass.getSimpleName());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Keeps a failed document for later inspection as long as the bound is not reached.
+     * @param document failed document
+     */
+    private void keepFailedDocument(T document) {
+        if (this.failedDocuments.size() < MAX_KEPT_FAILED_DOCUMENTS) {
+            this.failedDocuments.add(document);
+        }
+    }
+
+    /**
+     * Returns the documents that could not be written (at most MAX_KEPT_FAILED_DOCUMENTS).
+     * @return failed documents
+     */
+    List<T> getFailedDocuments() {
+        synchronized (this.failedDocuments) {
+            return new ArrayList<>(this.failedDocuments);
+        }
+    }
+
+    /**
+     * Returns the failed documents kept since the last call, so repeated reports do not list a failure twice.
+     * @return failed documents not returned before
+     */
+    List<T> getNewFailedDocuments() {
+        synchronized (this.failedDocuments) {
+            List<T> newFailedDocuments = new ArrayList<>(this.failedDocuments.subList(this.reportedFailedDocuments,
+                    this.failedDocuments.size()));
+            this.reportedFailedDocuments = this.failedDocuments.size();
+            return newFailedDocuments;
+        }
+    }
+
+    /**
+     * Returns the total number of successfully written documents.
+     * @return number of written documents
+     */
+    long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    /**
+     * Returns the total number of documents that could not be written.
+     * @return number of failed documents
+     */
+    long getFailedCount() {
+        return this.failedCount.get();
+    }
+}
@@ -0,0 +1,103 @@
+package com.tuberlin.dbpro.services;
+
+import org.osgeo.proj4j.BasicCoordinateTransform;
+import org.osgeo.proj4j.CRSFactory;
+import org.osgeo.proj4j.CoordinateTransform;
+import org.osgeo.proj4j.ProjCoordinate;
+import org.springframework.stereotype.Service;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service transforming image patch coordinates from their UTM source CRS (EPSG:326xx / EPSG:327xx) to EPSG:4326.
+ * proj4j transforms keep intermediate state and are therefore not thread-safe: every ingestion thread gets its own
+ * cache holding one transform per UTM zone, so a transform is only created once per zone and thread.
+ */
+@Service
+public class CoordinateTransformService {
+
+    /**
+     * Factor for rounding transformed coordinates to 13 decimal places.
+     */
+    private static final double ROUNDING_FACTOR = 10000000000000d;
+
+    /**
+     * Coordinate reference system factory instance (creation of CRS objects is synchronized on it).
+     */
+    private final CRSFactory factory = new CRSFactory();
+
+    /**
+     * Per-thread cache of transforms by source EPSG code.
+     */
+    private final ThreadLocal<Map<String, CachedTransform>> transforms = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Transforms the given interleaved x/y coordinates (x0, y0, x1, y1, ...) in place from the given source CRS to
+     * EPSG:4326 (x = longitude, y = latitude), rounded to 13 decimal places.
+     * @param srcCrs EPSG code of the source CRS (e.g. "32634")
+     * @param coordinates interleaved x/y coordinates, overwritten with the transformed coordinates
+     * @param pointCount number of points to transform
+     */
+    public void transformToWgs84(String srcCrs, double[] coordinates, int pointCount) {
+        CachedTransform transform = this.getTransform(srcCrs);
+
+        for (int i = 0; i < pointCount * 2; i += 2) {
+            transform.source.x = coordinates[i];
+            transform.source.y = coordinates[i + 1];
+            transform.transform.transform(transform.source, transform.target);
+
+            // double rounding: https://stackoverflow.com/questions/153724/how-to-round-a-number-to-n-decimal-places-in-java
+            // last access: 02 July 2020, around 1PM UTC+1
+            coordinates[i] = Math.round(transform.target.x * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+            coordinates[i + 1] = Math.round(transform.target.y * ROUNDING_FACTOR) / ROUNDING_FACTOR;
+        }
+    }
+
+    /**
+     * Returns the cached transform of the calling thread for the given source CRS, creating it on first use.
+     * @param srcCrs EPSG code of the source CRS
+     * @return cached transform to EPSG:4326
+     */
+    private CachedTransform getTransform(String srcCrs) {
+        Map<String, CachedTransform> threadTransforms = this.transforms.get();
+        CachedTransform transform = threadTransforms.get(srcCrs);
+
+        if (transform == null) {
+            // Proj4j example: https://stackoverflow.com/questions/38906402/proj-4-java-convert-coordinates-from-wgs84-to-epsg4141
+            // last access: 02 July 2020, around 1PM UTC+1
+            // the factory's registry is lazily initialized and shared, hence synchronized creation
+            synchronized (this.factory) {
+                transform = new CachedTransform(new BasicCoordinateTransform(
+                        this.factory.createFromName("EPSG:" + srcCrs), this.factory.createFromName("EPSG:4326")));
+            }
+            threadTransforms.put(srcCrs, transform);
+        }
+
+        return transform;
+    }
+
+    /**
+     * Transform of a single thread and zone together with its reusable source and target coordinates.
+     */
+    private static class CachedTransform {
+
+        /**
+         * proj4j transform from the source CRS to EPSG:4326.
+         */
+        private final CoordinateTransform transform;
+
+        /**
+         * Reusable source and target coordinate objects.
+         */
+        private final ProjCoordinate source = new ProjCoordinate();
+        private final ProjCoordinate target = new ProjCoordinate();
+
+        /**
+         * Creates a cached transform.
+         * @param transform proj4j transform from the source CRS to EPSG:4326
+         */
+        private CachedTransform(CoordinateTransform transform) {
+            this.transform = transform;
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package com.tuberlin.dbpro.services;
 
 import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.LabelSummary;
 import com.tuberlin.dbpro.models.database.PatchImages;
+import com.tuberlin.dbpro.models.database.PatchSummary;
 import com.tuberlin.dbpro.models.frontend.InputRequest;
-import com.tuberlin.dbpro.repositories.GeoJsonRepository;
+import com.tuberlin.dbpro.models.frontend.OutputResponse;
 import com.tuberlin.dbpro.repositories.PatchImageRepository;
+import com.mongodb.client.model.CountOptions;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
 import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -19,12 +37,6 @@ import java.util.stream.Collectors;
 @Service
 public class DatabaseService {
 
-    /**
-     * GeoJson repository instance for GeoJson-related queries.
-     */
-    @Autowired
-    private GeoJsonRepository geoJsonRepository;
-
     /**
      * Patch image repository for merely storing the image files.
      */
@@ -37,6 +49,133 @@ public class DatabaseService {
     @Autowired
     private LabelService labelService;
 
+    /**
+     * In-memory patch index instance answering label-only queries.
+     */
+    @Autowired
+    private PatchIndexService patchIndexService;
+
+    /**
+     * Query planner instance choosing the index of combined label and location queries.
+     */
+    @Autowired
+    private QueryPlannerService queryPlannerService;
+
+    /**
+     * Query result cache in front of the database.
+     */
+    @Autowired
+    private QueryCacheService queryCacheService;
+
+    /**
+     * Materialized label histograms per grid cell, counting newly ingested patches.
+     */
+    @Autowired
+    private LabelGridService labelGridService;
+
+    /**
+     * MongoTemplate instance for bulk operations.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Number of documents written per bulk write.
+     */
+    @Value("${persistence.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Maximum time in ms a document waits in an incomplete batch before being written.
+     */
+    @Value("${persistence.flush-interval-ms:2000}")
+    private long flushIntervalMillis = 2000;
+
+    /**
+     * Label encoding used by label queries: "chars" (character list) or "bitmask" (64-bit label mask).
+     */
+    @Value("${query.label-encoding:chars}")
+    private String labelEncoding = "chars";
+
+    /**
+     * Whether location queries on rectangles are prefiltered by the geohash cells of the patches (see
+     * GeohashCells) instead of testing the geometry of every candidate.
+     */
+    @Value("${query.geohash-cells:false}")
+    private boolean geohashCells;
+
+    /**
+     * Number of documents fetched per cursor batch when streaming query results.
+     */
+    @Value("${query.cursor-batch-size:1000}")
+    private int cursorBatchSize = 1000;
+
+    /**
+     * Default and maximum number of image patches per result page.
+     */
+    @Value("${query.page-size:1000}")
+    private int pageSize = 1000;
+    @Value("${query.max-page-size:10000}")
+    private int maxPageSize = 10000;
+
+    /**
+     * Default cluster radius in screen pixels of clustered visual queries, and the number of image patches from
+     * which a grid cell is returned as a cluster instead of as individual patches.
+     */
+    @Value("${query.cluster-radius:60}")
+    private int clusterRadius = 60;
+    @Value("${query.cluster-min-size:10}")
+    private int clusterMinSize = 10;
+
+    /**
+     * Batching writers for the GeoJson and patch images collections.
+     */
+    private BulkWriter<GeoJson> geoJsonWriter;
+    private BulkWriter<PatchImages> patchImagesWriter;
+
+    /**
+     * Initializes the batching writers once the MongoTemplate is injected.
+     */
+    @PostConstruct
+    void initializeBulkWriters() {
+        // documents are keyed by patch name so repeated or resumed loads replace instead of duplicating them
+        this.geoJsonWriter = new BulkWriter<>(this.mongoTemplate, GeoJson.class, "properties.patchName",
+                geoJson -> geoJson.getProperties().getPatchName(), this.batchSize, this.flushIntervalMillis);
+        this.patchImagesWriter = new BulkWriter<>(this.mongoTemplate, PatchImages.class, "_id",
+                PatchImages::getPatchName, this.batchSize, this.flushIntervalMillis);
+
+        // keep the in-memory patch index current and outdate cached results with every committed batch
+        this.geoJsonWriter.addCommitListener(this.patchIndexService::addAll);
+        this.geoJsonWriter.addCommitListener(this.queryPlannerService::addAll);
+        this.geoJsonWriter.addCommitListener(geoJsons -> this.queryCacheService.bumpDatasetVersion());
+        this.geoJsonWriter.addInsertListener(this.labelGridService::addAll);
+    }
+
+    /**
+     * Registers a listener notified with every committed batch of GeoJson objects.
+     * @param listener commit listener
+     */
+    void addGeoJsonCommitListener(Consumer<List<GeoJson>> listener) {
+        this.geoJsonWriter.addCommitListener(listener);
+    }
+
+    /**
+     * Registers a listener notified with every committed batch of patch images objects.
+     * @param listener commit listener
+     */
+    void addPatchImagesCommitListener(Consumer<List<PatchImages>> listener) {
+        this.patchImagesWriter.addCommitListener(listener);
+    }
+
+    /**
+     * Writes remaining batched documents on shutdown.
+     */
+    @PreDestroy
+    void closeBulkWriters() {
+        this.geoJsonWriter.close();
+        this.patchImagesWriter.close();
+    }
+
     /**
      * Returns a list of matching image patch names based on the passed polygon location and user parameters
      * like labels and query type.
@@ -49,9 +188,60 @@ public class DatabaseService {
         // labels are first mapped to character to accelerate queries, e.g. "Sea and ocean" -> 'f'
         List<Character> targetLabels = this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
 
+        // repeated requests are answered from the query result cache
+        return this.queryCacheService.get(inputRequest.getQueryType(), targetLabels, polygon,
+                inputRequest.getGeospatialQueryOperator(),
+                () -> this.returnPatchSummaries(this.queryPatchSummaries(inputRequest, polygon, targetLabels)));
+    }
+
+    /**
+     * Returns the matching image patches of a visual query clustered for the requested map zoom level: label summary
+     * lines, one "cluster:" line per grid cell with at least query.cluster-min-size patches and the "patch:" lines
+     * of the patches in all smaller cells.
+     * @param inputRequest input request object from frontend (with zoom level and optional cluster radius)
+     * @param polygon polygon location
+     * @return result lines of the clustered image patches
+     */
+    List<String> getClusteredPatchImageNamesFromDatabase(InputRequest inputRequest, GeoJsonPolygon polygon) {
+        List<Character> targetLabels = this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
+        int zoom = Math.max(0, Math.min(PatchClusters.MAX_ZOOM, inputRequest.getZoom()));
+        int radius = inputRequest.getClusterRadius() != null && inputRequest.getClusterRadius() > 0 ?
+                Math.min(PatchClusters.MAX_RADIUS, inputRequest.getClusterRadius()) : this.clusterRadius;
+
+        // every zoom level and radius is cached separately, as the clusters differ
+        return this.queryCacheService.get(inputRequest.getQueryType(), targetLabels, polygon,
+                inputRequest.getGeospatialQueryOperator(), "clusters " + zoom + "/" + radius,
+                () -> this.returnClusteredPatchSummaries(this.queryPatchSummaries(inputRequest, polygon,
+                        targetLabels), zoom, radius));
+    }
+
+    /**
+     * Returns the patch summaries of the image patches matching the passed polygon location and user parameters
+     * like labels and query type, bypassing the query result cache.
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location
+     * @param targetLabels encoded labels of the request
+     * @return patch summaries of the matching image patches
+     */
+    private List<PatchSummary> queryPatchSummaries(InputRequest inputRequest, GeoJsonPolygon polygon,
+                                                   List<Character> targetLabels) {
+
+        // rectangles are answered from the in-memory R-tree and label bitmaps if the patch index is loaded,
+        // other geometries fall back to MongoDB's 2dsphere index
+        if (polygon != null && (targetLabels.size() != 44 || inputRequest.getQueryType().equals("CONTAINS_SOME"))) {
+            List<PatchSummary> indexed = this.patchIndexService.query(inputRequest.getQueryType(),
+                    targetLabels.size() == 44 ? null : targetLabels, polygon,
+                    inputRequest.getGeospatialQueryOperator());
+            if (indexed != null) {
+                System.out.println("PATCH INDEX - " + inputRequest.getQueryType() + " QUERY - WITH COORDINATES - " +
+                        inputRequest.getGeospatialQueryOperator());
+                return indexed;
+            }
+        }
+
         // no label restriction requested: no need to filter labels
         if (targetLabels.size() == 44) {
-            return this.getPatchImageNamesFullLabelSelection(inputRequest, polygon);
+            return this.getPatchImageNamesFullLabelSelection(inputRequest, polygon, targetLabels);
         } else {
             // label subset has been selected: need for label filtering / differentiation
             if (inputRequest.getQueryType().equals("CONTAINS_ALL")) {
@@ -65,12 +255,15 @@ public class DatabaseService {
     }
 
     /**
-     * Returns a list of all the image patch names matching the search criteria with all labels selected.
+     * Returns the patch summaries of all the image patches matching the search criteria with all labels selected.
      * @param inputRequest input request object from frontend
      * @param polygon polygon location
-     * @return list of matching image patch names
+     * @param targetLabels target labels (all 44)
+     * @return patch summaries of the matching image patches
      */
-    private List<String> getPatchImageNamesFullLabelSelection(InputRequest inputRequest, GeoJsonPolygon polygon) {
+    private List<PatchSummary> getPatchImageNamesFullLabelSelection(InputRequest inputRequest,
+                                                                    GeoJsonPolygon polygon,
+                                                                    List<Character> targetLabels) {
         String queryText = "";
         if (inputRequest.getQueryType().equals("CONTAINS_SOME")) {
             if (polygon == null) {
@@ -79,21 +272,20 @@ public class DatabaseService {
                 queryText = "ALL LABELS REQUESTED - CONTAINS_SOME QUERY - NO COORDINATES";
                 System.out.println(queryText);
 
-                return returnPatchNames(this.geoJsonRepository.findAll());
+                List<PatchSummary> indexed = this.patchIndexService.all();
+                if (indexed != null) {
+                    return indexed;
+                }
+                // stream the whole collection through a cursor instead of loading every document at once
+                return this.streamPatchSummaries(new Query());
             } else {
                 queryText = "ALL LABELS REQUESTED - CONTAINS_SOME QUERY - WITH COORDINATES - " +
                         inputRequest.getGeospatialQueryOperator();
                 System.out.println(queryText);
 
-                if (inputRequest.getGeospatialQueryOperator().equals("GEO_INTERSECTS")) {
-                    // return all names intersecting a given location as every image patch contains
-                    // at least one label out of the 44 available ones
-                    return returnPatchNames(this.geoJsonRepository.findByLocationIntersects(polygon));
-                } else {
-                    // return all names within given location as every image patch contains
-                    // at least one label out of the 44 available ones
-                    return returnPatchNames(this.geoJsonRepository.findByLocationWithin(polygon));
-                }
+                // return all names intersecting (or within) a given location as every image patch contains
+                // at least one label out of the 44 available ones
+                return this.findPatchSummaries(inputRequest, polygon, targetLabels);
             }
         } else {
             // no single point has at least all 44 labels (for CONTAINS_ONLY) or even more (for CONTAINS_ALL)
@@ -105,124 +297,525 @@ public class DatabaseService {
     }
 
     /**
-     * Returns a list of all the image patch names matching the search criteria with the label filter on and
-     * for the CONTAINS_ALL query type.
+     * Returns the patch summaries of all the image patches matching the search criteria with the label filter on
+     * and for the CONTAINS_ALL query type.
      * @param inputRequest input request object from frontend
      * @param polygon polygon location
      * @param targetLabels target labels
-     * @return list of matching image patch names
+     * @return patch summaries of the matching image patches
      */
-    private List<String> getPatchImageNamesLabelFilterContainsAll(InputRequest inputRequest, GeoJsonPolygon polygon,
-                                                                  List<Character> targetLabels) {
+    private List<PatchSummary> getPatchImageNamesLabelFilterContainsAll(InputRequest inputRequest,
+                                                                        GeoJsonPolygon polygon,
+                                                                        List<Character> targetLabels) {
         String queryText = "";
         // all image patch names carrying at least the provided labels requested
         if (polygon == null) {
             // no coordinates provided: pure label query
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_ALL QUERY - NO COORDINATES";
             System.out.println(queryText);
-            return returnPatchNames(this.geoJsonRepository.findByContainsAllPropertiesLabels(targetLabels));
+
+            // answered from the in-memory label bitmaps if the patch index is loaded
+            List<PatchSummary> indexed = this.patchIndexService.query("CONTAINS_ALL", targetLabels);
+            if (indexed != null) {
+                return indexed;
+            }
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
         } else {
             // hard case: frontend requests all image patch names with all (or more than the) requested labels
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_ALL QUERY - WITH COORDINATES - " +
                     inputRequest.getGeospatialQueryOperator();
             System.out.println(queryText);
 
-            if (inputRequest.getGeospatialQueryOperator().equals("GEO_INTERSECTS")) {
-                // intersecting the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsAllPropertiesLabelsAndLocationIntersects(targetLabels, polygon));
-            } else {
-                // within the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsAllPropertiesLabelsAndLocationWithin(targetLabels, polygon));
-            }
+            // intersecting or within the passed location, as given by the geospatial query operator
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
         }
     }
 
     /**
-     * Returns a list of all the image patch names matching the search criteria with the label filter on and
-     * for the CONTAINS_SOME query type.
+     * Returns the patch summaries of all the image patches matching the search criteria with the label filter on
+     * and for the CONTAINS_SOME query type.
      * @param inputRequest input request object from frontend
      * @param polygon polygon location
      * @param targetLabels target labels
-     * @return list of matching image patch names
+     * @return patch summaries of the matching image patches
      */
-    private List<String> getPatchImageNamesLabelFilterContainsSome(InputRequest inputRequest, GeoJsonPolygon polygon,
-                                                                   List<Character> targetLabels) {
+    private List<PatchSummary> getPatchImageNamesLabelFilterContainsSome(InputRequest inputRequest,
+                                                                         GeoJsonPolygon polygon,
+                                                                         List<Character> targetLabels) {
         String queryText = "";
         // all image patch names carrying at least one of the provided labels required
         if (polygon == null) {
             // no location provided: pure label query
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_SOME QUERY - NO COORDINATES";
             System.out.println(queryText);
-            return returnPatchNames(this.geoJsonRepository.findByContainsSomePropertiesLabels(targetLabels));
+
+            // answered from the in-memory label bitmaps if the patch index is loaded
+            List<PatchSummary> indexed = this.patchIndexService.query("CONTAINS_SOME", targetLabels);
+            if (indexed != null) {
+                return indexed;
+            }
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
         } else {
             // hard case: frontend requests all image patch names with at least one of the requested labels
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_SOME QUERY - WITH COORDINATES - " +
                     inputRequest.getGeospatialQueryOperator();
             System.out.println(queryText);
 
-            if (inputRequest.getGeospatialQueryOperator().equals("GEO_INTERSECTS")) {
-                // intersecting the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsSomePropertiesLabelsAndLocationIntersects(targetLabels, polygon));
-            } else {
-                // within the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsSomePropertiesLabelsAndLocationWithin(targetLabels, polygon));
-            }
+            // intersecting or within the passed location, as given by the geospatial query operator
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
         }
     }
 
     /**
-     * Returns a list of all the image patch names matching the search criteria with the label filter on and
-     * for the CONTAINS_ONLY query type.
+     * Returns the patch summaries of all the image patches matching the search criteria with the label filter on
+     * and for the CONTAINS_ONLY query type.
      * @param inputRequest input request object from frontend
      * @param polygon polygon location
      * @param targetLabels target labels
-     * @return list of matching image patch names
+     * @return patch summaries of the matching image patches
      */
-    private List<String> getPatchImageNamesLabelFilterContainsOnly(InputRequest inputRequest, GeoJsonPolygon polygon,
-                                                                   List<Character> targetLabels) {
+    private List<PatchSummary> getPatchImageNamesLabelFilterContainsOnly(InputRequest inputRequest,
+                                                                         GeoJsonPolygon polygon,
+                                                                         List<Character> targetLabels) {
         String queryText = "";
         // CONTAINS_ONLY query: all image patch names carrying exactly and only the provided labels requested
         if (polygon == null) {
             // no location provided: pure label query
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_ONLY QUERY - NO COORDINATES";
             System.out.println(queryText);
-            return returnPatchNames(this.geoJsonRepository.findByContainsOnlyPropertiesLabels(targetLabels));
+
+            // answered from the in-memory label bitmaps if the patch index is loaded
+            List<PatchSummary> indexed = this.patchIndexService.query("CONTAINS_ONLY", targetLabels);
+            if (indexed != null) {
+                return indexed;
+            }
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
         } else {
             // hard case: frontend requests all image patch names with exactly and only the requested labels
             queryText = "LABELS SUBSET REQUESTED - CONTAINS_ONLY QUERY - WITH COORDINATES - " +
                     inputRequest.getGeospatialQueryOperator();
             System.out.println(queryText);
 
-            if (inputRequest.getGeospatialQueryOperator().equals("GEO_INTERSECTS")) {
-                // intersecting the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsOnlyPropertiesLabelsAndLocationIntersects(targetLabels, polygon));
+            // intersecting or within the passed location, as given by the geospatial query operator
+            return this.findPatchSummaries(inputRequest, polygon, targetLabels);
+        }
+    }
+
+    /**
+     * Returns a single result page of image patches matching the input request, ordered by patch name. Pages are
+     * addressed by keyset: the next page starts after the last patch name of the previous page (pageAfter), so
+     * every page is read through the patch name index with a bounded cursor regardless of its offset.
+     * @param inputRequest input request object from frontend including pageAfter and limit
+     * @param polygon polygon location
+     * @return output response containing the patch lines of the page and the token of the next page
+     */
+    OutputResponse getPatchPageFromDatabase(InputRequest inputRequest, GeoJsonPolygon polygon) {
+        int limit = inputRequest.getLimit() == null || inputRequest.getLimit() <= 0
+                ? this.pageSize : Math.min(inputRequest.getLimit(), this.maxPageSize);
+        List<Character> targetLabels = this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
+
+        OutputResponse response = new OutputResponse();
+        Criteria criteria = getQueryCriteria(inputRequest.getQueryType(), targetLabels,
+                this.isBitmaskLabelEncoding(), polygon, inputRequest.getGeospatialQueryOperator(),
+                this.isGeohashCellFiltering());
+        if (criteria == null) {
+            response.setPatchNames(new ArrayList<>());
+            return response;
+        }
+        if (inputRequest.getPageAfter() != null && !inputRequest.getPageAfter().isEmpty()) {
+            criteria.and("properties.patchName").gt(inputRequest.getPageAfter());
+        }
+
+        // one patch more than requested tells whether another page follows
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "properties.patchName"))
+                .limit(limit + 1);
+        List<PatchSummary> summaries = this.streamPatchSummaries(query);
+        if (summaries.size() > limit) {
+            summaries = summaries.subList(0, limit);
+            response.setNextPageAfter(summaries.get(limit - 1).getPatchName());
+        }
+
+        System.out.println("PAGE QUERY - " + inputRequest.getQueryType() + " - " + summaries.size() +
+                " PATCHES AFTER " + inputRequest.getPageAfter());
+        response.setPatchNames(this.returnPatchLines(summaries));
+        return response;
+    }
+
+    /**
+     * Returns the label summary (total and per-label counts) of all image patches matching the input request. The
+     * counting runs on the in-memory patch index if it can answer the request, otherwise in MongoDB (see
+     * aggregateLabelSummary), so no matching document is transferred.
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location
+     * @return label summary of the matching image patches
+     */
+    LabelSummary getLabelSummaryFromDatabase(InputRequest inputRequest, GeoJsonPolygon polygon) {
+        return this.getLabelSummaryFromDatabase(inputRequest, polygon, true);
+    }
+
+    /**
+     * Returns the number of image patches matching the input request (label summary without label counts). Counts
+     * come from the in-memory patch index if it can answer the request, otherwise from countDocuments (or the
+     * collection metadata if nothing is filtered).
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location
+     * @return number of matching image patches
+     */
+    long getCountFromDatabase(InputRequest inputRequest, GeoJsonPolygon polygon) {
+        return this.getLabelSummaryFromDatabase(inputRequest, polygon, false).getTotal();
+    }
+
+    /**
+     * Returns the label summary of all image patches matching the input request.
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location
+     * @param withLabels whether the per-label counts are needed or only the total
+     * @return label summary of the matching image patches
+     */
+    private LabelSummary getLabelSummaryFromDatabase(InputRequest inputRequest, GeoJsonPolygon polygon,
+                                                     boolean withLabels) {
+        List<Character> targetLabels = this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
+        Criteria criteria = getQueryCriteria(inputRequest.getQueryType(), targetLabels,
+                this.isBitmaskLabelEncoding(), polygon, inputRequest.getGeospatialQueryOperator(),
+                this.isGeohashCellFiltering());
+        String queryText = (withLabels ? "SUMMARY QUERY - " : "COUNT QUERY - ") + inputRequest.getQueryType() +
+                (polygon == null ? " - NO COORDINATES" : " - WITH COORDINATES - " +
+                        inputRequest.getGeospatialQueryOperator());
+        if (criteria == null) {
+            System.out.println(queryText);
+            return new LabelSummary();
+        }
+
+        LabelSummary indexed = this.patchIndexService.summarize(inputRequest.getQueryType(),
+                targetLabels.size() == 44 ? null : targetLabels, polygon, inputRequest.getGeospatialQueryOperator(),
+                withLabels);
+        if (indexed != null) {
+            System.out.println("PATCH INDEX - " + queryText);
+            return indexed;
+        }
+
+        System.out.println(queryText);
+        if (withLabels) {
+            return this.aggregateLabelSummary(criteria);
+        }
+        LabelSummary count = new LabelSummary();
+        count.setTotal(criteria.getCriteriaObject().isEmpty()
+                ? this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(GeoJson.class))
+                        .estimatedDocumentCount()
+                : this.countDocuments(criteria));
+        return count;
+    }
+
+    /**
+     * Counts the image patches matching the passed criteria, within the remaining time of a bounded query.
+     * @param criteria query criteria
+     * @return number of matching image patches
+     */
+    private long countDocuments(Criteria criteria) {
+        QueryContext context = QueryContext.current();
+        if (context == null) {
+            return this.mongoTemplate.count(new Query(criteria), GeoJson.class);
+        }
+
+        // MongoTemplate.count does not pass on maxTimeMS, so the mapped filter is counted on the collection
+        context.checkActive();
+        QueryMapper queryMapper = new QueryMapper(this.mongoTemplate.getConverter());
+        Document filter = queryMapper.getMappedObject(criteria.getCriteriaObject(),
+                this.mongoTemplate.getConverter().getMappingContext().getPersistentEntity(GeoJson.class));
+        return this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(GeoJson.class))
+                .countDocuments(filter,
+                        new CountOptions().maxTime(context.getRemainingMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Counts the image patches matching the passed criteria and their labels with a single aggregation:
+     * $match on the criteria, then a $facet counting the matches and, after $unwind of the labels,
+     * $group and $sort by label count.
+     * @param criteria query criteria
+     * @return label summary of the matching image patches
+     */
+    LabelSummary aggregateLabelSummary(Criteria criteria) {
+        QueryContext context = QueryContext.current();
+        if (context == null) {
+            return toLabelSummary(this.mongoTemplate.aggregate(getLabelSummaryAggregation(criteria), Document.class)
+                    .getUniqueMappedResult());
+        }
+
+        // the aggregation options of MongoTemplate have no maxTimeMS, so the mapped pipeline is run on the collection
+        context.checkActive();
+        QueryMapper queryMapper = new QueryMapper(this.mongoTemplate.getConverter());
+        List<Document> pipeline = getLabelSummaryAggregation(criteria).toPipeline(
+                new TypeBasedAggregationOperationContext(GeoJson.class,
+                        this.mongoTemplate.getConverter().getMappingContext(), queryMapper));
+        return toLabelSummary(this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(GeoJson.class))
+                .aggregate(pipeline).maxTime(context.getRemainingMillis(), TimeUnit.MILLISECONDS).first());
+    }
+
+    /**
+     * Returns the label summary aggregation of the passed criteria (see aggregateLabelSummary).
+     * @param criteria query criteria
+     * @return label summary aggregation
+     */
+    static TypedAggregation<GeoJson> getLabelSummaryAggregation(Criteria criteria) {
+        return Aggregation.newAggregation(GeoJson.class,
+                Aggregation.match(criteria),
+                Aggregation.facet(Aggregation.count().as("total")).as("total")
+                        .and(Aggregation.unwind("properties.labels"),
+                                Aggregation.group("properties.labels").count().as("count"),
+                                Aggregation.sort(Sort.Direction.DESC, "count")).as("labels"));
+    }
+
+    /**
+     * Returns the label summary of a label summary aggregation result (see aggregateLabelSummary).
+     * @param result aggregation result
+     * @return label summary
+     */
+    static LabelSummary toLabelSummary(Document result) {
+        LabelSummary labelSummary = new LabelSummary();
+        if (result == null) {
+            return labelSummary;
+        }
+
+        // $count yields no document at all for an empty match
+        List<Document> total = result.getList("total", Document.class, Collections.emptyList());
+        if (!total.isEmpty()) {
+            labelSummary.setTotal(((Number) total.get(0).get("total")).longValue());
+        }
+        for (Document label : result.getList("labels", Document.class, Collections.emptyList())) {
+            // characters are stored as single-character strings
+            labelSummary.getLabelCounts().put(String.valueOf(label.get("_id")).charAt(0),
+                    ((Number) label.get("count")).longValue());
+        }
+        return labelSummary;
+    }
+
+    /**
+     * Returns the query criteria matching the passed labels, query type and location; null if no image patch can
+     * match (all 44 labels requested for CONTAINS_ALL or CONTAINS_ONLY).
+     * @param queryType query type
+     * @param targetLabels character labels to match
+     * @param bitmask whether labels are matched by the 64-bit label mask instead of the character list
+     * @param polygon polygon location or null for pure label queries
+     * @param geospatialQueryOperator geospatial query operator (GEO_INTERSECTS or GEO_WITHIN)
+     * @return query criteria or null if the result set is empty
+     */
+    static Criteria getQueryCriteria(String queryType, List<Character> targetLabels, boolean bitmask,
+                                     GeoJsonPolygon polygon, String geospatialQueryOperator) {
+        return getQueryCriteria(queryType, targetLabels, bitmask, polygon, geospatialQueryOperator, false);
+    }
+
+    /**
+     * Returns the query criteria matching the passed labels, query type and location, optionally prefiltering
+     * rectangle locations by geohash cells (see GeohashCells.getCellCriteria); null if no image patch can match.
+     * @param queryType query type
+     * @param targetLabels character labels to match
+     * @param bitmask whether labels are matched by the 64-bit label mask instead of the character list
+     * @param polygon polygon location or null for pure label queries
+     * @param geospatialQueryOperator geospatial query operator (GEO_INTERSECTS or GEO_WITHIN)
+     * @param geohashCells whether rectangle locations are prefiltered by geohash cells
+     * @return query criteria or null if the result set is empty
+     */
+    static Criteria getQueryCriteria(String queryType, List<Character> targetLabels, boolean bitmask,
+                                     GeoJsonPolygon polygon, String geospatialQueryOperator,
+                                     boolean geohashCells) {
+        Criteria criteria = new Criteria();
+
+        if (targetLabels.isEmpty() && queryType.equals("CONTAINS_ALL")) {
+            // $all with no labels matches nothing, while $bitsAllSet with no bits would match every image patch
+            return null;
+        } else if (targetLabels.size() == 44) {
+            // every image patch contains at least one label, but none contains all of them
+            if (!queryType.equals("CONTAINS_SOME")) {
+                return null;
+            }
+        } else if (bitmask) {
+            // bitwise operators take bit positions, as the criteria API only accepts 32-bit masks
+            List<Integer> positions = targetLabels.stream().map(label -> label - 65).collect(Collectors.toList());
+            if (queryType.equals("CONTAINS_ALL")) {
+                criteria.and("properties.labelMask").bits().allSet(positions);
+            } else if (queryType.equals("CONTAINS_SOME")) {
+                criteria.and("properties.labelMask").bits().anySet(positions);
+            } else {
+                criteria.and("properties.labelMask").is(LabelService.getLabelMask(targetLabels));
+            }
+        } else {
+            // characters are stored as single-character strings
+            List<String> labels = targetLabels.stream().map(String::valueOf).collect(Collectors.toList());
+            if (queryType.equals("CONTAINS_ALL")) {
+                criteria.and("properties.labels").all(labels);
+            } else if (queryType.equals("CONTAINS_SOME")) {
+                criteria.and("properties.labels").in(labels);
+            } else {
+                criteria.and("properties.labels").is(labels);
+            }
+        }
+
+        Criteria cellCriteria = geohashCells && polygon != null
+                ? GeohashCells.getCellCriteria(polygon, geospatialQueryOperator) : null;
+        if (cellCriteria != null) {
+            criteria.andOperator(cellCriteria);
+        } else if (polygon != null) {
+            if ("GEO_INTERSECTS".equals(geospatialQueryOperator)) {
+                criteria.and("location").intersects(polygon);
             } else {
-                // within the passed location
-                return returnPatchNames(this.geoJsonRepository
-                        .findByContainsOnlyPropertiesLabelsAndLocationWithin(targetLabels, polygon));
+                criteria.and("location").within(polygon);
             }
         }
+        return criteria;
+    }
+
+    /**
+     * Returns the patch summaries of all image patches matching the passed labels, query type and location.
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location or null for pure label queries
+     * @param targetLabels target labels
+     * @return patch summaries of the matching image patches
+     */
+    private List<PatchSummary> findPatchSummaries(InputRequest inputRequest, GeoJsonPolygon polygon,
+                                                  List<Character> targetLabels) {
+        Criteria criteria = getQueryCriteria(inputRequest.getQueryType(), targetLabels,
+                this.isBitmaskLabelEncoding(), polygon, inputRequest.getGeospatialQueryOperator(),
+                this.isGeohashCellFiltering());
+        if (criteria == null) {
+            return new ArrayList<>();
+        }
+
+        // the planner pins the index of the more selective predicate for combined label and location queries
+        // (cell-prefiltered queries are split into branches with their own indexes)
+        Query query = new Query(criteria);
+        String hint = this.usesGeohashCells(polygon) ? null : this.queryPlannerService.getHint(
+                inputRequest.getQueryType(), targetLabels.size() == 44 ? null : targetLabels, polygon,
+                this.isBitmaskLabelEncoding());
+        if (hint != null) {
+            query.withHint(hint);
+        }
+        return this.streamPatchSummaries(query);
     }
 
     /**
-     * Persists a given GeoJson object in the database.
+     * Streams the GeoJson documents matching the passed query through a cursor and maps each one to its patch
+     * summary right away, so only one cursor batch is held in memory at a time. Only the summary fields are
+     * fetched (see withSummaryFields) and decoded from the raw BSON documents instead of mapping GeoJson entities.
+     * @param query query to run
+     * @return patch summaries of the matching documents
+     */
+    List<PatchSummary> streamPatchSummaries(Query query) {
+        withSummaryFields(query).cursorBatchSize(this.cursorBatchSize);
+        String collection = this.mongoTemplate.getCollectionName(GeoJson.class);
+
+        // bounded queries (see QueryExecutionService) pass their remaining time on to the server and stop between
+        // documents once abandoned; leaving the loop closes, i.e. kills, the cursor
+        QueryContext context = QueryContext.current();
+        if (context != null) {
+            context.checkActive();
+            query.maxTimeMsec(context.getRemainingMillis());
+        }
+
+        List<PatchSummary> summaries = new ArrayList<>();
+        try (CloseableIterator<Document> documents = this.mongoTemplate.stream(query, Document.class, collection)) {
+            while (documents.hasNext()) {
+                if (context != null) {
+                    context.checkActive();
+                }
+                summaries.add(toPatchSummary(documents.next()));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Restricts the passed query to the fields of a patch summary: patch name, labels and the outer ring of the
+     * footprint (which starts with the upper left corner). The _id, type and label mask fields are excluded.
+     * @param query query to restrict
+     * @return the passed query
+     */
+    static Query withSummaryFields(Query query) {
+        query.fields()
+                .exclude("_id")
+                .include("properties.patchName")
+                .include("properties.labels")
+                .slice("location.coordinates", 1);
+        return query;
+    }
+
+    /**
+     * Returns the patch summary of a projected GeoJson document (see withSummaryFields).
+     * @param document projected GeoJson document
+     * @return patch summary
+     */
+    static PatchSummary toPatchSummary(Document document) {
+        Document properties = (Document) document.get("properties");
+        List<Character> labels = new ArrayList<>();
+        for (Object label : properties.getList("labels", Object.class, Collections.emptyList())) {
+            // characters are stored as single-character strings
+            labels.add(String.valueOf(label).charAt(0));
+        }
+
+        List<?> ring = (List<?>) ((Document) document.get("location")).getList("coordinates", Object.class).get(0);
+        List<?> upperLeft = (List<?>) ring.get(0);
+        return new PatchSummary(properties.getString("patchName"), labels,
+                ((Number) upperLeft.get(0)).doubleValue(), ((Number) upperLeft.get(1)).doubleValue());
+    }
+
+    /**
+     * Returns whether label queries use the 64-bit label mask instead of the character list.
+     * @return whether the bitmask label encoding is configured
+     */
+    boolean isBitmaskLabelEncoding() {
+        return "bitmask".equalsIgnoreCase(this.labelEncoding);
+    }
+
+    /**
+     * Returns whether location queries on rectangles are prefiltered by geohash cells.
+     * @return whether geohash cell filtering is configured
+     */
+    boolean isGeohashCellFiltering() {
+        return this.geohashCells;
+    }
+
+    /**
+     * Returns whether a location query is prefiltered by geohash cells (configured and the polygon is a rectangle).
+     * @param polygon polygon location or null
+     * @return whether the query uses the geohash cells
+     */
+    boolean usesGeohashCells(GeoJsonPolygon polygon) {
+        return this.geohashCells && polygon != null && PatchIndexService.getRectangle(polygon) != null;
+    }
+
+    /**
+     * Persists a given GeoJson object in the database as part of the next bulk write.
      * @param geoJson GeoJson object to persist
      */
     void persistGeoJson(GeoJson geoJson) {
-        this.geoJsonRepository.save(geoJson);
+        this.geoJsonWriter.write(geoJson);
     }
 
     /**
-     * Persists a given PatchImages object in the database.
+     * Persists a given PatchImages object in the database as part of the next bulk write.
      * @param patchImages patch images object to persist
      */
     void persistPatchImages(PatchImages patchImages) {
-        this.patchImageRepository.save(patchImages);
+        this.patchImagesWriter.write(patchImages);
+    }
+
+    /**
+     * Writes all batched documents into the database and reports documents that could not be written since the
+     * last flush (the watch ingestion flushes after every small batch).
+     */
+    void flushPendingWrites() {
+        this.geoJsonWriter.flush();
+        this.patchImagesWriter.flush();
+
+        System.out.println("BULK WRITE SUMMARY: " + this.geoJsonWriter.getWrittenCount() + " geojsons (" +
+                this.geoJsonWriter.getFailedCount() + " failed), " + this.patchImagesWriter.getWrittenCount() +
+                " patch_images (" + this.patchImagesWriter.getFailedCount() + " failed)");
+        for (GeoJson failed : this.geoJsonWriter.getNewFailedDocuments()) {
+            System.out.println("NOT PERSISTED: " + failed.getProperties().getPatchName());
+        }
+        for (PatchImages failed : this.patchImagesWriter.getNewFailedDocuments()) {
+            System.out.println("NOT PERSISTED (IMAGES): " + failed.getPatchName());
+        }
     }
 
     /**
@@ -260,91 +853,212 @@ public class DatabaseService {
             return new ArrayList<>();
         }
 
-        // streams are intended here instead of classic database projections
-        // Why? => Because mongoDB projections always deliver an _id field that we cannot exclude from our result set,
-        // therefore we would have to use streams anyway to drop these
-        // (we don't want to pass unnecessary information to the frontend, just the requested image patch names)
-        // hence, we do not use projections + streams but only streams to save performance
+        // database queries project onto the summary fields (_id excluded, see withSummaryFields),
+        // this mapping is only left for fully loaded GeoJson entities
 
-        List<Object[]> labels = geojsons
+        return returnPatchSummaries(geojsons
                 .parallelStream()
-                .map(geoJson -> geoJson.getProperties().getLabels().toArray())
-                .collect(Collectors.toList());
-        System.out.println("TOTAL No. PATCHES in this selection=" + labels.size());
-
-        // Get the labels of each patch, decoded
-        List<String> labelsString = new ArrayList<String>();
-        // Get a summary of all the labels contained in this List
-        Map<Character, Integer> labelsCharSummary = new TreeMap<>();
-        for(Object [] lab: labels) {
-            String this_patch_labels = "";
-            for(int i=0; i<lab.length; i++){
-                //System.out.println("Char: " + lab[i]);
-                if(labelsCharSummary.containsKey(lab[i])){
-                    int val = labelsCharSummary.get(lab[i]);
-                    val++;
-                    labelsCharSummary.replace((Character)lab[i],val);
-                } else {
-                    labelsCharSummary.put((Character)lab[i],1);
-                }
-                this_patch_labels += this.labelService.getDecodedCharacter((Character)lab[i]) + ", ";
+                .map(DatabaseService::toPatchSummary)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the patch summary (name, labels and upper left corner) of a GeoJson object.
+     * @param geoJson GeoJson object
+     * @return patch summary
+     */
+    static PatchSummary toPatchSummary(GeoJson geoJson) {
+        Point upperLeft = geoJson.getLocation().getCoordinates().get(0).getCoordinates().get(0);
+        return new PatchSummary(geoJson.getProperties().getPatchName(), geoJson.getProperties().getLabels(),
+                upperLeft.getX(), upperLeft.getY());
+    }
+
+    /**
+     * Returns the result lines of the passed patch summaries: total count, label summary and one line per patch
+     * with its name, upper left corner and decoded labels.
+     * @param summaries list of patch summaries
+     * @return result lines
+     */
+    List<String> returnPatchSummaries(List<PatchSummary> summaries) {
+        if (summaries == null || summaries.size() == 0) {
+            return new ArrayList<>();
+        }
+
+        List<String> patchesLabelsNamesCoor = this.returnLabelSummary(summarize(summaries));
+
+        // name, upper left corner (lat;long) and labels of the patches in the selection
+        // TODO: calculate the middle point for the moment returning (ul_long,ul_lat)
+        for (PatchSummary summary : summaries) {
+            patchesLabelsNamesCoor.add(getPatchLine(summary, this.getDecodedLabels(summary)));
+        }
+
+        return patchesLabelsNamesCoor;
+    }
+
+    /**
+     * Returns the label summary of the passed patch summaries, counted in a primitive array indexed by label.
+     * @param summaries list of patch summaries
+     * @return label summary
+     */
+    static LabelSummary summarize(List<PatchSummary> summaries) {
+        long[] counts = new long[64];
+        for (PatchSummary summary : summaries) {
+            for (Character label : summary.getLabels()) {
+                counts[label - 65]++;
             }
-            labelsString.add(this_patch_labels);
         }
-        // label characters are decoded back to normal strings 'f' ->  "Sea and ocean"
-        Map<String, Integer> labelsStringSummary = new TreeMap<>();
-        for (Map.Entry<Character, Integer> entry : labelsCharSummary.entrySet()) {
-            Character key = entry.getKey();
-            Integer value = entry.getValue();
-            labelsStringSummary.put(this.labelService.getDecodedCharacter(key),value);
+
+        Map<Character, Long> labelCounts = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                labelCounts.put((char) (65 + i), counts[i]);
+            }
         }
+        return new LabelSummary(summaries.size(), labelCounts);
+    }
 
-        System.out.println("LABELS CHAR SUMMARY:" + EntriesSortedByValues(labelsCharSummary).toString());
-        System.out.println("LABELS STRING SUMMARY:" + EntriesSortedByValues(labelsStringSummary).toString());
+    /**
+     * Returns the summary lines of a label summary: total count and the decoded labels with their counts,
+     * most frequent label first.
+     * @param labelSummary label summary
+     * @return summary lines
+     */
+    List<String> returnLabelSummary(LabelSummary labelSummary) {
+        System.out.println("TOTAL No. PATCHES in this selection=" + labelSummary.getTotal());
 
-        List<Map.Entry<String,Integer>> returnList = EntriesSortedByValues(labelsStringSummary);
-        List<String> patchesLabelsNamesCoor = new ArrayList<String>();
+        Map<String, Long> labelsStringSummary = this.getDecodedLabelCounts(labelSummary);
 
-        patchesLabelsNamesCoor.add("TOTAL No. PATCHES in this selection=" + labels.size());
-        patchesLabelsNamesCoor.add("LABELS SUMMARY: ");
-        for (Map.Entry<String, Integer> entry : returnList) {
-            patchesLabelsNamesCoor.add(entry.getKey() + "=" + entry.getValue());
+        System.out.println("LABELS CHAR SUMMARY:" + EntriesSortedByValues(labelSummary.getLabelCounts()).toString());
+        System.out.println("LABELS STRING SUMMARY:" + labelsStringSummary.entrySet().toString());
+
+        List<String> lines = new ArrayList<String>();
+        lines.add("TOTAL No. PATCHES in this selection=" + labelSummary.getTotal());
+        lines.add("LABELS SUMMARY: ");
+        for (Map.Entry<String, Long> entry : labelsStringSummary.entrySet()) {
+            lines.add(entry.getKey() + "=" + entry.getValue());
         }
+        return lines;
+    }
 
-        // get the patches names
-        //patchesLabelsNamesCoor.add("PATCHES_NAMES AND COOR:");
-        List<String> patches_names = geojsons
-                .parallelStream()
-                .map(geoJson -> geoJson.getProperties().getPatchName())
-                .collect(Collectors.toList());
-        //for(String str : patches_names) {
-        //    patchesLabelsNamesCoor.add(str);
-        //}
+    /**
+     * Returns the label counts of a label summary with decoded labels, most frequent label first (ties in
+     * alphabetical order).
+     * @param labelSummary label summary
+     * @return decoded label counts
+     */
+    Map<String, Long> getDecodedLabelCounts(LabelSummary labelSummary) {
+        // label characters are decoded back to normal strings 'f' ->  "Sea and ocean"
+        Map<String, Long> labelsStringSummary = new TreeMap<>();
+        for (Map.Entry<Character, Long> entry : labelSummary.getLabelCounts().entrySet()) {
+            labelsStringSummary.put(this.labelService.getDecodedCharacter(entry.getKey()), entry.getValue());
+        }
 
-        // get the coordinates of the patches in the selection
-        List<List<GeoJsonLineString>> locations = geojsons
-                .parallelStream()
-                .map(geoJson -> geoJson.getLocation().getCoordinates())
-                .collect(Collectors.toList());
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : EntriesSortedByValues(labelsStringSummary)) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
 
-        //System.out.println("No. LOCATIONS: " + locations.size());
-        int n=0;
-        for(List<GeoJsonLineString> loc: locations) {
-           for(GeoJsonLineString coor : loc) {
-               // TODO: calculate the middle point for the moment returning (ul_long,ul_lat)
-               //System.out.println("  LineString: " + coor.getCoordinates());
-               //System.out.println("  point[0]: " + coor.getCoordinates().get(0));
-               patchesLabelsNamesCoor.add("patch: " + patches_names.get(n) + ";" +
-                       coor.getCoordinates().get(0).getY()+ ";" +
-                       coor.getCoordinates().get(0).getX() + ";" +
-                       labelsString.get(n));
-               n++;
-           }
+    /**
+     * Returns the decoded labels of a single image patch, e.g. "Mixed forest, Sea and ocean, ".
+     * @param summary patch summary
+     * @return decoded labels
+     */
+    private String getDecodedLabels(PatchSummary summary) {
+        String labels = "";
+        for (Character lab : summary.getLabels()) {
+            labels += this.labelService.getDecodedCharacter(lab) + ", ";
         }
+        return labels;
+    }
 
+    /**
+     * Returns only the patch lines (name, upper left corner and decoded labels) of the passed patch summaries,
+     * without total count and label summary, e.g. for a single result page.
+     * @param summaries list of patch summaries
+     * @return patch lines
+     */
+    List<String> returnPatchLines(List<PatchSummary> summaries) {
+        List<String> lines = new ArrayList<>(summaries.size());
+        for (PatchSummary summary : summaries) {
+            lines.add(getPatchLine(summary, this.getDecodedLabels(summary)));
+        }
+        return lines;
+    }
 
+    /**
+     * Returns the result lines of the passed patch summaries clustered for a map zoom level: total count, label
+     * summary, one line per cluster with its centroid, size and dominant labels, and one line per patch of the
+     * grid cells too small to be clustered (all patches at the highest zoom level).
+     * @param summaries list of patch summaries
+     * @param zoom map zoom level
+     * @param radius cluster radius in screen pixels
+     * @return result lines
+     */
+    List<String> returnClusteredPatchSummaries(List<PatchSummary> summaries, int zoom, int radius) {
+        if (summaries == null || summaries.size() == 0) {
+            return new ArrayList<>();
+        }
 
-        return patchesLabelsNamesCoor;
+        List<String> lines = this.returnLabelSummary(summarize(summaries));
+        int clusters = 0;
+        int patches = 0;
+        for (PatchClusters.Cluster cluster : PatchClusters.cluster(summaries, zoom, radius)) {
+            if (isClustered(cluster, zoom, this.clusterMinSize)) {
+                lines.add(this.getClusterLine(cluster));
+                clusters++;
+            } else {
+                lines.addAll(this.returnPatchLines(cluster.getPatches()));
+                patches += cluster.getPatches().size();
+            }
+        }
+
+        System.out.println("CLUSTERS AT ZOOM " + zoom + ": " + clusters + " clusters and " + patches +
+                " individual patches for " + summaries.size() + " patches");
+        return lines;
+    }
+
+    /**
+     * Returns whether a grid cell is returned as a cluster instead of as individual patches.
+     * @param cluster grid cell
+     * @param zoom map zoom level
+     * @param clusterMinSize minimum number of patches of a cluster
+     * @return whether the grid cell is returned as a cluster
+     */
+    static boolean isClustered(PatchClusters.Cluster cluster, int zoom, int clusterMinSize) {
+        return zoom < PatchClusters.MAX_ZOOM && cluster.getPatches().size() >= Math.max(2, clusterMinSize);
+    }
+
+    /**
+     * Returns the result line of a cluster: "cluster: latitude;longitude;count;labels" with the centroid of the
+     * patch corners and the three most frequent decoded labels with their counts.
+     * @param cluster cluster of image patches
+     * @return result line
+     */
+    private String getClusterLine(PatchClusters.Cluster cluster) {
+        String labels = "";
+        List<Map.Entry<Character, Long>> labelCounts = EntriesSortedByValues(cluster.getLabelCounts());
+        for (Map.Entry<Character, Long> entry : labelCounts.subList(0, Math.min(3, labelCounts.size()))) {
+            labels += this.labelService.getDecodedCharacter(entry.getKey()) + "=" + entry.getValue() + ", ";
+        }
+        return "cluster: " + cluster.getLatitude() + ";" +
+                cluster.getLongitude() + ";" +
+                cluster.getPatches().size() + ";" +
+                labels;
+    }
+
+    /**
+     * Returns the result line of a single image patch: "patch: name;latitude;longitude;labels".
+     * @param summary patch summary
+     * @param labels decoded labels of the patch
+     * @return result line
+     */
+    private static String getPatchLine(PatchSummary summary, String labels) {
+        return "patch: " + summary.getPatchName() + ";" +
+                summary.getLatitude() + ";" +
+                summary.getLongitude() + ";" +
+                labels;
     }
 
 
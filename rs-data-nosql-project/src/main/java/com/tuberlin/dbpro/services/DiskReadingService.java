@@ -1,28 +1,27 @@
 package com.tuberlin.dbpro.services;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tuberlin.dbpro.models.database.GeoJson;
 import com.tuberlin.dbpro.models.database.PatchImages;
 import com.tuberlin.dbpro.models.database.Photo;
 import com.tuberlin.dbpro.models.database.Properties;
 import com.tuberlin.dbpro.models.diskreading.Coordinates;
 import com.tuberlin.dbpro.models.diskreading.MetaJson;
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
 import org.bson.BsonBinarySubType;
 import org.bson.types.Binary;
-import org.osgeo.proj4j.BasicCoordinateTransform;
-import org.osgeo.proj4j.CRSFactory;
-import org.osgeo.proj4j.CoordinateReferenceSystem;
-import org.osgeo.proj4j.ProjCoordinate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.geo.Point;
 import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.stereotype.Service;
-import javax.annotation.PostConstruct;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.stream.StreamSupport;
 
 /**
  * Service class for reading BigEarthNet files from disk into database.
@@ -43,117 +42,406 @@ public class DiskReadingService {
     private LabelService labelService;
 
     /**
-     * Number of currently read patches.
+     * Coordinate transformation service instance (UTM to EPSG:4326).
      */
-    private int numberOfReadPatches;
+    @Autowired
+    private CoordinateTransformService coordinateTransformService;
+
+    /**
+     * Number of worker threads reading image patch files from disk.
+     */
+    @Value("${ingestion.read-threads:4}")
+    private int readThreads = 4;
+
+    /**
+     * Number of worker threads parsing meta JSON files and transforming coordinates.
+     */
+    @Value("${ingestion.parse-threads:4}")
+    private int parseThreads = 4;
+
+    /**
+     * Number of worker threads persisting image patches into the database.
+     */
+    @Value("${ingestion.persist-threads:2}")
+    private int persistThreads = 2;
+
+    /**
+     * Capacity of the bounded queues between two ingestion stages.
+     */
+    @Value("${ingestion.queue-capacity:1024}")
+    private int queueCapacity = 1024;
+
+    /**
+     * Whether the 12 band images are loaded in addition to the meta JSON file.
+     */
+    @Value("${ingestion.include-images:false}")
+    private boolean includeImages;
+
+    /**
+     * Storage of the band images: "inline" (Binary fields of the patch images document) or "gridfs" (streamed
+     * into GridFS, the patch images document keeps the file ids).
+     */
+    @Value("${ingestion.band-storage:inline}")
+    private String bandStorage = "inline";
+
+    /**
+     * Encoding of the stored band images: "tiff" (original files), "uint16" or "uint16-deflate" (decoded at
+     * ingestion time into little-endian uint16 pixels, optionally deflated).
+     */
+    @Value("${ingestion.band-encoding:tiff}")
+    private String bandEncoding = RasterCodec.TIFF;
 
     /**
-     * Map containing the photo title and corresponding binary photo of the current image patch.
+     * Label encoding used by label queries: the 64-bit label mask is only stored for "bitmask".
      */
-    private Map<String, Binary> currentPatchPhotos;
+    @Value("${query.label-encoding:chars}")
+    private String labelEncoding = "chars";
+
+    /**
+     * Band storage service instance for GridFS band images.
+     */
+    @Autowired
+    private BandStorageService bandStorageService;
 
     /**
-     * Object mapper for manual Jackson parsing.
+     * Whether the BigEarthNet data set is loaded once the application has started.
      */
-    private ObjectMapper objectMapper;
+    @Value("${ingestion.on-startup:false}")
+    private boolean ingestOnStartup;
 
     /**
-     * Coordinate reference system factory instance needed for coordinate system transformation.
+     * Location of the BigEarthNet data set folders.
      */
-    private CRSFactory factory = new CRSFactory();
+    @Value("${ingestion.data-path:../data}")
+    private String dataPath = "../data";
 
     /**
-     * Coordinate reference system instance containing target coordinate system EPSG:4326.
+     * Location of a (gzip-compressed) BigEarthNet tar archive read instead of the data set folders (if set).
      */
-    private CoordinateReferenceSystem dstCrs = factory.createFromName("EPSG:4326");
+    @Value("${ingestion.archive-path:}")
+    private String archivePath = "";
 
     /**
-     * Reads entire BigEarthNet dataset from disk into database.
+     * Whether folders recorded unchanged in the ingestion manifest are skipped (false reloads everything).
      */
- //Comment after loading the BigEarthNet files
-/*
-    @PostConstruct
-    public void saveBigEarthNetToDatabase () {
-        this.numberOfReadPatches = 0;
-        this.objectMapper = new ObjectMapper();
-        this.currentPatchPhotos = new TreeMap<>();
+    @Value("${ingestion.incremental:true}")
+    private boolean incremental = true;
+
+    /**
+     * Ingestion manifest service instance for resumable, incremental loads.
+     */
+    @Autowired
+    private IngestionManifestService ingestionManifestService;
+
+    /**
+     * Reads the BigEarthNet dataset from disk into database once the application is ready
+     * (enable with ingestion.on-startup=true). Incremental by default: only new or changed image patch folders
+     * are loaded, so an interrupted load resumes after the last committed batch.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void saveBigEarthNetToDatabase() {
+        if (!this.ingestOnStartup) {
+            return;
+        }
 
-        // change this according to the location of your BigEarthNet dataset
-        //File[] allObjects = new File ("../data").listFiles();
-        //File[] allObjects = new File ("/projects/data/BigEarthNet-10000Examples").listFiles();
-        //File[] allObjects = new File ("/media/charfuelan/Backup-2019/projects/data/BigEarthNet-v1.0").listFiles();
-        File[] allObjects = new File ("/data/sentinel2/BigEarthNet-v1.0").listFiles();
+        if (!this.archivePath.isEmpty()) {
+            System.out.println("Total image patches collected: " +
+                    String.valueOf(this.readArchive(new File(this.archivePath))));
+            return;
+        }
+
+        // change ingestion.data-path according to the location of your BigEarthNet dataset
+        File[] allObjects = new File(this.dataPath).listFiles();
 
         if (allObjects != null && allObjects.length > 0) {
-            this.readFiles(allObjects);
+            System.out.println("Total image patches collected: " + String.valueOf(this.readFiles(allObjects)));
         } else {
             System.out.println("NO DATA SET FOUND!");
         }
-        System.out.println("Total image patches collected: " + String.valueOf(numberOfReadPatches));
     }
-*/
-
-    /**
-     * Reads in given image patch folder from disk.
-     * @param files file array containing folder files
-     */
-    private void readFiles(File[] files) {
-        BufferedReader reader = null;
-        StringBuilder stringBuilder = null;
-
-        for(File file: files) {
-            if(file.isDirectory()) {
-                File[] directoryFiles = file.listFiles();
-                if(directoryFiles != null) {
-                    // more efficient persisting process as json files are always read last after all 12 photos are read:
-                    // two instead of 13 insertions
-                    // source inspiration for sorting mechanism:
-                    // https://stackoverflow.com/questions/203030/best-way-to-list-files-in-java-sorted-by-date-modified
-                    // last access: 02 July 2020, around 1PM UTC+1
-                    Arrays.sort(directoryFiles, Comparator.comparing(File::getName));
-
-/* Commented just to load the json metadata and not the tiff files
-                    for(int i = 0; i < 12; i++) { // read images first into memory
-                        this.saveImageIntoImageBuffer(directoryFiles[i]);
-                    }
-*/
-
-                    // then save objects from memory into database
-                    this.numberOfReadPatches++;
-                    this.readAndSaveGeoJsonToDatabase(directoryFiles[12], reader, stringBuilder);
-/* Commented just to load the json metadata and not the tiff files
-                    this.saveBufferedPatchImagesToDatabase();
- */
-                }
+
+    /**
+     * Reads in given image patch folders from disk using the staged ingestion pipeline.
+     * @param files file array containing image patch folders
+     * @return number of persisted image patches
+     */
+    long readFiles(File[] files) {
+        this.ingestionManifestService.load();
+
+        // directory listing is done lazily by the pipeline's scan stage
+        Iterator<PatchFolder> patchFolders = Arrays.stream(files)
+                .map(DiskReadingService::scanPatchFolder)
+                .filter(Objects::nonNull)
+                .filter(this::isChanged)
+                .iterator();
+        return this.runPipeline(patchFolders);
+    }
+
+    /**
+     * Reads in the image patches of a (gzip-compressed) BigEarthNet tar archive in one sequential pass without
+     * extracting it to disk.
+     * @param archive tar or tar.gz archive
+     * @return number of persisted image patches
+     */
+    long readArchive(File archive) {
+        this.ingestionManifestService.load();
+
+        try (TarPatchReader tarPatchReader = new TarPatchReader(archive, this.includeImages)) {
+            Iterable<PatchFolder> patchFolders = () -> tarPatchReader;
+            return this.runPipeline(StreamSupport.stream(patchFolders.spliterator(), false)
+                    .filter(this::isChanged)
+                    .iterator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs the staged ingestion pipeline over the given scanned image patches.
+     * @param patchFolders scanned image patches
+     * @return number of persisted image patches
+     */
+    private long runPipeline(Iterator<PatchFolder> patchFolders) {
+        IngestionPipeline pipeline = new IngestionPipeline(this::readPatchFolder, this::parsePatchFolder,
+                this::persistPatchFolder, this.readThreads, this.parseThreads, this.persistThreads,
+                this.queueCapacity);
+
+        try {
+            return pipeline.run(patchFolders);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            // write the last incomplete batches and the manifest entries of their patches
+            this.databaseService.flushPendingWrites();
+            this.ingestionManifestService.flush();
+        }
+    }
+
+    /**
+     * Reads, maps and persists a small batch of already scanned image patch folders on the calling thread and
+     * writes them immediately, so they become queryable without waiting for a full batch.
+     * @param patchFolders scanned image patch folders
+     * @return number of persisted image patches
+     */
+    long ingestPatchFolders(List<PatchFolder> patchFolders) {
+        long persisted = 0;
+
+        for (PatchFolder patchFolder : patchFolders) {
+            try {
+                this.readPatchFolder(patchFolder);
+                this.parsePatchFolder(patchFolder);
+                this.persistPatchFolder(patchFolder);
+                persisted++;
+            } catch (Exception e) {
+                System.out.println("INGESTION FAILED: " + (patchFolder != null ? patchFolder.getPatchName() : null));
+                e.printStackTrace();
+            }
+        }
+
+        this.databaseService.flushPendingWrites();
+        this.ingestionManifestService.flush();
+        return persisted;
+    }
+
+    /**
+     * Returns whether the given scanned image patch needs to be ingested, i.e. it is not recorded unchanged in the
+     * manifest (or the load is not incremental).
+     * @param patchFolder scanned image patch
+     * @return whether the image patch needs to be ingested
+     */
+    private boolean isChanged(PatchFolder patchFolder) {
+        return !this.incremental || !this.ingestionManifestService.isUpToDate(patchFolder);
+    }
+
+    /**
+     * Lists and sorts the files of a given image patch folder (scan stage). Band images and the meta JSON file are
+     * selected by name, so leftover files in the folder (e.g. partially copied "_B01.tif.part" files) are ignored.
+     * @param file image patch folder
+     * @return ingestion state of the image patch or null if the file is not a complete image patch folder
+     */
+    static PatchFolder scanPatchFolder(File file) {
+        if (!file.isDirectory()) {
+            return null;
+        }
+
+        File[] directoryFiles = file.listFiles();
+        if (directoryFiles == null || directoryFiles.length < 13) {
+            return null;
+        }
+
+        // bands are sorted by name (B01 to B12, then B8A):
+        // source inspiration for sorting mechanism:
+        // https://stackoverflow.com/questions/203030/best-way-to-list-files-in-java-sorted-by-date-modified
+        // last access: 02 July 2020, around 1PM UTC+1
+        Arrays.sort(directoryFiles, Comparator.comparing(File::getName));
+
+        List<File> bandFiles = new ArrayList<>(12);
+        File metadataFile = null;
+        for (File directoryFile : directoryFiles) {
+            if (isBandFile(file.getName(), directoryFile)) {
+                bandFiles.add(directoryFile);
+            } else if (isMetadataFile(file.getName(), directoryFile)) {
+                metadataFile = directoryFile;
+            }
+        }
+        if (bandFiles.size() != 12 || metadataFile == null) {
+            return null;
+        }
+
+        PatchFolder patchFolder = new PatchFolder(file.getName(), file);
+        patchFolder.setBandFiles(bandFiles.toArray(new File[0]));
+        patchFolder.setMetadataFile(metadataFile);
+
+        // fingerprint for detecting changed folders in incremental loads
+        long lastModified = metadataFile.lastModified();
+        long size = metadataFile.length();
+        for (File bandFile : bandFiles) {
+            lastModified = Math.max(lastModified, bandFile.lastModified());
+            size += bandFile.length();
+        }
+        patchFolder.setLastModified(lastModified);
+        patchFolder.setSize(size);
+
+        return patchFolder;
+    }
+
+    /**
+     * Returns whether a file of an image patch folder is one of its band images ("name_Bxx.tif").
+     * @param patchName name of the image patch (folder name)
+     * @param file file of the folder
+     * @return whether the file is a band image
+     */
+    static boolean isBandFile(String patchName, File file) {
+        String name = file.getName();
+        return name.startsWith(patchName + "_B") && name.endsWith(".tif");
+    }
+
+    /**
+     * Returns whether a file of an image patch folder is its meta JSON file ("name_labels_metadata.json").
+     * @param patchName name of the image patch (folder name)
+     * @param file file of the folder
+     * @return whether the file is the meta JSON file
+     */
+    static boolean isMetadataFile(String patchName, File file) {
+        return file.getName().equals(patchName + "_labels_metadata.json");
+    }
+
+    /**
+     * Reads the band images of an image patch into memory if requested and stored inline (read stage). The meta
+     * JSON file is not read here but streamed directly from disk by the parse stage. Patches read from an archive
+     * are already loaded, and bands stored in GridFS are streamed from disk by the persist stage.
+     * @param patchFolder ingestion state of the image patch
+     */
+    private void readPatchFolder(PatchFolder patchFolder) {
+        if (this.includeImages && !this.isGridFsBandStorage() && patchFolder.getBandFiles() != null) {
+            for (File bandFile : patchFolder.getBandFiles()) {
+                this.saveImageIntoImageBuffer(bandFile, patchFolder.getPhotos());
+            }
+        }
+    }
+
+    /**
+     * Maps the read meta JSON file and band images to the internal database representations (parse stage).
+     * @param patchFolder ingestion state of the image patch
+     */
+    private void parsePatchFolder(PatchFolder patchFolder) {
+        try {
+            // parsed straight from the file (or from the bytes of an already loaded patch) without line concatenation
+            MetaJson metaJson = patchFolder.getMetadata() != null ? MetaJsonParser.parse(patchFolder.getMetadata())
+                    : MetaJsonParser.parse(patchFolder.getMetadataFile());
+            patchFolder.setGeoJson(this.getGeoJson(metaJson, patchFolder.getPatchName()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        patchFolder.setMetadata(null);
+
+        if (!patchFolder.getPhotos().isEmpty() && !this.isGridFsBandStorage()) {
+            patchFolder.setPatchImages(getPatchImages(patchFolder.getPhotos(), this.bandEncoding));
+            patchFolder.getPhotos().clear();
+        }
+    }
+
+    /**
+     * Saves the mapped database objects of an image patch into the database (persist stage).
+     * @param patchFolder ingestion state of the image patch
+     */
+    private void persistPatchFolder(PatchFolder patchFolder) {
+        if (this.includeImages && this.isGridFsBandStorage()) {
+            try {
+                patchFolder.setPatchImages(this.bandStorageService.storeBands(patchFolder, this.bandEncoding));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
+
+        this.ingestionManifestService.register(patchFolder, patchFolder.getPatchImages() != null ? 2 : 1);
+        this.databaseService.persistGeoJson(patchFolder.getGeoJson());
+        if (patchFolder.getPatchImages() != null) {
+            this.databaseService.persistPatchImages(patchFolder.getPatchImages());
+        }
+    }
+
+    /**
+     * Returns whether band images are streamed into GridFS instead of being stored inline.
+     * @return whether band images are stored in GridFS
+     */
+    private boolean isGridFsBandStorage() {
+        return "gridfs".equalsIgnoreCase(this.bandStorage);
     }
 
     /**
-     * Adds given image file as to internal image buffer (in-memory).
+     * Adds given image file to the given image buffer (in-memory).
      * @param file File object containing an image
+     * @param photos image buffer of the current image patch
      */
-    private void saveImageIntoImageBuffer(File file) {
+    private void saveImageIntoImageBuffer(File file, Map<String, Binary> photos) {
         try {
-            Binary tif = new Binary(BsonBinarySubType.BINARY, Files.readAllBytes(file.toPath()));
+            // the pooled direct buffer is copied exactly once into the array owned by the BSON Binary
+            ByteBuffer content = BandFileReader.read(file);
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            Binary tif = new Binary(BsonBinarySubType.BINARY, bytes);
             String title = file.getName().substring(0, file.getName().length() - 4);
-            this.currentPatchPhotos.put(title, tif);
+            photos.put(title, tif);
         } catch(Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Saves all image patch photos contained in the internal image buffer into database.
+     * Builds the patch images object from the given buffered image patch photos.
+     * @param photoBuffer image buffer of an image patch
+     * @return patch images object to save in database
      */
-    private void saveBufferedPatchImagesToDatabase() {
-        Photo[] photos = new Photo[12]; // 12 bands to save
+    static PatchImages getPatchImages(Map<String, Binary> photoBuffer) {
+        return getPatchImages(photoBuffer, RasterCodec.TIFF);
+    }
+
+    /**
+     * Builds the patch images object from the given buffered image patch photos, converting the TIFF files into
+     * the given band encoding.
+     * @param photoBuffer image buffer of an image patch
+     * @param bandEncoding encoding of the stored band images
+     * @return patch images object to save in database
+     */
+    static PatchImages getPatchImages(Map<String, Binary> photoBuffer, String bandEncoding) {
+        Photo[] photos = new Photo[photoBuffer.size()];
         int currentPhotoIndex = 0;
 
-        for(Map.Entry<String,Binary> entry: this.currentPatchPhotos.entrySet()) {
+        for(Map.Entry<String,Binary> entry: photoBuffer.entrySet()) {
             Photo photo = new Photo();
             photo.setTitle(entry.getKey());
-            photo.setPhoto(entry.getValue());
+            if (RasterCodec.TIFF.equals(bandEncoding)) {
+                photo.setPhoto(entry.getValue());
+            } else {
+                RasterCodec.Raster raster = RasterCodec.decodeTiff(ByteBuffer.wrap(entry.getValue().getData()));
+                photo.setPhoto(new Binary(BsonBinarySubType.BINARY, RasterCodec.encode(raster, bandEncoding)));
+                photo.setEncoding(bandEncoding);
+                photo.setWidth(raster.width);
+                photo.setHeight(raster.height);
+                photo.setResolution(raster.resolution);
+            }
             photos[currentPhotoIndex] = photo;
             currentPhotoIndex++;
         }
@@ -162,36 +450,8 @@ public class DiskReadingService {
         PatchImages patchImages = new PatchImages();
         patchImages.setPatchName(patchName);
         patchImages.setPhotos(photos);
-        this.databaseService.persistPatchImages(patchImages);
-
-        this.currentPatchPhotos.clear();
-    }
-
-    /**
-     * Maps read meta JSON file to internal GeoJson database representation and saves it the database.
-     * @param file file object containing meta JSON
-     * @param reader BufferedReader instance for reusability
-     * @param stringBuilder StringBuilder instance for reusability
-     */
-    private void readAndSaveGeoJsonToDatabase(File file, BufferedReader reader, StringBuilder stringBuilder) {
-        String patchName = file.getName().substring(0, file.getName().indexOf("_labels_metadata.json"));
-        String line = null;
 
-        try {
-            reader = new BufferedReader(new FileReader(file));
-            stringBuilder = new StringBuilder();
-
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line);
-            }
-
-            MetaJson metaJson = this.objectMapper.readValue(stringBuilder.toString(), MetaJson.class);
-            GeoJson geoJson = this.getGeoJson(metaJson, patchName);
-            this.databaseService.persistGeoJson(geoJson);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        return patchImages;
     }
 
     /**
@@ -204,12 +464,16 @@ public class DiskReadingService {
         Properties properties = new Properties();
         properties.setPatchName(patchName);
         properties.setLabels(this.labelService.getPassedLabelsEncoded(metaJson.getLabels()));
+        if ("bitmask".equalsIgnoreCase(this.labelEncoding)) {
+            properties.setLabelMask(LabelService.getLabelMask(properties.getLabels()));
+        }
 
         GeoJson geoJson = new GeoJson();
         geoJson.setType("Feature");
-        String proj = metaJson.getProjection();
-        String srcCrs = proj.substring(proj.length() - 8, proj.length() - 3);
+        String srcCrs = metaJson.getEpsgCode() != null ? metaJson.getEpsgCode()
+                : MetaJsonParser.parseEpsgCode(metaJson.getProjection());
         geoJson.setLocation(this.getGeoJsonPolygonFromReadCoordinates(metaJson.getCoordinates(), srcCrs));
+        properties.setGeohashCells(GeohashCells.getCells(geoJson.getLocation()));
         geoJson.setProperties(properties);
 
         return geoJson;
@@ -222,26 +486,14 @@ public class DiskReadingService {
      * @return GeoJsonPolygon object in EPSG:4236
      */
     private GeoJsonPolygon getGeoJsonPolygonFromReadCoordinates(Coordinates coordinates, String srcCrs) {
-        // Proj4j example: https://stackoverflow.com/questions/38906402/proj-4-java-convert-coordinates-from-wgs84-to-epsg4141
-        // double rounding: https://stackoverflow.com/questions/153724/how-to-round-a-number-to-n-decimal-places-in-java
-        // last access: 02 July 2020, around 1PM UTC+1
-        ProjCoordinate ul_src = new ProjCoordinate(coordinates.getUlx(), coordinates.getUly());
-        CoordinateReferenceSystem sourceCrs = factory.createFromName("EPSG:" + srcCrs);
-        BasicCoordinateTransform coordinateTransformer = new BasicCoordinateTransform(sourceCrs, dstCrs);
-
-        ProjCoordinate upper_left = coordinateTransformer.transform(ul_src, new ProjCoordinate());
-        double upper_left_x = Math.round(upper_left.x * 10000000000000d) / 10000000000000d;
-        double upper_left_y = Math.round(upper_left.y * 10000000000000d) / 10000000000000d;
-
-        ProjCoordinate lr_src = new ProjCoordinate(coordinates.getLrx(), coordinates.getLry());
-        ProjCoordinate lower_right = coordinateTransformer.transform(lr_src, new ProjCoordinate());
-        double lower_right_x = Math.round(lower_right.x * 10000000000000d) / 10000000000000d;
-        double lower_right_y = Math.round(lower_right.y * 10000000000000d) / 10000000000000d;
+        // upper left and lower right corner, transformed in place
+        double[] corners = {coordinates.getUlx(), coordinates.getUly(), coordinates.getLrx(), coordinates.getLry()};
+        this.coordinateTransformService.transformToWgs84(srcCrs, corners, 2);
 
-        Point upperLeft = new Point(upper_left_x, upper_left_y);
-        Point upperRight = new Point(lower_right_x, upper_left_y);
-        Point lowerRight = new Point(lower_right_x, lower_right_y);
-        Point lowerLeft = new Point(upper_left_x, lower_right_y);
+        Point upperLeft = new Point(corners[0], corners[1]);
+        Point upperRight = new Point(corners[2], corners[1]);
+        Point lowerRight = new Point(corners[2], corners[3]);
+        Point lowerLeft = new Point(corners[0], corners[3]);
 
         // fifth point needed even for rectangles to close GeoJsonPolygon ring
         return new GeoJsonPolygon(upperLeft, upperRight, lowerRight, lowerLeft, upperLeft);
@@ -254,4 +506,12 @@ public class DiskReadingService {
     void setLabelService(LabelService labelService) {
         this.labelService = labelService;
     }
+
+    /**
+     * Sets coordinate transformation service for test compatibility (injected in production).
+     * @param coordinateTransformService coordinate transformation service for test compatibility
+     */
+    void setCoordinateTransformService(CoordinateTransformService coordinateTransformService) {
+        this.coordinateTransformService = coordinateTransformService;
+    }
 }
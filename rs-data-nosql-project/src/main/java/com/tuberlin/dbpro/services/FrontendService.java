@@ -1,10 +1,12 @@
 package com.tuberlin.dbpro.services;
 
+import com.tuberlin.dbpro.models.database.LabelSummary;
 import com.tuberlin.dbpro.models.frontend.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.geo.Point;
 import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import java.util.*;
 
 /**
@@ -19,6 +21,24 @@ public class FrontendService {
     @Autowired
     private DatabaseService databaseService;
 
+    /**
+     * Instance of reactive query service as non-blocking querying interface.
+     */
+    @Autowired
+    private ReactiveQueryService reactiveQueryService;
+
+    /**
+     * Instance of label grid service answering map overviews.
+     */
+    @Autowired
+    private LabelGridService labelGridService;
+
+    /**
+     * Instance of label service for mapping passed labels.
+     */
+    @Autowired
+    private LabelService labelService;
+
     /**
      * Returns whether the passed input request contains valid coordinates for querying.
      * @param inputRequest input request
@@ -87,6 +107,18 @@ public class FrontendService {
 
         // initialize response object, query the database and insert matching patch names in response object
         OutputResponse response = new OutputResponse();
+        if (Boolean.TRUE.equals(inputRequest.getSummaryOnly())) {
+            // summary mode: only total and label counts, aggregated in the database
+            response.setPatchNames(this.databaseService.returnLabelSummary(
+                    this.databaseService.getLabelSummaryFromDatabase(inputRequest, geoJsonPolygon)));
+            return response;
+        }
+        if (inputRequest.getZoom() != null) {
+            // clustered mode: crowded grid cells of the map zoom level are returned as clusters
+            response.setPatchNames(this.databaseService.getClusteredPatchImageNamesFromDatabase(inputRequest,
+                    geoJsonPolygon));
+            return response;
+        }
         List<String> resultNames = this.databaseService.getPatchImageNamesFromDatabase(inputRequest, geoJsonPolygon);
         response.setPatchNames(resultNames);
 
@@ -96,6 +128,90 @@ public class FrontendService {
         return response;
     }
 
+    /**
+     * Returns the number of image patches matching the input request, optionally with the number of matching
+     * image patches per label; no patch is transferred.
+     * @param inputRequest input request
+     * @param withLabels whether the per-label counts are requested
+     * @return summary response
+     */
+    public SummaryResponse getSummaryResponse(InputRequest inputRequest, boolean withLabels) {
+        GeoJsonPolygon geoJsonPolygon = null;
+
+        if (inputRequest.getGeometry() != null && inputRequest.getGeometry().getCoordinates().size() > 0) {
+            geoJsonPolygon = this.getGeoJsonPolygon(inputRequest);
+        }
+
+        System.out.println("Received polygon: " + geoJsonPolygon);
+        System.out.println("Received labels: " + Arrays.toString(inputRequest.getLabels().toArray()));
+
+        SummaryResponse response = new SummaryResponse();
+        if (withLabels) {
+            LabelSummary labelSummary = this.databaseService.getLabelSummaryFromDatabase(inputRequest, geoJsonPolygon);
+            response.setTotal(labelSummary.getTotal());
+            response.setLabels(this.databaseService.getDecodedLabelCounts(labelSummary));
+        } else {
+            response.setTotal(this.databaseService.getCountFromDatabase(inputRequest, geoJsonPolygon));
+        }
+        return response;
+    }
+
+    /**
+     * Returns the stream of image patches matching the input request, emitted as the database cursor yields them.
+     * @param inputRequest input request
+     * @return stream of matching image patches
+     */
+    public Flux<PatchResponse> getPatchStream(InputRequest inputRequest) {
+        GeoJsonPolygon geoJsonPolygon = null;
+
+        if (inputRequest.getGeometry() != null && inputRequest.getGeometry().getCoordinates().size() > 0) {
+            geoJsonPolygon = this.getGeoJsonPolygon(inputRequest);
+        }
+
+        System.out.println("Received polygon: " + geoJsonPolygon);
+        System.out.println("Received labels: " + Arrays.toString(inputRequest.getLabels().toArray()));
+
+        return this.reactiveQueryService.streamPatches(inputRequest, geoJsonPolygon);
+    }
+
+    /**
+     * Returns a single result page of the input request (keyset-paginated by patch name).
+     * @param inputRequest input request including the pagination token and page size
+     * @return output response containing the patch lines of the page and the token of the next page
+     */
+    public OutputResponse getOutputResponsePage(InputRequest inputRequest) {
+        GeoJsonPolygon geoJsonPolygon = null;
+
+        if (inputRequest.getGeometry() != null && inputRequest.getGeometry().getCoordinates().size() > 0) {
+            geoJsonPolygon = this.getGeoJsonPolygon(inputRequest);
+        }
+
+        System.out.println("Received polygon: " + geoJsonPolygon);
+        System.out.println("Received labels: " + Arrays.toString(inputRequest.getLabels().toArray()));
+
+        return this.databaseService.getPatchPageFromDatabase(inputRequest, geoJsonPolygon);
+    }
+
+    /**
+     * Returns the map overview of the viewport passed as geometry: label histograms of the grid cells covering it,
+     * restricted to the requested labels (all labels if none are requested).
+     * @param inputRequest input request containing the viewport rectangle and requested labels
+     * @return overview response (without cells if the viewport is no rectangle)
+     */
+    public OverviewResponse getOverviewResponse(InputRequest inputRequest) {
+        if (inputRequest.getGeometry() == null || inputRequest.getGeometry().getCoordinates().size() == 0) {
+            return new OverviewResponse();
+        }
+        double[] rectangle = PatchIndexService.getRectangle(this.getGeoJsonPolygon(inputRequest));
+        if (rectangle == null) {
+            return new OverviewResponse();
+        }
+
+        List<Character> targetLabels = inputRequest.getLabels() == null ? new ArrayList<>()
+                : this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
+        return this.labelGridService.getOverview(rectangle, targetLabels);
+    }
+
     /**
      * Returns a GeoJsonPolygon object for querying given the input request.
      * @param inputRequest input request containing coordinates and requested labels
@@ -0,0 +1,126 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.List;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Migration backfilling the geohash cells of GeoJson documents ingested before the cells existed. Only the
+ * footprint of documents without cells is streamed, and the cells are written with unordered bulk updates.
+ */
+@Service
+public class GeohashCellMigrationService {
+
+    /**
+     * MongoTemplate instance for streaming and bulk updating GeoJson documents.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Database service instance providing the configured spatial prefiltering.
+     */
+    @Autowired
+    private DatabaseService databaseService;
+
+    /**
+     * Query result cache instance, outdated once cells have been backfilled.
+     */
+    @Autowired
+    private QueryCacheService queryCacheService;
+
+    /**
+     * Number of documents updated per bulk write.
+     */
+    @Value("${persistence.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Backfills missing geohash cells once the application is ready, if location queries are prefiltered by cells
+     * (query.geohash-cells=true). Documents that already carry cells are not touched, so the migration is cheap to
+     * repeat.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!this.databaseService.isGeohashCellFiltering()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Query missingCells = new Query(where(GeohashCells.FIELD).exists(false));
+        missingCells.fields().include("location");
+        String collection = this.mongoTemplate.getCollectionName(GeoJson.class);
+
+        long migrated = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (CloseableIterator<Document> documents = this.mongoTemplate.stream(missingCells, Document.class,
+                collection)) {
+            while (documents.hasNext()) {
+                Document document = documents.next();
+                GeoJsonPolygon footprint = getFootprint((Document) document.get("location"));
+                if (footprint == null) {
+                    continue;
+                }
+
+                if (bulk == null) {
+                    bulk = this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+                bulk.updateOne(new Query(where("_id").is(document.get("_id"))),
+                        Update.update(GeohashCells.FIELD, GeohashCells.getCells(footprint)));
+
+                if (++pending == this.batchSize) {
+                    migrated += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            migrated += bulk.execute().getModifiedCount();
+        }
+        if (migrated > 0) {
+            // cell-prefiltered queries cached before the backfill missed the migrated documents
+            this.queryCacheService.bumpDatasetVersion();
+        }
+
+        System.out.println("GEOHASH CELL MIGRATION: " + migrated + " documents backfilled in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Returns the outer ring of a stored GeoJSON polygon.
+     * @param location stored location document
+     * @return footprint polygon or null if the location is missing or malformed
+     */
+    static GeoJsonPolygon getFootprint(Document location) {
+        if (location == null || !(location.get("coordinates") instanceof List)) {
+            return null;
+        }
+        List<?> rings = (List<?>) location.get("coordinates");
+        if (rings.isEmpty() || !(rings.get(0) instanceof List)) {
+            return null;
+        }
+
+        List<Point> points = new ArrayList<>();
+        for (Object coordinates : (List<?>) rings.get(0)) {
+            List<?> point = (List<?>) coordinates;
+            points.add(new Point(((Number) point.get(0)).doubleValue(), ((Number) point.get(1)).doubleValue()));
+        }
+        return points.size() < 4 ? null : new GeoJsonPolygon(points);
+    }
+}
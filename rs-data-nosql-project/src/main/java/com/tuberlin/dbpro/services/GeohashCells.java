@@ -0,0 +1,289 @@
+package com.tuberlin.dbpro.services;
+
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Criteria;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Geohash cell coverings for spatial prefiltering. Every patch stores the geohash cells (at PRECISION) its
+ * footprint overlaps in an indexed multikey field; a rectangle query is covered by cells as well and split into
+ * interior cells, whose patches are accepted without any geometry test, and boundary cells, whose patches are
+ * refined with the exact geospatial operator. Large rectangles are covered by coarser cells, matched as prefixes of
+ * the stored cells.
+ */
+final class GeohashCells {
+
+    /**
+     * Field holding the geohash cells of a patch.
+     */
+    static final String FIELD = "properties.geohashCells";
+
+    /**
+     * Geohash precision of the stored cells (about 4.9 x 4.9 km; a 1.2 x 1.2 km patch overlaps one to four cells).
+     */
+    static final int PRECISION = 5;
+
+    /**
+     * Maximum number of cells of a query covering; larger rectangles are covered at a coarser precision.
+     */
+    static final int MAX_COVERING_CELLS = 512;
+
+    /**
+     * Geohash alphabet (base 32 without a, i, l and o).
+     */
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /**
+     * Covering of a query rectangle: cells lying inside the rectangle and cells crossing its boundary.
+     */
+    static final class Covering {
+
+        /**
+         * Geohash precision of the covering cells.
+         */
+        final int precision;
+
+        /**
+         * Cells lying inside the rectangle and cells crossing (or touching) its boundary.
+         */
+        final List<String> interior = new ArrayList<>();
+        final List<String> boundary = new ArrayList<>();
+
+        /**
+         * Creates an empty covering.
+         * @param precision geohash precision of the covering cells
+         */
+        Covering(int precision) {
+            this.precision = precision;
+        }
+    }
+
+    /**
+     * No instances.
+     */
+    private GeohashCells() {
+    }
+
+    /**
+     * Returns the geohash of the cell containing the passed point.
+     * @param longitude longitude
+     * @param latitude latitude
+     * @param precision number of geohash characters
+     * @return geohash
+     */
+    static String encode(double longitude, double latitude, int precision) {
+        return encode(column(longitude, precision), row(latitude, precision), precision);
+    }
+
+    /**
+     * Returns the bounds of a geohash cell.
+     * @param cell geohash
+     * @return bounds (min longitude, min latitude, max longitude, max latitude)
+     */
+    static double[] getBounds(String cell) {
+        int precision = cell.length();
+        int column = 0;
+        int row = 0;
+        for (int i = 0; i < precision; i++) {
+            int value = BASE32.indexOf(cell.charAt(i));
+            for (int bit = 4; bit >= 0; bit--) {
+                int set = (value >> bit) & 1;
+                if ((i * 5 + 4 - bit) % 2 == 0) {
+                    column = (column << 1) | set;
+                } else {
+                    row = (row << 1) | set;
+                }
+            }
+        }
+
+        double width = 360.0 / (1L << longitudeBits(precision));
+        double height = 180.0 / (1L << latitudeBits(precision));
+        return new double[]{column * width - 180, row * height - 90, (column + 1) * width - 180,
+                (row + 1) * height - 90};
+    }
+
+    /**
+     * Returns the cells (at PRECISION) overlapped by the bounding box of a patch footprint.
+     * @param footprint patch footprint
+     * @return geohash cells of the patch
+     */
+    static List<String> getCells(GeoJsonPolygon footprint) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.NEGATIVE_INFINITY};
+        for (Point point : footprint.getCoordinates().get(0).getCoordinates()) {
+            bounds[0] = Math.min(bounds[0], point.getX());
+            bounds[1] = Math.min(bounds[1], point.getY());
+            bounds[2] = Math.max(bounds[2], point.getX());
+            bounds[3] = Math.max(bounds[3], point.getY());
+        }
+        Covering covering = cover(bounds, PRECISION);
+        List<String> cells = new ArrayList<>(covering.interior);
+        cells.addAll(covering.boundary);
+        return cells;
+    }
+
+    /**
+     * Returns the covering of a query rectangle at the finest precision (at most PRECISION) with at most
+     * MAX_COVERING_CELLS cells.
+     * @param bounds rectangle (min longitude, min latitude, max longitude, max latitude)
+     * @return covering of the rectangle
+     */
+    static Covering coverRectangle(double[] bounds) {
+        int precision = PRECISION;
+        while (precision > 1 && countCells(bounds, precision) > MAX_COVERING_CELLS) {
+            precision--;
+        }
+        return cover(bounds, precision);
+    }
+
+    /**
+     * Returns the location criteria of a rectangle query prefiltered by geohash cells: patches in interior cells
+     * are accepted directly (for GEO_WITHIN only if none of their cells crosses the boundary), patches in boundary
+     * cells are refined with the exact geospatial operator.
+     * @param polygon polygon location
+     * @param geospatialQueryOperator geospatial query operator (GEO_INTERSECTS or GEO_WITHIN)
+     * @return location criteria or null if the polygon is no axis-aligned rectangle
+     */
+    static Criteria getCellCriteria(GeoJsonPolygon polygon, String geospatialQueryOperator) {
+        double[] rectangle = PatchIndexService.getRectangle(polygon);
+        if (rectangle == null) {
+            return null;
+        }
+
+        Covering covering = coverRectangle(rectangle);
+        List<Object> interior = toCellValues(covering.interior, covering.precision);
+        List<Object> boundary = toCellValues(covering.boundary, covering.precision);
+
+        List<Criteria> branches = new ArrayList<>(2);
+        if (!interior.isEmpty()) {
+            branches.add("GEO_INTERSECTS".equals(geospatialQueryOperator) || boundary.isEmpty()
+                    ? where(FIELD).in(interior)
+                    : where(FIELD).in(interior).nin(boundary));
+        }
+        if (!boundary.isEmpty()) {
+            branches.add("GEO_INTERSECTS".equals(geospatialQueryOperator)
+                    ? where(FIELD).in(boundary).and("location").intersects(polygon)
+                    : where(FIELD).in(boundary).and("location").within(polygon));
+        }
+        return branches.size() == 1 ? branches.get(0)
+                : new Criteria().orOperator(branches.toArray(new Criteria[0]));
+    }
+
+    /**
+     * Returns the values matching the passed covering cells: the cells themselves at PRECISION, prefix patterns of
+     * the stored cells at coarser precisions.
+     * @param cells covering cells
+     * @param precision geohash precision of the covering cells
+     * @return values for $in and $nin
+     */
+    private static List<Object> toCellValues(List<String> cells, int precision) {
+        List<Object> values = new ArrayList<>(cells.size());
+        for (String cell : cells) {
+            values.add(precision == PRECISION ? cell : Pattern.compile("^" + cell));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the cells at the passed precision overlapping or touching a rectangle, split into interior cells
+     * (strictly inside the rectangle) and boundary cells.
+     * @param bounds rectangle (min longitude, min latitude, max longitude, max latitude)
+     * @param precision geohash precision
+     * @return covering of the rectangle
+     */
+    static Covering cover(double[] bounds, int precision) {
+        Covering covering = new Covering(precision);
+        double width = 360.0 / (1L << longitudeBits(precision));
+        double height = 180.0 / (1L << latitudeBits(precision));
+
+        for (int row = row(bounds[1], precision); row <= row(bounds[3], precision); row++) {
+            double cellMinY = row * height - 90;
+            // cells touching an edge of the rectangle are boundary cells: patches in them may stick out of it
+            boolean insideY = cellMinY > bounds[1] && cellMinY + height < bounds[3];
+            for (int column = column(bounds[0], precision); column <= column(bounds[2], precision); column++) {
+                double cellMinX = column * width - 180;
+                boolean inside = insideY && cellMinX > bounds[0] && cellMinX + width < bounds[2];
+                (inside ? covering.interior : covering.boundary).add(encode(column, row, precision));
+            }
+        }
+        return covering;
+    }
+
+    /**
+     * Returns the number of cells at the passed precision covering a rectangle.
+     * @param bounds rectangle (min longitude, min latitude, max longitude, max latitude)
+     * @param precision geohash precision
+     * @return number of covering cells
+     */
+    private static long countCells(double[] bounds, int precision) {
+        return (long) (column(bounds[2], precision) - column(bounds[0], precision) + 1) *
+                (row(bounds[3], precision) - row(bounds[1], precision) + 1);
+    }
+
+    /**
+     * Returns the geohash of a cell by interleaving its column and row bits (longitude bit first).
+     * @param column cell column
+     * @param row cell row
+     * @param precision number of geohash characters
+     * @return geohash
+     */
+    private static String encode(int column, int row, int precision) {
+        int columnBit = longitudeBits(precision);
+        int rowBit = latitudeBits(precision);
+        char[] hash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                boolean longitudeBit = (i * 5 + bit) % 2 == 0;
+                int set = longitudeBit ? (column >> --columnBit) & 1 : (row >> --rowBit) & 1;
+                value = (value << 1) | set;
+            }
+            hash[i] = BASE32.charAt(value);
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Returns the number of longitude bits of a geohash.
+     * @param precision number of geohash characters
+     * @return number of longitude bits
+     */
+    private static int longitudeBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    /**
+     * Returns the number of latitude bits of a geohash.
+     * @param precision number of geohash characters
+     * @return number of latitude bits
+     */
+    private static int latitudeBits(int precision) {
+        return precision * 5 / 2;
+    }
+
+    /**
+     * Returns the cell column of a longitude.
+     * @param longitude longitude
+     * @param precision geohash precision
+     * @return cell column
+     */
+    private static int column(double longitude, int precision) {
+        int columns = 1 << longitudeBits(precision);
+        return Math.min(columns - 1, Math.max(0, (int) Math.floor((longitude + 180) / 360 * columns)));
+    }
+
+    /**
+     * Returns the cell row of a latitude.
+     * @param latitude latitude
+     * @param precision geohash precision
+     * @return cell row
+     */
+    private static int row(double latitude, int precision) {
+        int rows = 1 << latitudeBits(precision);
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / 180 * rows)));
+    }
+}
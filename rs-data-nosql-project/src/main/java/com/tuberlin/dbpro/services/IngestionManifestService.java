@@ -0,0 +1,215 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.IngestedPatch;
+import com.tuberlin.dbpro.models.database.PatchImages;
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import com.tuberlin.dbpro.repositories.IngestionManifestRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service keeping the ingestion manifest: the name, latest modification time and total size of every image patch
+ * folder whose documents have been committed. A folder is only recorded after all of its documents were written by
+ * a committed bulk write, so an interrupted load resumes from the last committed batch and unchanged folders are
+ * skipped.
+ */
+@Service
+public class IngestionManifestService {
+
+    /**
+     * Manifest repository instance for loading the manifest.
+     */
+    @Autowired
+    private IngestionManifestRepository ingestionManifestRepository;
+
+    /**
+     * Database service instance notifying about committed documents.
+     */
+    @Autowired
+    private DatabaseService databaseService;
+
+    /**
+     * MongoTemplate instance for bulk writing manifest entries.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Number of manifest entries written per bulk write.
+     */
+    @Value("${persistence.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Maximum time in ms a committed patch waits before its manifest entry is written.
+     */
+    @Value("${persistence.flush-interval-ms:2000}")
+    private long flushIntervalMillis = 2000;
+
+    /**
+     * Manifest entries by patch name (loaded at the start of an ingestion run).
+     */
+    private final Map<String, IngestedPatch> manifest = new ConcurrentHashMap<>();
+
+    /**
+     * Patches handed to persistence but not yet committed, with their number of outstanding documents.
+     */
+    private final Map<String, PendingPatch> pendingPatches = new ConcurrentHashMap<>();
+
+    /**
+     * Batching writer for manifest entries.
+     */
+    private BulkWriter<IngestedPatch> manifestWriter;
+
+    /**
+     * Initializes the manifest writer and listens for committed documents.
+     */
+    @PostConstruct
+    void initialize() {
+        this.manifestWriter = new BulkWriter<>(this.mongoTemplate, IngestedPatch.class, "_id",
+                IngestedPatch::getPatchName, this.batchSize, this.flushIntervalMillis);
+        this.databaseService.addGeoJsonCommitListener(geoJsons -> {
+            for (GeoJson geoJson : geoJsons) {
+                this.markCommitted(geoJson.getProperties().getPatchName());
+            }
+        });
+        this.databaseService.addPatchImagesCommitListener(patchImages -> {
+            for (PatchImages images : patchImages) {
+                this.markCommitted(images.getPatchName());
+            }
+        });
+    }
+
+    /**
+     * Writes remaining manifest entries on shutdown.
+     */
+    @PreDestroy
+    void close() {
+        this.manifestWriter.close();
+    }
+
+    /**
+     * Loads the manifest from the database (start of an ingestion run). Entries are only added: patches of
+     * concurrent ingestions (e.g. the watch ingestion) stay pending until committed.
+     */
+    void load() {
+        for (IngestedPatch ingestedPatch : this.ingestionManifestRepository.findAll()) {
+            // entries committed in this process are at least as recent as the stored ones
+            this.manifest.putIfAbsent(ingestedPatch.getPatchName(), ingestedPatch);
+        }
+        System.out.println("INGESTION MANIFEST: " + this.manifest.size() + " patches already ingested");
+    }
+
+    /**
+     * Returns whether the given image patch folder has been committed before and did not change since.
+     * @param patchFolder scanned image patch folder
+     * @return whether the folder can be skipped
+     */
+    boolean isUpToDate(PatchFolder patchFolder) {
+        IngestedPatch ingestedPatch = this.manifest.get(patchFolder.getPatchName());
+        return ingestedPatch != null && ingestedPatch.getLastModified() == patchFolder.getLastModified() &&
+                ingestedPatch.getSize() == patchFolder.getSize();
+    }
+
+    /**
+     * Registers an image patch handed to persistence.
+     * @param patchFolder image patch folder
+     * @param documents number of documents that need to be committed for the patch
+     */
+    void register(PatchFolder patchFolder, int documents) {
+        this.pendingPatches.put(patchFolder.getPatchName(), new PendingPatch(patchFolder, documents));
+    }
+
+    /**
+     * Marks one document of a registered image patch as committed and records the patch in the manifest once all
+     * of its documents are committed.
+     * @param patchName name of the image patch
+     */
+    private void markCommitted(String patchName) {
+        PendingPatch pendingPatch = this.pendingPatches.get(patchName);
+        if (pendingPatch == null || pendingPatch.outstandingDocuments.decrementAndGet() > 0) {
+            return;
+        }
+        this.pendingPatches.remove(patchName);
+
+        IngestedPatch ingestedPatch = new IngestedPatch();
+        ingestedPatch.setPatchName(patchName);
+        ingestedPatch.setLastModified(pendingPatch.lastModified);
+        ingestedPatch.setSize(pendingPatch.size);
+        ingestedPatch.setIngestedAt(new Date());
+        this.manifest.put(patchName, ingestedPatch);
+        this.manifestWriter.write(ingestedPatch);
+    }
+
+    /**
+     * Writes all buffered manifest entries (end of an ingestion run).
+     */
+    void flush() {
+        this.manifestWriter.flush();
+        if (!this.pendingPatches.isEmpty()) {
+            System.out.println("INGESTION MANIFEST: " + this.pendingPatches.size() +
+                    " patches not committed, they will be retried in the next run");
+        }
+    }
+
+    /**
+     * Sets manifest repository for test compatibility (injected in production).
+     * @param ingestionManifestRepository Manifest repository for test compatibility
+     */
+    void setIngestionManifestRepository(IngestionManifestRepository ingestionManifestRepository) {
+        this.ingestionManifestRepository = ingestionManifestRepository;
+    }
+
+    /**
+     * Sets database service for test compatibility (injected in production).
+     * @param databaseService Database service for test compatibility
+     */
+    void setDatabaseService(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    /**
+     * Sets mongo template for test compatibility (injected in production).
+     * @param mongoTemplate Mongo template for test compatibility
+     */
+    void setMongoTemplate(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Image patch waiting for its documents to be committed.
+     */
+    private static class PendingPatch {
+
+        /**
+         * Fingerprint of the image patch folder.
+         */
+        private final long lastModified;
+        private final long size;
+
+        /**
+         * Number of documents not committed yet.
+         */
+        private final AtomicInteger outstandingDocuments;
+
+        /**
+         * Creates a pending image patch.
+         * @param patchFolder image patch folder
+         * @param documents number of documents that need to be committed
+         */
+        private PendingPatch(PatchFolder patchFolder, int documents) {
+            this.lastModified = patchFolder.getLastModified();
+            this.size = patchFolder.getSize();
+            this.outstandingDocuments = new AtomicInteger(documents);
+        }
+    }
+}
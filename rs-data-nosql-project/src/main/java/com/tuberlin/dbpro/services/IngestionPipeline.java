@@ -0,0 +1,275 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Staged ingestion pipeline for BigEarthNet image patch folders: scan (directory listing or archive reading),
+ * file read, parse (Jackson + proj4j) and persist. Each stage runs on its own worker pool (a single scan thread, as
+ * directory listings and archives are read sequentially) and hands patches over via bounded queues, so a slow stage
+ * blocks its producers (backpressure) instead of buffering the entire data set on the heap.
+ */
+class IngestionPipeline {
+
+    /**
+     * Marker object signalling the end of the patch stream to a stage worker.
+     */
+    private static final PatchFolder END_OF_STREAM = new PatchFolder(null, null);
+
+    /**
+     * Interval of the progress report in seconds.
+     */
+    private static final int REPORT_INTERVAL_SECONDS = 10;
+
+    /**
+     * Stage processing a single patch folder (reading, parsing or persisting).
+     */
+    private final Consumer<PatchFolder> readStage;
+    private final Consumer<PatchFolder> parseStage;
+    private final Consumer<PatchFolder> persistStage;
+
+    /**
+     * Number of worker threads per stage.
+     */
+    private final int readThreads;
+    private final int parseThreads;
+    private final int persistThreads;
+
+    /**
+     * Capacity of each bounded queue between two stages.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Number of completely persisted patches.
+     */
+    private final AtomicLong persistedPatches = new AtomicLong();
+
+    /**
+     * Number of patches dropped because a stage failed on them.
+     */
+    private final AtomicLong failedPatches = new AtomicLong();
+
+    /**
+     * Creates an ingestion pipeline from the given stage functions and pool sizes.
+     * @param readStage function reading the files of a patch folder
+     * @param parseStage function mapping the read files to database objects
+     * @param persistStage function persisting the mapped database objects
+     * @param readThreads number of read workers
+     * @param parseThreads number of parse workers
+     * @param persistThreads number of persist workers
+     * @param queueCapacity capacity of each bounded queue between two stages
+     */
+    IngestionPipeline(Consumer<PatchFolder> readStage, Consumer<PatchFolder> parseStage,
+                      Consumer<PatchFolder> persistStage, int readThreads, int parseThreads, int persistThreads,
+                      int queueCapacity) {
+        this.readStage = readStage;
+        this.parseStage = parseStage;
+        this.persistStage = persistStage;
+        this.readThreads = Math.max(1, readThreads);
+        this.parseThreads = Math.max(1, parseThreads);
+        this.persistThreads = Math.max(1, persistThreads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Runs the pipeline over the given image patches and blocks until every patch has passed all stages.
+     * @param patchFolders scanned image patches, lazily produced by the scan stage
+     * @return number of persisted image patches
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the pipeline
+     */
+    long run(Iterator<PatchFolder> patchFolders) throws InterruptedException {
+        BlockingQueue<PatchFolder> readQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+        BlockingQueue<PatchFolder> parseQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+        BlockingQueue<PatchFolder> persistQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+
+        List<ExecutorService> pools = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(threadFactory("report"));
+        reporter.scheduleAtFixedRate(() -> this.report(start), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+
+        try {
+            pools.add(this.startStage("persist", this.persistThreads, persistQueue, null, 0, this.persistStage));
+            pools.add(this.startStage("parse", this.parseThreads, parseQueue, persistQueue, this.persistThreads,
+                    this.parseStage));
+            pools.add(this.startStage("read", this.readThreads, readQueue, parseQueue, this.parseThreads,
+                    this.readStage));
+
+            // scan blocks as soon as the read stage falls behind
+            ExecutorService scanPool = Executors.newSingleThreadExecutor(threadFactory("scan"));
+            pools.add(scanPool);
+            Future<?> scan = scanPool.submit(() -> {
+                this.scan(patchFolders, readQueue);
+                return null;
+            });
+
+            for (int i = pools.size() - 1; i >= 0; i--) {
+                pools.get(i).shutdown();
+                pools.get(i).awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            rethrowFailure(scan);
+        } finally {
+            pools.forEach(ExecutorService::shutdownNow);
+            reporter.shutdownNow();
+        }
+
+        this.report(start);
+        return this.persistedPatches.get();
+    }
+
+    /**
+     * Hands every scanned image patch over to the read stage.
+     * @param patchFolders scanned image patches
+     * @param readQueue queue of the read stage
+     * @throws InterruptedException if interrupted while waiting for space in the read queue
+     */
+    private void scan(Iterator<PatchFolder> patchFolders, BlockingQueue<PatchFolder> readQueue)
+            throws InterruptedException {
+        try {
+            while (patchFolders.hasNext()) {
+                readQueue.put(patchFolders.next());
+            }
+        } finally {
+            // also ends the stream if scanning fails (e.g. an unreadable archive), so the workers terminate
+            for (int i = 0; i < this.readThreads; i++) {
+                readQueue.put(END_OF_STREAM);
+            }
+        }
+    }
+
+    /**
+     * Rethrows the failure of the finished scan stage on the calling thread.
+     * @param scan result of the scan stage
+     * @throws InterruptedException if the scan stage was interrupted
+     */
+    private static void rethrowFailure(Future<?> scan) throws InterruptedException {
+        try {
+            scan.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts the worker pool of a single stage.
+     * @param name stage name used for thread naming
+     * @param threads number of workers
+     * @param input queue the stage consumes from
+     * @param output queue the stage produces into (null for the last stage)
+     * @param downstreamThreads number of workers of the downstream stage
+     * @param stage function processing a single patch folder
+     * @return executor service running the stage workers
+     */
+    private ExecutorService startStage(String name, int threads, BlockingQueue<PatchFolder> input,
+                                       BlockingQueue<PatchFolder> output, int downstreamThreads,
+                                       Consumer<PatchFolder> stage) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, threadFactory(name));
+        AtomicInteger runningWorkers = new AtomicInteger(threads);
+
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                boolean completed = false;
+                try {
+                    PatchFolder patchFolder;
+                    while ((patchFolder = input.take()) != END_OF_STREAM) {
+                        try {
+                            stage.accept(patchFolder);
+                        } catch (Exception e) {
+                            // drop the faulty patch, but keep the remaining load going
+                            System.out.println("INGESTION " + name.toUpperCase() + " FAILED: " +
+                                    patchFolder.getPatchName());
+                            e.printStackTrace();
+                            this.failedPatches.incrementAndGet();
+                            continue;
+                        }
+
+                        if (output != null) {
+                            output.put(patchFolder);
+                        } else {
+                            this.persistedPatches.incrementAndGet();
+                        }
+                    }
+
+                    completed = true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // also runs if the worker dies of an error (e.g. OutOfMemoryError on a band), so neither the
+                    // upstream nor the downstream stage waits for it forever
+                    if (runningWorkers.decrementAndGet() == 0) {
+                        this.finishStage(name, input, output, downstreamThreads, completed);
+                    }
+                }
+            });
+        }
+
+        return pool;
+    }
+
+    /**
+     * Ends a stage once its last worker stopped: drops the remaining input if no worker is left to process it and
+     * forwards the end of the stream to every downstream worker.
+     * @param name stage name used for logging
+     * @param input queue the stage consumes from
+     * @param output queue the stage produces into (null for the last stage)
+     * @param downstreamThreads number of workers of the downstream stage
+     * @param completed whether the last worker reached the end of the stream
+     */
+    private void finishStage(String name, BlockingQueue<PatchFolder> input, BlockingQueue<PatchFolder> output,
+                             int downstreamThreads, boolean completed) {
+        try {
+            if (!completed && !Thread.currentThread().isInterrupted()) {
+                System.out.println("INGESTION " + name.toUpperCase() + " STAGE FAILED: dropping remaining patches");
+                // the upstream stage sends its end of stream markers after its last patch
+                while (input.take() != END_OF_STREAM) {
+                    this.failedPatches.incrementAndGet();
+                }
+            }
+            if (output != null) {
+                for (int j = 0; j < downstreamThreads; j++) {
+                    output.put(END_OF_STREAM);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints the current ingestion progress and throughput.
+     * @param start start time of the pipeline in milliseconds
+     */
+    private void report(long start) {
+        long persisted = this.persistedPatches.get();
+        double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+        System.out.println("INGESTION PROGRESS: " + persisted + " patches persisted, " +
+                this.failedPatches.get() + " failed, " + String.format("%.1f", persisted / seconds) + " patches/s");
+    }
+
+    /**
+     * Returns a thread factory naming the stage worker threads.
+     * @param stage name of the stage
+     * @return thread factory for the stage
+     */
+    private static ThreadFactory threadFactory(String stage) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-" + stage + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,263 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.LabelGridCell;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import com.tuberlin.dbpro.models.frontend.OverviewCell;
+import com.tuberlin.dbpro.models.frontend.OverviewResponse;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Materialized label histograms per grid cell for map overviews. Every image patch is counted, by its upper left
+ * corner, in one geohash cell per zoom level (precision 1 to GeohashCells.PRECISION); the cells are kept in the
+ * "label_grid_cells" collection and incremented for every batch of newly ingested patches, so an overview of any
+ * viewport is a single read of at most GeohashCells.MAX_COVERING_CELLS cells by id.
+ */
+@Service
+public class LabelGridService {
+
+    /**
+     * MongoTemplate instance for reading and updating the grid cells.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Label service instance for decoding the labels of the grid cells.
+     */
+    @Autowired
+    private LabelService labelService;
+
+    /**
+     * Whether the grid cells are maintained and overviews are answered (query.overview=true).
+     */
+    @Value("${query.overview:false}")
+    private boolean enabled;
+
+    /**
+     * Whether the grid cells are rebuilt from the GeoJson collection at startup even if they exist.
+     */
+    @Value("${query.overview-rebuild:false}")
+    private boolean rebuild;
+
+    /**
+     * Number of grid cells written per bulk write.
+     */
+    @Value("${persistence.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Whether the grid cells are complete and maintained by ingestion.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Builds the grid cells from the GeoJson collection once the application is ready, if none exist yet or a
+     * rebuild is requested (query.overview-rebuild=true, e.g. after patches were re-ingested with changed labels).
+     * Runs before all other listeners, so the startup and watch ingestion only insert patches once the cells are
+     * complete and incremented by addAll.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        if (!this.enabled) {
+            return;
+        }
+
+        if (this.rebuild || this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(
+                LabelGridCell.class)).estimatedDocumentCount() == 0) {
+            this.rebuildCells();
+        }
+        this.ready = true;
+    }
+
+    /**
+     * Recomputes all grid cells from the projected patch summaries and replaces the stored ones.
+     */
+    private void rebuildCells() {
+        long start = System.currentTimeMillis();
+        Map<String, LabelGridCell> cells = new HashMap<>();
+        Query query = DatabaseService.withSummaryFields(new Query());
+        try (CloseableIterator<Document> documents = this.mongoTemplate.stream(query, Document.class,
+                this.mongoTemplate.getCollectionName(GeoJson.class))) {
+            while (documents.hasNext()) {
+                PatchSummary summary = DatabaseService.toPatchSummary(documents.next());
+                add(cells, summary.getLabels(), summary.getLongitude(), summary.getLatitude());
+            }
+        }
+
+        this.mongoTemplate.remove(new Query(), LabelGridCell.class);
+        List<LabelGridCell> batch = new ArrayList<>(this.batchSize);
+        for (LabelGridCell cell : cells.values()) {
+            batch.add(cell);
+            if (batch.size() == this.batchSize) {
+                this.mongoTemplate.insert(batch, LabelGridCell.class);
+                batch = new ArrayList<>(this.batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.mongoTemplate.insert(batch, LabelGridCell.class);
+        }
+
+        System.out.println("LABEL GRID: " + cells.size() + " cells rebuilt in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds newly inserted GeoJson objects to the grid cells with one upsert per touched cell. Replaced patches are
+     * not passed here (see BulkWriter.addInsertListener), so re-ingestion does not count a patch twice.
+     * @param geoJsons newly inserted GeoJson objects
+     */
+    void addAll(List<GeoJson> geoJsons) {
+        if (!this.enabled) {
+            return;
+        }
+        if (!this.ready) {
+            // only possible if building the cells failed: they are incomplete until rebuilt
+            System.out.println("LABEL GRID: " + geoJsons.size() + " patches not counted, " +
+                    "restart with query.overview-rebuild=true");
+            return;
+        }
+
+        Map<String, LabelGridCell> cells = aggregate(geoJsons);
+        if (cells.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LabelGridCell.class);
+        for (LabelGridCell cell : cells.values()) {
+            bulk.upsert(new Query(where("_id").is(cell.getId())), getIncrement(cell));
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Returns the overview of a viewport: the grid cells covering it at the finest zoom level with at most
+     * GeohashCells.MAX_COVERING_CELLS cells, with the per-label counts of the requested labels.
+     * @param rectangle viewport (min longitude, min latitude, max longitude, max latitude)
+     * @param targetLabels requested character labels (empty for all labels)
+     * @return overview response (without cells if the grid is not maintained)
+     */
+    OverviewResponse getOverview(double[] rectangle, List<Character> targetLabels) {
+        OverviewResponse response = new OverviewResponse();
+        if (!this.ready) {
+            return response;
+        }
+
+        GeohashCells.Covering covering = GeohashCells.coverRectangle(rectangle);
+        List<String> ids = new ArrayList<>(covering.interior);
+        ids.addAll(covering.boundary);
+        response.setLevel(covering.precision);
+        for (LabelGridCell cell : this.mongoTemplate.find(new Query(where("_id").in(ids)), LabelGridCell.class)) {
+            response.getCells().add(this.toOverviewCell(cell, targetLabels));
+        }
+
+        System.out.println("OVERVIEW QUERY - level " + covering.precision + ", " + ids.size() + " cells read, " +
+                response.getCells().size() + " with patches");
+        return response;
+    }
+
+    /**
+     * Returns the overview cell of a grid cell with the decoded counts of the requested labels.
+     * @param cell grid cell
+     * @param targetLabels requested character labels (empty for all labels)
+     * @return overview cell
+     */
+    OverviewCell toOverviewCell(LabelGridCell cell, List<Character> targetLabels) {
+        double[] bounds = GeohashCells.getBounds(cell.getId());
+        OverviewCell overviewCell = new OverviewCell();
+        overviewCell.setCell(cell.getId());
+        overviewCell.setMinLongitude(bounds[0]);
+        overviewCell.setMinLatitude(bounds[1]);
+        overviewCell.setMaxLongitude(bounds[2]);
+        overviewCell.setMaxLatitude(bounds[3]);
+        overviewCell.setTotal(cell.getTotal());
+
+        Map<String, Long> labels = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> label : cell.getLabels().entrySet()) {
+            Character character = label.getKey().charAt(0);
+            if (targetLabels.isEmpty() || targetLabels.contains(character)) {
+                labels.put(this.labelService.getDecodedCharacter(character), label.getValue());
+            }
+        }
+        overviewCell.setLabels(labels);
+        return overviewCell;
+    }
+
+    /**
+     * Returns the grid cell counts of a batch of GeoJson objects.
+     * @param geoJsons GeoJson objects
+     * @return grid cells by geohash
+     */
+    static Map<String, LabelGridCell> aggregate(List<GeoJson> geoJsons) {
+        Map<String, LabelGridCell> cells = new HashMap<>();
+        for (GeoJson geoJson : geoJsons) {
+            if (geoJson.getProperties() != null && geoJson.getLocation() != null) {
+                Point upperLeft = geoJson.getLocation().getCoordinates().get(0).getCoordinates().get(0);
+                add(cells, geoJson.getProperties().getLabels(), upperLeft.getX(), upperLeft.getY());
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Counts a single patch in its grid cell of every zoom level (geohash prefixes of its finest cell).
+     * @param cells grid cells by geohash
+     * @param labels character labels of the patch
+     * @param longitude longitude of the upper left corner
+     * @param latitude latitude of the upper left corner
+     */
+    private static void add(Map<String, LabelGridCell> cells, List<Character> labels, double longitude,
+                            double latitude) {
+        String finestCell = GeohashCells.encode(longitude, latitude, GeohashCells.PRECISION);
+        for (int level = 1; level <= GeohashCells.PRECISION; level++) {
+            LabelGridCell cell = cells.computeIfAbsent(finestCell.substring(0, level), id -> {
+                LabelGridCell newCell = new LabelGridCell();
+                newCell.setId(id);
+                newCell.setLevel(id.length());
+                return newCell;
+            });
+            cell.setTotal(cell.getTotal() + 1);
+            if (labels != null) {
+                for (Character label : labels) {
+                    cell.getLabels().merge(String.valueOf(label), 1L, Long::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the update incrementing a stored grid cell by the counts of the passed one.
+     * @param cell grid cell counts to add
+     * @return increment update (creating the cell if it does not exist)
+     */
+    static Update getIncrement(LabelGridCell cell) {
+        Update update = new Update().setOnInsert("level", cell.getLevel()).inc("total", cell.getTotal());
+        for (Map.Entry<String, Long> label : cell.getLabels().entrySet()) {
+            update.inc("labels." + label.getKey(), label.getValue());
+        }
+        return update;
+    }
+
+    /**
+     * Sets label service for test compatibility (injected in production).
+     * @param labelService Label service for test compatibility
+     */
+    void setLabelService(LabelService labelService) {
+        this.labelService = labelService;
+    }
+}
@@ -0,0 +1,117 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import java.util.List;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Migration backfilling the 64-bit label mask of GeoJson documents ingested before the mask existed. Only the
+ * label list of documents without a mask is streamed, and the masks are written with unordered bulk updates.
+ */
+@Service
+public class LabelMaskMigrationService {
+
+    /**
+     * MongoTemplate instance for streaming and bulk updating GeoJson documents.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Database service instance providing the configured label encoding.
+     */
+    @Autowired
+    private DatabaseService databaseService;
+
+    /**
+     * Query result cache instance, outdated once masks have been backfilled.
+     */
+    @Autowired
+    private QueryCacheService queryCacheService;
+
+    /**
+     * Number of documents updated per bulk write.
+     */
+    @Value("${persistence.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /**
+     * Backfills missing label masks once the application is ready, if label queries use the bitmask encoding
+     * (query.label-encoding=bitmask). Documents that already carry a mask are not touched, so the migration is
+     * cheap to repeat.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!this.databaseService.isBitmaskLabelEncoding()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Query missingMasks = new Query(where("properties.labelMask").exists(false));
+        missingMasks.fields().include("properties.labels");
+        String collection = this.mongoTemplate.getCollectionName(GeoJson.class);
+
+        long migrated = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (CloseableIterator<Document> documents = this.mongoTemplate.stream(missingMasks, Document.class,
+                collection)) {
+            while (documents.hasNext()) {
+                Document document = documents.next();
+                Document properties = (Document) document.get("properties");
+                long mask = getLabelMask(properties != null ? properties.getList("labels", Object.class) : null);
+
+                if (bulk == null) {
+                    bulk = this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+                bulk.updateOne(new Query(where("_id").is(document.get("_id"))),
+                        Update.update("properties.labelMask", mask));
+
+                if (++pending == this.batchSize) {
+                    migrated += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            migrated += bulk.execute().getModifiedCount();
+        }
+        if (migrated > 0) {
+            // bitmask queries cached before the backfill missed the migrated documents
+            this.queryCacheService.bumpDatasetVersion();
+        }
+
+        System.out.println("LABEL MASK MIGRATION: " + migrated + " documents backfilled in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Returns the label mask of a stored character label list (characters are stored as single-character strings).
+     * @param labels stored label list
+     * @return label mask
+     */
+    static long getLabelMask(List<Object> labels) {
+        long mask = 0L;
+        if (labels != null) {
+            for (Object label : labels) {
+                String value = String.valueOf(label);
+                if (!value.isEmpty()) {
+                    mask |= 1L << (value.charAt(0) - 65);
+                }
+            }
+        }
+        return mask;
+    }
+}
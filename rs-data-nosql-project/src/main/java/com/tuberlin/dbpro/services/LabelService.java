@@ -46,8 +46,62 @@ public class LabelService {
         return resultList;
     }
 
+    /**
+     * Returns the 64-bit label mask of the given character labels: bit i is set for the label mapped to
+     * character (65 + i).
+     * @param labels character labels
+     * @return label mask
+     */
+    static long getLabelMask(List<Character> labels) {
+        long mask = 0L;
+        for (Character label : labels) {
+            mask |= 1L << (label - 65);
+        }
+        return mask;
+    }
 
+    /**
+     * Returns the character labels contained in the given label mask, in ascending order.
+     * @param mask label mask
+     * @return character labels
+     */
+    static List<Character> getLabelsFromMask(long mask) {
+        List<Character> labels = new ArrayList<>(Long.bitCount(mask));
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            labels.add((char) (65 + Long.numberOfTrailingZeros(remaining)));
+        }
+        return labels;
+    }
 
+    /**
+     * Returns whether the label mask contains all target labels (CONTAINS_ALL).
+     * @param mask label mask of an image patch
+     * @param targetMask requested label mask
+     * @return whether all target labels are contained
+     */
+    static boolean containsAll(long mask, long targetMask) {
+        return (mask & targetMask) == targetMask;
+    }
+
+    /**
+     * Returns whether the label mask contains at least one of the target labels (CONTAINS_SOME).
+     * @param mask label mask of an image patch
+     * @param targetMask requested label mask
+     * @return whether some target label is contained
+     */
+    static boolean containsSome(long mask, long targetMask) {
+        return (mask & targetMask) != 0;
+    }
+
+    /**
+     * Returns whether the label mask contains exactly the target labels (CONTAINS_ONLY).
+     * @param mask label mask of an image patch
+     * @param targetMask requested label mask
+     * @return whether exactly the target labels are contained
+     */
+    static boolean containsOnly(long mask, long targetMask) {
+        return mask == targetMask;
+    }
 
     /**
      * Initializes the label map so labels read from disk (or requested by frontend) can be mapped to a single character
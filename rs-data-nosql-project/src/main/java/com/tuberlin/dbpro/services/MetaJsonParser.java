@@ -0,0 +1,203 @@
+package com.tuberlin.dbpro.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tuberlin.dbpro.models.diskreading.Coordinates;
+import com.tuberlin.dbpro.models.diskreading.MetaJson;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for BigEarthNet meta JSON files: walks the JSON tokens directly from the file (or an already
+ * read byte array) without building an intermediate String and only extracts the fields needed for ingestion
+ * (labels, coordinates, EPSG code and acquisition date).
+ */
+class MetaJsonParser {
+
+    /**
+     * Start of the EPSG authority entry in a WKT projection string.
+     */
+    private static final char[] EPSG_AUTHORITY = "AUTHORITY[\"EPSG\",\"".toCharArray();
+
+    /**
+     * Start of an EPSG code in "EPSG:xxxxx" notation (fallback for non-WKT projection strings).
+     */
+    private static final char[] EPSG_PREFIX = "EPSG:".toCharArray();
+
+    /**
+     * Jackson factory creating the token parsers (thread-safe, recycles its parse buffers per thread).
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Parses the meta JSON file directly from disk.
+     * @param file meta JSON file
+     * @return parsed meta JSON object
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static MetaJson parse(File file) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            return parse(parser);
+        }
+    }
+
+    /**
+     * Parses the meta JSON file from already read bytes.
+     * @param content bytes of the meta JSON file
+     * @return parsed meta JSON object
+     * @throws IOException if the content is malformed
+     */
+    static MetaJson parse(byte[] content) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            return parse(parser);
+        }
+    }
+
+    /**
+     * Token loop extracting the needed fields of a meta JSON object and skipping all others.
+     * @param parser JSON parser positioned before the root object
+     * @return parsed meta JSON object
+     * @throws IOException if the content is malformed
+     */
+    private static MetaJson parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Meta JSON root is not an object");
+        }
+
+        MetaJson metaJson = new MetaJson();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "labels":
+                    metaJson.setLabels(parseLabels(parser));
+                    break;
+                case "coordinates":
+                    metaJson.setCoordinates(parseCoordinates(parser));
+                    break;
+                case "projection":
+                    // only the EPSG code is needed, the (long) WKT string itself is never materialized
+                    metaJson.setEpsgCode(parseEpsgCode(parser.getTextCharacters(), parser.getTextOffset(),
+                            parser.getTextLength()));
+                    break;
+                case "acquisition_date":
+                    metaJson.setAcquisition_date(parser.getText());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return metaJson;
+    }
+
+    /**
+     * Parses the label array.
+     * @param parser JSON parser positioned at the start of the label array
+     * @return list of labels
+     * @throws IOException if the content is malformed
+     */
+    private static List<String> parseLabels(JsonParser parser) throws IOException {
+        List<String> labels = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+            labels.add(parser.getText());
+        }
+        return labels;
+    }
+
+    /**
+     * Parses the corner coordinates object.
+     * @param parser JSON parser positioned at the start of the coordinates object
+     * @return parsed coordinates
+     * @throws IOException if the content is malformed
+     */
+    private static Coordinates parseCoordinates(JsonParser parser) throws IOException {
+        Coordinates coordinates = new Coordinates();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "ulx":
+                    coordinates.setUlx(parser.getDoubleValue());
+                    break;
+                case "uly":
+                    coordinates.setUly(parser.getDoubleValue());
+                    break;
+                case "lrx":
+                    coordinates.setLrx(parser.getDoubleValue());
+                    break;
+                case "lry":
+                    coordinates.setLry(parser.getDoubleValue());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return coordinates;
+    }
+
+    /**
+     * Returns the EPSG code of the given projection string.
+     * @param projection WKT projection string (or "EPSG:xxxxx" notation)
+     * @return EPSG code of the projection
+     */
+    static String parseEpsgCode(String projection) {
+        char[] chars = projection.toCharArray();
+        return parseEpsgCode(chars, 0, chars.length);
+    }
+
+    /**
+     * Returns the EPSG code of the projection contained in the given character range. The code is taken from the
+     * last EPSG AUTHORITY entry, which belongs to the outermost PROJCS of the WKT string.
+     * @param chars characters containing the projection
+     * @param offset start of the projection within the characters
+     * @param length length of the projection
+     * @return EPSG code of the projection
+     */
+    static String parseEpsgCode(char[] chars, int offset, int length) {
+        int start = lastIndexOf(chars, offset, length, EPSG_AUTHORITY);
+        if (start < 0) {
+            start = lastIndexOf(chars, offset, length, EPSG_PREFIX);
+        }
+        if (start < 0) {
+            throw new IllegalArgumentException("No EPSG code in projection: " + new String(chars, offset, length));
+        }
+
+        int end = start;
+        while (end < offset + length && Character.isDigit(chars[end])) {
+            end++;
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("No EPSG code in projection: " + new String(chars, offset, length));
+        }
+
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * Returns the index directly behind the last occurrence of the pattern within the character range.
+     * @param chars characters to search
+     * @param offset start of the range
+     * @param length length of the range
+     * @param pattern pattern to search for
+     * @return index behind the last occurrence or -1 if not found
+     */
+    private static int lastIndexOf(char[] chars, int offset, int length, char[] pattern) {
+        for (int i = offset + length - pattern.length; i >= offset; i--) {
+            int j = 0;
+            while (j < pattern.length && chars[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i + pattern.length;
+            }
+        }
+        return -1;
+    }
+}
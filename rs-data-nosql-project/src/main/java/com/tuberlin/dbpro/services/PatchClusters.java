@@ -0,0 +1,147 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Zoom-aware grid clustering of matching image patches for visual queries. The upper left corners of the patches are
+ * projected to Web Mercator pixel coordinates of the requested map zoom level (256 pixel tiles, as used by Leaflet)
+ * and grouped into square grid cells with the requested pixel radius as side length, so the map receives one
+ * centroid per crowded cell instead of one marker per patch.
+ */
+final class PatchClusters {
+
+    /**
+     * Highest supported map zoom level; at this level patches are never clustered.
+     */
+    static final int MAX_ZOOM = 22;
+
+    /**
+     * Highest supported cluster radius in screen pixels (a single tile).
+     */
+    static final int MAX_RADIUS = 256;
+
+    /**
+     * Size of a map tile in pixels at zoom level 0.
+     */
+    private static final double TILE_SIZE = 256;
+
+    /**
+     * Latitude limit of the Web Mercator projection.
+     */
+    private static final double MAX_LATITUDE = 85.0511287798;
+
+    /**
+     * Image patches within a single grid cell.
+     */
+    static final class Cluster {
+
+        /**
+         * Image patches of the cell, in result order.
+         */
+        private final List<PatchSummary> patches = new ArrayList<>();
+
+        /**
+         * Sums of the upper left corners of the patches.
+         */
+        private double longitudeSum;
+        private double latitudeSum;
+
+        /**
+         * Adds an image patch to the cluster.
+         * @param summary patch summary
+         */
+        private void add(PatchSummary summary) {
+            this.patches.add(summary);
+            this.longitudeSum += summary.getLongitude();
+            this.latitudeSum += summary.getLatitude();
+        }
+
+        /**
+         * Returns the image patches of the cluster.
+         * @return patch summaries
+         */
+        List<PatchSummary> getPatches() {
+            return patches;
+        }
+
+        /**
+         * Returns the longitude of the centroid of the patch corners.
+         * @return centroid longitude
+         */
+        double getLongitude() {
+            return this.longitudeSum / this.patches.size();
+        }
+
+        /**
+         * Returns the latitude of the centroid of the patch corners.
+         * @return centroid latitude
+         */
+        double getLatitude() {
+            return this.latitudeSum / this.patches.size();
+        }
+
+        /**
+         * Returns the number of image patches of the cluster per character label.
+         * @return label counts by character label, in label order
+         */
+        Map<Character, Long> getLabelCounts() {
+            Map<Character, Long> labelCounts = new TreeMap<>();
+            for (PatchSummary summary : this.patches) {
+                for (Character label : summary.getLabels()) {
+                    labelCounts.merge(label, 1L, Long::sum);
+                }
+            }
+            return labelCounts;
+        }
+    }
+
+    private PatchClusters() {
+    }
+
+    /**
+     * Groups image patches into the grid cells of the passed zoom level and pixel radius.
+     * @param summaries matching image patches
+     * @param zoom map zoom level (clamped to 0 to MAX_ZOOM)
+     * @param radius cluster radius in screen pixels (clamped to 1 to MAX_RADIUS)
+     * @return non-empty clusters in order of their first patch
+     */
+    static List<Cluster> cluster(List<PatchSummary> summaries, int zoom, int radius) {
+        double worldSize = TILE_SIZE * Math.pow(2, Math.max(0, Math.min(MAX_ZOOM, zoom)));
+        double cellSize = Math.max(1, Math.min(MAX_RADIUS, radius));
+        long columns = (long) Math.ceil(worldSize / cellSize) + 1;
+
+        Map<Long, Cluster> cells = new LinkedHashMap<>();
+        for (PatchSummary summary : summaries) {
+            long column = (long) Math.floor(getX(summary.getLongitude(), worldSize) / cellSize);
+            long row = (long) Math.floor(getY(summary.getLatitude(), worldSize) / cellSize);
+            cells.computeIfAbsent(row * columns + column, cell -> new Cluster()).add(summary);
+        }
+        return new ArrayList<>(cells.values());
+    }
+
+    /**
+     * Returns the Web Mercator x pixel coordinate of a longitude.
+     * @param longitude longitude
+     * @param worldSize map width in pixels at the zoom level
+     * @return x pixel coordinate
+     */
+    private static double getX(double longitude, double worldSize) {
+        return (longitude + 180) / 360 * worldSize;
+    }
+
+    /**
+     * Returns the Web Mercator y pixel coordinate of a latitude (clamped to the projection limits).
+     * @param latitude latitude
+     * @param worldSize map height in pixels at the zoom level
+     * @return y pixel coordinate
+     */
+    private static double getY(double latitude, double worldSize) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+    }
+}
@@ -0,0 +1,525 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.LabelSummary;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import com.tuberlin.dbpro.models.database.Properties;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of all image patches: every patch gets a dense ordinal, every label a compressed (Roaring)
+ * bitmap of the ordinals of the patches carrying it, and the patch footprints an STR-packed R-tree. Label queries
+ * and queries with rectangular polygons are answered with bitmap AND/OR operations and tree searches, and only the
+ * matching patch summaries are materialized, without touching the database. The index is built from the database
+ * once the application is ready and kept current with every committed GeoJson bulk write.
+ */
+@Service
+public class PatchIndexService {
+
+    /**
+     * MongoTemplate instance for loading the index.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Whether label-only queries are answered from the in-memory index.
+     */
+    @Value("${query.label-index:false}")
+    private boolean enabled;
+
+    /**
+     * Lock guarding the index: queries share it, updates are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Ordinals by patch name.
+     */
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Patch name, label mask and upper left corner per ordinal.
+     */
+    private String[] patchNames = new String[1024];
+    private long[] labelMasks = new long[1024];
+    private double[] longitudes = new double[1024];
+    private double[] latitudes = new double[1024];
+
+    /**
+     * Bounding box of the footprint per ordinal.
+     */
+    private double[] minLongitudes = new double[1024];
+    private double[] minLatitudes = new double[1024];
+    private double[] maxLongitudes = new double[1024];
+    private double[] maxLatitudes = new double[1024];
+
+    /**
+     * Ordinals of patches with a footprint (patches without location are never spatial matches).
+     */
+    private final RoaringBitmap located = new RoaringBitmap();
+
+    /**
+     * R-tree over the footprints as of the last bulk load.
+     */
+    private PatchRTree tree = new PatchRTree(new int[0], 0, new double[0], new double[0], new double[0],
+            new double[0]);
+
+    /**
+     * Ordinals inserted or moved since the last bulk load: skipped in the tree and scanned linearly instead,
+     * until the tree is rebuilt.
+     */
+    private final RoaringBitmap pendingOrdinals = new RoaringBitmap();
+
+    /**
+     * Minimum number of pending ordinals that triggers a rebuild of the tree.
+     */
+    private static final int MIN_PENDING_BEFORE_REBUILD = 4096;
+
+    /**
+     * Number of indexed patches (next free ordinal).
+     */
+    private int size;
+
+    /**
+     * Bitmap of patch ordinals per label bit (bit i of the label mask).
+     */
+    private final RoaringBitmap[] labelBitmaps = new RoaringBitmap[Long.SIZE];
+
+    /**
+     * Whether the index has been loaded completely and can answer queries.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Creates an empty index.
+     */
+    public PatchIndexService() {
+        for (int i = 0; i < this.labelBitmaps.length; i++) {
+            this.labelBitmaps[i] = new RoaringBitmap();
+        }
+    }
+
+    /**
+     * Loads the index from the database once the application is ready (enable with query.label-index=true).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!this.enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Query query = new Query();
+        query.fields().include("properties").include("location");
+        try (CloseableIterator<GeoJson> geoJsons = this.mongoTemplate.stream(query, GeoJson.class)) {
+            List<GeoJson> batch = new ArrayList<>();
+            while (geoJsons.hasNext()) {
+                batch.add(geoJsons.next());
+                if (batch.size() == 10000) {
+                    this.addAll(batch);
+                    batch.clear();
+                }
+            }
+            this.addAll(batch);
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            for (RoaringBitmap labelBitmap : this.labelBitmaps) {
+                labelBitmap.runOptimize();
+            }
+            this.rebuildTree();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        this.ready = true;
+
+        System.out.println("PATCH INDEX LOADED: " + this.size + " patches in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds (or updates) the given committed GeoJson objects.
+     * @param geoJsons committed GeoJson objects
+     */
+    void addAll(List<GeoJson> geoJsons) {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            for (GeoJson geoJson : geoJsons) {
+                this.add(geoJson);
+            }
+            // during the initial load the tree is built once at the end
+            int rebuildThreshold = Math.max(MIN_PENDING_BEFORE_REBUILD, this.tree.size() / 16);
+            if (this.ready && this.pendingOrdinals.getCardinality() > rebuildThreshold) {
+                this.rebuildTree();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds (or updates) a single GeoJson object; the caller holds the write lock.
+     * @param geoJson GeoJson object
+     */
+    private void add(GeoJson geoJson) {
+        Properties properties = geoJson.getProperties();
+        if (properties == null || properties.getPatchName() == null) {
+            return;
+        }
+
+        long labelMask = properties.getLabelMask() != null ? properties.getLabelMask()
+                : LabelService.getLabelMask(properties.getLabels() != null ? properties.getLabels()
+                : Collections.<Character>emptyList());
+        Integer ordinal = this.ordinals.get(properties.getPatchName());
+
+        if (ordinal == null) {
+            ordinal = this.size++;
+            this.ensureCapacity(this.size);
+            this.ordinals.put(properties.getPatchName(), ordinal);
+            this.patchNames[ordinal] = properties.getPatchName();
+        } else {
+            // re-ingested patch: drop the bits of its previous labels
+            for (long remaining = this.labelMasks[ordinal]; remaining != 0; remaining &= remaining - 1) {
+                this.labelBitmaps[Long.numberOfTrailingZeros(remaining)].remove(ordinal);
+            }
+        }
+
+        this.labelMasks[ordinal] = labelMask;
+        for (long remaining = labelMask; remaining != 0; remaining &= remaining - 1) {
+            this.labelBitmaps[Long.numberOfTrailingZeros(remaining)].add(ordinal);
+        }
+
+        if (geoJson.getLocation() != null) {
+            List<Point> ring = geoJson.getLocation().getCoordinates().get(0).getCoordinates();
+            this.longitudes[ordinal] = ring.get(0).getX();
+            this.latitudes[ordinal] = ring.get(0).getY();
+
+            double minLongitude = Double.POSITIVE_INFINITY;
+            double minLatitude = Double.POSITIVE_INFINITY;
+            double maxLongitude = Double.NEGATIVE_INFINITY;
+            double maxLatitude = Double.NEGATIVE_INFINITY;
+            for (Point point : ring) {
+                minLongitude = Math.min(minLongitude, point.getX());
+                minLatitude = Math.min(minLatitude, point.getY());
+                maxLongitude = Math.max(maxLongitude, point.getX());
+                maxLatitude = Math.max(maxLatitude, point.getY());
+            }
+            this.minLongitudes[ordinal] = minLongitude;
+            this.minLatitudes[ordinal] = minLatitude;
+            this.maxLongitudes[ordinal] = maxLongitude;
+            this.maxLatitudes[ordinal] = maxLatitude;
+            this.located.add(ordinal);
+
+            // the tree keeps its own copy of the old box, so new and moved patches are searched linearly until the
+            // next rebuild
+            this.pendingOrdinals.add(ordinal);
+        }
+    }
+
+    /**
+     * Bulk-loads the R-tree over all located patches; the caller holds the write lock.
+     */
+    private void rebuildTree() {
+        long start = System.currentTimeMillis();
+        this.tree = new PatchRTree(this.located.toArray(), this.located.getCardinality(), this.minLongitudes,
+                this.minLatitudes, this.maxLongitudes, this.maxLatitudes);
+        this.pendingOrdinals.clear();
+        System.out.println("PATCH INDEX R-TREE BUILT: " + this.tree.size() + " footprints in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Grows the per-ordinal arrays to hold at least the given number of patches.
+     * @param capacity required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.patchNames.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, this.patchNames.length * 2);
+        this.patchNames = Arrays.copyOf(this.patchNames, newCapacity);
+        this.labelMasks = Arrays.copyOf(this.labelMasks, newCapacity);
+        this.longitudes = Arrays.copyOf(this.longitudes, newCapacity);
+        this.latitudes = Arrays.copyOf(this.latitudes, newCapacity);
+        this.minLongitudes = Arrays.copyOf(this.minLongitudes, newCapacity);
+        this.minLatitudes = Arrays.copyOf(this.minLatitudes, newCapacity);
+        this.maxLongitudes = Arrays.copyOf(this.maxLongitudes, newCapacity);
+        this.maxLatitudes = Arrays.copyOf(this.maxLatitudes, newCapacity);
+    }
+
+    /**
+     * Returns the summaries of all patches matching a label-only query.
+     * @param queryType CONTAINS_ALL, CONTAINS_SOME or CONTAINS_ONLY
+     * @param targetLabels requested character labels
+     * @return matching patch summaries, or null if the index cannot answer the query (not loaded or no labels)
+     */
+    List<PatchSummary> query(String queryType, List<Character> targetLabels) {
+        return this.query(queryType, targetLabels, null, null);
+    }
+
+    /**
+     * Returns the summaries of all patches matching a label query restricted to a rectangular polygon.
+     * @param queryType CONTAINS_ALL, CONTAINS_SOME or CONTAINS_ONLY
+     * @param targetLabels requested character labels (null for no label restriction)
+     * @param polygon requested polygon (null for no location restriction)
+     * @param geospatialQueryOperator GEO_INTERSECTS or GEO_WITHIN
+     * @return matching patch summaries, or null if the index cannot answer the query (not loaded, no labels or
+     * no axis-aligned rectangle)
+     */
+    List<PatchSummary> query(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon,
+                             String geospatialQueryOperator) {
+        double[] rectangle = polygon != null ? getRectangle(polygon) : null;
+        if (!this.ready || (targetLabels != null && targetLabels.isEmpty()) || (polygon != null && rectangle == null)
+                || (targetLabels == null && polygon == null)) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        List<PatchSummary> summaries;
+
+        this.lock.readLock().lock();
+        try {
+            RoaringBitmap matches = this.match(queryType, targetLabels, rectangle, geospatialQueryOperator);
+            summaries = new ArrayList<>(matches.getCardinality());
+            IntIterator ordinalIterator = matches.getIntIterator();
+            while (ordinalIterator.hasNext()) {
+                summaries.add(this.getSummary(ordinalIterator.next()));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        System.out.println("PATCH INDEX QUERY: " + summaries.size() + " patches in " +
+                (System.nanoTime() - start) / 1000 + " microseconds");
+        return summaries;
+    }
+
+    /**
+     * Returns the label summary of all patches matching a label query, optionally restricted to a rectangular
+     * polygon. Only bitmap cardinalities are computed (one AND cardinality per label), no patch is materialized,
+     * so the time does not depend on the number of matches.
+     * @param queryType CONTAINS_ALL, CONTAINS_SOME or CONTAINS_ONLY
+     * @param targetLabels requested character labels (null for no label restriction)
+     * @param polygon requested polygon (null for no location restriction)
+     * @param geospatialQueryOperator GEO_INTERSECTS or GEO_WITHIN
+     * @param withLabels whether the per-label counts are needed or only the total
+     * @return label summary, or null if the index cannot answer the query (not loaded, no labels or no
+     * axis-aligned rectangle)
+     */
+    LabelSummary summarize(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon,
+                           String geospatialQueryOperator, boolean withLabels) {
+        double[] rectangle = polygon != null ? getRectangle(polygon) : null;
+        if (!this.ready || (targetLabels != null && targetLabels.isEmpty()) || (polygon != null && rectangle == null)) {
+            return null;
+        }
+
+        this.lock.readLock().lock();
+        try {
+            // no restriction at all: the label bitmaps already are the per-label counts
+            RoaringBitmap matches = targetLabels == null && rectangle == null ? null
+                    : this.match(queryType, targetLabels, rectangle, geospatialQueryOperator);
+
+            LabelSummary labelSummary = new LabelSummary();
+            labelSummary.setTotal(matches != null ? matches.getLongCardinality() : this.size);
+            if (withLabels) {
+                for (int i = 0; i < this.labelBitmaps.length; i++) {
+                    long count = matches != null ? RoaringBitmap.andCardinality(matches, this.labelBitmaps[i])
+                            : this.labelBitmaps[i].getLongCardinality();
+                    if (count > 0) {
+                        labelSummary.getLabelCounts().put((char) (65 + i), count);
+                    }
+                }
+            }
+            return labelSummary;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ordinals of all patches matching a label query restricted to a rectangle; the caller holds the
+     * read lock.
+     * @param queryType CONTAINS_ALL, CONTAINS_SOME or CONTAINS_ONLY
+     * @param targetLabels requested character labels (null for no label restriction)
+     * @param rectangle query rectangle (null for no location restriction)
+     * @param geospatialQueryOperator GEO_INTERSECTS or GEO_WITHIN
+     * @return matching ordinals
+     */
+    private RoaringBitmap match(String queryType, List<Character> targetLabels, double[] rectangle,
+                                String geospatialQueryOperator) {
+        RoaringBitmap matches = null;
+        long targetMask = 0L;
+        if (targetLabels != null) {
+            targetMask = LabelService.getLabelMask(targetLabels);
+            matches = this.matchLabels(queryType, targetMask);
+        }
+        if (rectangle != null) {
+            RoaringBitmap spatialMatches = this.matchRectangle(rectangle,
+                    "GEO_WITHIN".equals(geospatialQueryOperator));
+            matches = matches != null ? RoaringBitmap.and(matches, spatialMatches) : spatialMatches;
+        }
+
+        // CONTAINS_ONLY: the candidates of the AND carry all target labels, the mask rules out any other
+        if (targetLabels != null && "CONTAINS_ONLY".equals(queryType)) {
+            RoaringBitmap exact = new RoaringBitmap();
+            IntIterator ordinalIterator = matches.getIntIterator();
+            while (ordinalIterator.hasNext()) {
+                int ordinal = ordinalIterator.next();
+                if (LabelService.containsOnly(this.labelMasks[ordinal], targetMask)) {
+                    exact.add(ordinal);
+                }
+            }
+            matches = exact;
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the ordinals of all patches matching the label mask; the caller holds the read lock.
+     * @param queryType CONTAINS_ALL, CONTAINS_SOME or CONTAINS_ONLY
+     * @param targetMask requested label mask
+     * @return matching ordinals (CONTAINS_ONLY candidates still need the mask check)
+     */
+    private RoaringBitmap matchLabels(String queryType, long targetMask) {
+        RoaringBitmap[] targetBitmaps = new RoaringBitmap[Long.bitCount(targetMask)];
+        int i = 0;
+        for (long remaining = targetMask; remaining != 0; remaining &= remaining - 1) {
+            targetBitmaps[i++] = this.labelBitmaps[Long.numberOfTrailingZeros(remaining)];
+        }
+
+        return "CONTAINS_SOME".equals(queryType) ? FastAggregation.or(targetBitmaps)
+                : FastAggregation.and(targetBitmaps);
+    }
+
+    /**
+     * Returns the ordinals of all patches intersecting (or lying within) the rectangle; the caller holds the read
+     * lock.
+     * @param rectangle query rectangle (min longitude, min latitude, max longitude, max latitude)
+     * @param within whether patches have to lie within the rectangle
+     * @return matching ordinals
+     */
+    private RoaringBitmap matchRectangle(double[] rectangle, boolean within) {
+        RoaringBitmap matches = new RoaringBitmap();
+        this.tree.search(rectangle[0], rectangle[1], rectangle[2], rectangle[3], within, ordinal -> {
+            if (!this.pendingOrdinals.contains(ordinal)) {
+                matches.add(ordinal);
+            }
+        });
+
+        IntIterator pending = this.pendingOrdinals.getIntIterator();
+        while (pending.hasNext()) {
+            int ordinal = pending.next();
+            boolean match = within
+                    ? this.minLongitudes[ordinal] >= rectangle[0] && this.maxLongitudes[ordinal] <= rectangle[2]
+                    && this.minLatitudes[ordinal] >= rectangle[1] && this.maxLatitudes[ordinal] <= rectangle[3]
+                    : this.minLongitudes[ordinal] <= rectangle[2] && this.maxLongitudes[ordinal] >= rectangle[0]
+                    && this.minLatitudes[ordinal] <= rectangle[3] && this.maxLatitudes[ordinal] >= rectangle[1];
+            if (match) {
+                matches.add(ordinal);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Returns the bounds of a polygon if it is an axis-aligned rectangle (closed ring of five points), as built by
+     * the frontend service.
+     * @param polygon polygon
+     * @return bounds (min longitude, min latitude, max longitude, max latitude) or null for other geometries
+     */
+    static double[] getRectangle(GeoJsonPolygon polygon) {
+        if (polygon.getCoordinates().size() != 1) {
+            return null;
+        }
+        List<Point> ring = polygon.getCoordinates().get(0).getCoordinates();
+        if (ring.size() != 5 || !ring.get(0).equals(ring.get(4))) {
+            return null;
+        }
+
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < 4; i++) {
+            Point point = ring.get(i);
+            Point next = ring.get(i + 1);
+            if (point.getX() != next.getX() && point.getY() != next.getY()) {
+                return null; // diagonal edge
+            }
+            bounds[0] = Math.min(bounds[0], point.getX());
+            bounds[1] = Math.min(bounds[1], point.getY());
+            bounds[2] = Math.max(bounds[2], point.getX());
+            bounds[3] = Math.max(bounds[3], point.getY());
+        }
+
+        return bounds[0] < bounds[2] && bounds[1] < bounds[3] ? bounds : null;
+    }
+
+    /**
+     * Returns the summaries of all indexed patches.
+     * @return all patch summaries, or null if the index is not loaded
+     */
+    List<PatchSummary> all() {
+        if (!this.ready) {
+            return null;
+        }
+
+        this.lock.readLock().lock();
+        try {
+            List<PatchSummary> summaries = new ArrayList<>(this.size);
+            for (int ordinal = 0; ordinal < this.size; ordinal++) {
+                summaries.add(this.getSummary(ordinal));
+            }
+            return summaries;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes the summary of a single patch; the caller holds the read lock.
+     * @param ordinal ordinal of the patch
+     * @return patch summary
+     */
+    private PatchSummary getSummary(int ordinal) {
+        return new PatchSummary(this.patchNames[ordinal], LabelService.getLabelsFromMask(this.labelMasks[ordinal]),
+                this.longitudes[ordinal], this.latitudes[ordinal]);
+    }
+
+    /**
+     * Sets mongo template for test compatibility (injected in production).
+     * @param mongoTemplate Mongo template for test compatibility
+     */
+    void setMongoTemplate(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Enables the index for test compatibility (configured in production).
+     * @param enabled whether the index is maintained
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
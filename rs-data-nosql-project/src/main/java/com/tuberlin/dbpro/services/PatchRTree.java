@@ -0,0 +1,247 @@
+package com.tuberlin.dbpro.services;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Static R-tree over axis-aligned patch bounding boxes (longitude/latitude), bulk-loaded with Sort-Tile-Recursive
+ * packing. All nodes and entries are stored level by level in primitive arrays: the children of node j of a level
+ * are the nodes (or entries) j * NODE_CAPACITY to (j + 1) * NODE_CAPACITY - 1 of the level below, so the tree needs
+ * no pointers and a search touches contiguous memory.
+ */
+class PatchRTree {
+
+    /**
+     * Maximum number of children per node.
+     */
+    static final int NODE_CAPACITY = 16;
+
+    /**
+     * Patch ordinals of the entries in packing order and their bounding boxes.
+     */
+    private final int[] ordinals;
+    private final double[] entryBoxes;
+
+    /**
+     * Bounding boxes of the nodes per level (level 0 holds the leaves, the last level the root), four values
+     * (min x, min y, max x, max y) per node.
+     */
+    private final double[][] nodeBoxes;
+
+    /**
+     * Bulk-loads a tree over the given patch ordinals.
+     * @param ordinals ordinals of the indexed patches
+     * @param count number of ordinals to index
+     * @param minX minimum longitude per ordinal
+     * @param minY minimum latitude per ordinal
+     * @param maxX maximum longitude per ordinal
+     * @param maxY maximum latitude per ordinal
+     */
+    PatchRTree(int[] ordinals, int count, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int[] sorted = Arrays.copyOf(ordinals, count);
+        double[] centerX = new double[count];
+        double[] centerY = new double[count];
+        for (int i = 0; i < count; i++) {
+            centerX[i] = (minX[sorted[i]] + maxX[sorted[i]]) / 2;
+            centerY[i] = (minY[sorted[i]] + maxY[sorted[i]]) / 2;
+        }
+
+        // pack the entries, then every level of nodes, until a single root remains
+        int[] order = strOrder(centerX, centerY, count);
+        this.ordinals = new int[count];
+        this.entryBoxes = new double[count * 4];
+        for (int i = 0; i < count; i++) {
+            int ordinal = sorted[order[i]];
+            this.ordinals[i] = ordinal;
+            this.entryBoxes[i * 4] = minX[ordinal];
+            this.entryBoxes[i * 4 + 1] = minY[ordinal];
+            this.entryBoxes[i * 4 + 2] = maxX[ordinal];
+            this.entryBoxes[i * 4 + 3] = maxY[ordinal];
+        }
+
+        // upper levels group consecutive nodes: leaves are already in STR order (slice by slice), so neighbouring
+        // nodes are spatially close and their child ranges stay contiguous
+        double[][] levels = new double[32][];
+        int levelCount = 0;
+        double[] children = this.entryBoxes;
+        int childCount = count;
+        do {
+            double[] parents = packLevel(children, childCount);
+            levels[levelCount++] = parents;
+            children = parents;
+            childCount = parents.length / 4;
+        } while (childCount > 1);
+        this.nodeBoxes = Arrays.copyOf(levels, levelCount);
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     * @return number of indexed entries
+     */
+    int size() {
+        return this.ordinals.length;
+    }
+
+    /**
+     * Reports every indexed patch whose bounding box intersects (or lies within) the query rectangle.
+     * @param minX minimum longitude of the query rectangle
+     * @param minY minimum latitude of the query rectangle
+     * @param maxX maximum longitude of the query rectangle
+     * @param maxY maximum latitude of the query rectangle
+     * @param within whether patches have to lie within the rectangle instead of intersecting it
+     * @param consumer consumer of the matching patch ordinals
+     */
+    void search(double minX, double minY, double maxX, double maxY, boolean within, IntConsumer consumer) {
+        if (this.ordinals.length == 0) {
+            return;
+        }
+        this.search(this.nodeBoxes.length - 1, 0, minX, minY, maxX, maxY, within, consumer);
+    }
+
+    /**
+     * Searches the subtree of a single node.
+     * @param level level of the node
+     * @param node index of the node within its level
+     * @param minX minimum longitude of the query rectangle
+     * @param minY minimum latitude of the query rectangle
+     * @param maxX maximum longitude of the query rectangle
+     * @param maxY maximum latitude of the query rectangle
+     * @param within whether patches have to lie within the rectangle
+     * @param consumer consumer of the matching patch ordinals
+     */
+    private void search(int level, int node, double minX, double minY, double maxX, double maxY, boolean within,
+                        IntConsumer consumer) {
+        double[] boxes = this.nodeBoxes[level];
+        if (!intersects(boxes, node, minX, minY, maxX, maxY)) {
+            return;
+        }
+
+        int first = node * NODE_CAPACITY;
+        if (level == 0) {
+            int last = Math.min(first + NODE_CAPACITY, this.ordinals.length);
+            for (int entry = first; entry < last; entry++) {
+                if (within ? isWithin(this.entryBoxes, entry, minX, minY, maxX, maxY)
+                        : intersects(this.entryBoxes, entry, minX, minY, maxX, maxY)) {
+                    consumer.accept(this.ordinals[entry]);
+                }
+            }
+        } else {
+            int last = Math.min(first + NODE_CAPACITY, this.nodeBoxes[level - 1].length / 4);
+            for (int child = first; child < last; child++) {
+                this.search(level - 1, child, minX, minY, maxX, maxY, within, consumer);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a stored box intersects the query rectangle (boundaries included).
+     * @param boxes stored boxes
+     * @param index index of the box
+     * @param minX minimum longitude of the query rectangle
+     * @param minY minimum latitude of the query rectangle
+     * @param maxX maximum longitude of the query rectangle
+     * @param maxY maximum latitude of the query rectangle
+     * @return whether the box intersects the rectangle
+     */
+    private static boolean intersects(double[] boxes, int index, double minX, double minY, double maxX,
+                                      double maxY) {
+        int offset = index * 4;
+        return boxes[offset] <= maxX && boxes[offset + 2] >= minX && boxes[offset + 1] <= maxY
+                && boxes[offset + 3] >= minY;
+    }
+
+    /**
+     * Returns whether a stored box lies within the query rectangle (boundaries included).
+     * @param boxes stored boxes
+     * @param index index of the box
+     * @param minX minimum longitude of the query rectangle
+     * @param minY minimum latitude of the query rectangle
+     * @param maxX maximum longitude of the query rectangle
+     * @param maxY maximum latitude of the query rectangle
+     * @return whether the box lies within the rectangle
+     */
+    private static boolean isWithin(double[] boxes, int index, double minX, double minY, double maxX, double maxY) {
+        int offset = index * 4;
+        return boxes[offset] >= minX && boxes[offset + 2] <= maxX && boxes[offset + 1] >= minY
+                && boxes[offset + 3] <= maxY;
+    }
+
+    /**
+     * Groups consecutive runs of NODE_CAPACITY boxes into parent nodes.
+     * @param children child boxes in packing order
+     * @param childCount number of child boxes
+     * @return parent boxes
+     */
+    private static double[] packLevel(double[] children, int childCount) {
+        int parentCount = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        double[] parents = new double[parentCount * 4];
+
+        for (int parent = 0; parent < parentCount; parent++) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int last = Math.min((parent + 1) * NODE_CAPACITY, childCount);
+            for (int child = parent * NODE_CAPACITY; child < last; child++) {
+                minX = Math.min(minX, children[child * 4]);
+                minY = Math.min(minY, children[child * 4 + 1]);
+                maxX = Math.max(maxX, children[child * 4 + 2]);
+                maxY = Math.max(maxY, children[child * 4 + 3]);
+            }
+            parents[parent * 4] = minX;
+            parents[parent * 4 + 1] = minY;
+            parents[parent * 4 + 2] = maxX;
+            parents[parent * 4 + 3] = maxY;
+        }
+
+        return parents;
+    }
+
+    /**
+     * Returns the Sort-Tile-Recursive order of the given box centers: sorted by x into vertical slices of
+     * S * NODE_CAPACITY boxes (S = ceil(sqrt(leaf count))), each slice sorted by y.
+     * @param centerX x coordinates of the box centers
+     * @param centerY y coordinates of the box centers
+     * @param count number of boxes
+     * @return box indices in packing order
+     */
+    static int[] strOrder(double[] centerX, double[] centerY, int count) {
+        // sort keys: order-preserving float bits of the coordinate in the high half, box index in the low half,
+        // so both sorts run on primitive longs (float precision only affects packing quality, not results)
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortKey(centerX[i], i);
+        }
+        Arrays.sort(keys);
+
+        int leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leafCount)) * NODE_CAPACITY;
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            keys[i] = sortKey(centerY[index], index);
+        }
+        for (int start = 0; start < count; start += sliceSize) {
+            Arrays.sort(keys, start, Math.min(start + sliceSize, count));
+        }
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a sort key ordering by the given coordinate first and the box index second.
+     * @param coordinate coordinate to order by
+     * @param index box index
+     * @return sort key
+     */
+    private static long sortKey(double coordinate, int index) {
+        int bits = Float.floatToIntBits((float) coordinate);
+        // flip the bits of negative values (and the sign bit of positive ones) for an unsigned-comparable order,
+        // then shift back into the signed range
+        int ordered = (bits < 0 ? ~bits : bits | Integer.MIN_VALUE) ^ Integer.MIN_VALUE;
+        return ((long) ordered << 32) | (index & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,212 @@
+package com.tuberlin.dbpro.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of query results in front of the database, bounded by the estimated size of the cached results in bytes
+ * (Caffeine's W-TinyLFU eviction). Requests are keyed by a canonical form (query type, sorted labels, operator and
+ * rounded polygon) prefixed with the dataset version; ingestion bumps the version with every committed batch, so
+ * results computed before a change can no longer be hit.
+ */
+@Service
+public class QueryCacheService {
+
+    /**
+     * Name of the cache in the exposed metrics (cache.gets, cache.evictions, ... tagged cache=query-results).
+     */
+    static final String CACHE_NAME = "query-results";
+
+    /**
+     * Number of decimals polygon coordinates are rounded to in cache keys (about 0.1 m).
+     */
+    private static final int COORDINATE_DECIMALS = 6;
+
+    /**
+     * Whether query results are cached at all.
+     */
+    @Value("${query.cache-enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * Maximum estimated size of all cached results in bytes.
+     */
+    @Value("${query.cache-max-bytes:67108864}")
+    private long maxBytes = 64L * 1024 * 1024;
+
+    /**
+     * Meter registry the cache metrics are bound to (provided by actuator).
+     */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Version of the dataset, bumped whenever ingestion commits documents.
+     */
+    private final AtomicLong datasetVersion = new AtomicLong();
+
+    /**
+     * Cached result lines by versioned canonical request key.
+     */
+    private Cache<String, List<String>> cache;
+
+    /**
+     * Creates the cache and binds its metrics (hits, misses, evictions, size and estimated bytes).
+     */
+    @PostConstruct
+    void initializeCache() {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(this.maxBytes)
+                .weigher((String key, List<String> lines) -> estimateBytes(key, lines))
+                .recordStats()
+                .build();
+
+        if (this.meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.cache, CACHE_NAME);
+            Gauge.builder("query.cache.bytes", this, QueryCacheService::getEstimatedBytes)
+                    .description("Estimated size of the cached query results")
+                    .baseUnit("bytes")
+                    .register(this.meterRegistry);
+            Gauge.builder("query.cache.dataset.version", this.datasetVersion, AtomicLong::get)
+                    .description("Dataset version the cached query results belong to")
+                    .register(this.meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the cached result of the request, or computes and caches it on a miss.
+     * @param queryType query type
+     * @param targetLabels encoded labels of the request
+     * @param polygon polygon location or null for pure label queries
+     * @param geospatialQueryOperator geospatial query operator
+     * @param query computation of the result on a miss
+     * @return result lines of the request
+     */
+    List<String> get(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon,
+                     String geospatialQueryOperator, Supplier<List<String>> query) {
+        return this.get(queryType, targetLabels, polygon, geospatialQueryOperator, "", query);
+    }
+
+    /**
+     * Returns the cached result of a representation of the request (e.g. clustered for a zoom level), or computes
+     * and caches it on a miss.
+     * @param queryType query type
+     * @param targetLabels encoded labels of the request
+     * @param polygon polygon location or null for pure label queries
+     * @param geospatialQueryOperator geospatial query operator
+     * @param variant representation of the result (empty for the full result lines)
+     * @param query computation of the result on a miss
+     * @return result lines of the request
+     */
+    List<String> get(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon,
+                     String geospatialQueryOperator, String variant, Supplier<List<String>> query) {
+        if (!this.enabled) {
+            return query.get();
+        }
+
+        // the version is read before querying: a result that races with an ingestion commit is stored under the
+        // old version and never hit again
+        String key = this.datasetVersion.get() + "|" +
+                getCanonicalKey(queryType, targetLabels, polygon, geospatialQueryOperator) + "|" + variant;
+        List<String> lines = this.cache.getIfPresent(key);
+        if (lines == null) {
+            lines = Collections.unmodifiableList(query.get());
+            this.cache.put(key, lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Marks all cached results as outdated (called for every ingestion commit).
+     */
+    void bumpDatasetVersion() {
+        this.datasetVersion.incrementAndGet();
+        if (this.cache != null) {
+            this.cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the estimated size of all cached results in bytes.
+     * @return estimated size in bytes
+     */
+    long getEstimatedBytes() {
+        // weights of recent writes are applied asynchronously
+        this.cache.cleanUp();
+        return this.cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    /**
+     * Returns the canonical form of a request: query type, sorted and deduplicated labels and, for spatial
+     * requests, the operator and the polygon rounded to COORDINATE_DECIMALS decimals.
+     * @param queryType query type
+     * @param targetLabels encoded labels of the request
+     * @param polygon polygon location or null for pure label queries
+     * @param geospatialQueryOperator geospatial query operator
+     * @return canonical request key
+     */
+    static String getCanonicalKey(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon,
+                                  String geospatialQueryOperator) {
+        StringBuilder key = new StringBuilder(queryType).append('|');
+        for (Character label : LabelService.getLabelsFromMask(LabelService.getLabelMask(targetLabels))) {
+            key.append(label);
+        }
+
+        if (polygon != null) {
+            key.append('|').append(geospatialQueryOperator);
+            for (GeoJsonLineString ring : polygon.getCoordinates()) {
+                key.append('|');
+                for (Point point : ring.getCoordinates()) {
+                    key.append(round(point.getX())).append(',').append(round(point.getY())).append(';');
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Rounds a coordinate to COORDINATE_DECIMALS decimals.
+     * @param coordinate coordinate
+     * @return rounded coordinate
+     */
+    private static double round(double coordinate) {
+        double scale = Math.pow(10, COORDINATE_DECIMALS);
+        return Math.round(coordinate * scale) / scale;
+    }
+
+    /**
+     * Returns the estimated heap size of a cache entry: object headers plus two bytes per character.
+     * @param key cache key
+     * @param lines result lines
+     * @return estimated size in bytes
+     */
+    static int estimateBytes(String key, List<String> lines) {
+        long bytes = 64 + 2L * key.length() + 16L * lines.size();
+        for (String line : lines) {
+            bytes += 40 + 2L * line.length();
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets maximum cache size for test compatibility (configured in production).
+     * @param maxBytes maximum estimated size of all cached results in bytes
+     */
+    void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,89 @@
+package com.tuberlin.dbpro.services;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Deadline and cancellation state of a single query, bound to the thread executing it. Database queries pass the
+ * remaining time on as maxTimeMS and check the context between cursor batches, so abandoned queries release their
+ * cursor early.
+ */
+final class QueryContext {
+
+    /**
+     * Context of the query executed by the current thread.
+     */
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Time in ms since the epoch by which the query has to complete.
+     */
+    private final long deadline;
+
+    /**
+     * Whether the query has been abandoned (timeout or client disconnect).
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Creates the context of a query that has to complete within the given time.
+     * @param timeoutMillis time in ms the query may take
+     */
+    QueryContext(long timeoutMillis) {
+        this.deadline = System.currentTimeMillis() + timeoutMillis;
+    }
+
+    /**
+     * Returns the context of the query executed by the current thread.
+     * @return query context or null if the current thread does not execute a bounded query
+     */
+    static QueryContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the context to the current thread.
+     */
+    void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Unbinds any context from the current thread.
+     */
+    static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the time left until the deadline (at least 1 ms, as MongoDB treats 0 as no limit).
+     * @return remaining time in ms
+     */
+    long getRemainingMillis() {
+        return Math.max(1, this.deadline - System.currentTimeMillis());
+    }
+
+    /**
+     * Abandons the query.
+     */
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns whether the query has been abandoned or has passed its deadline.
+     * @return whether the query should stop
+     */
+    boolean isCancelled() {
+        return this.cancelled || System.currentTimeMillis() > this.deadline;
+    }
+
+    /**
+     * Stops the query if it has been abandoned or has passed its deadline.
+     * @throws CancellationException if the query should stop
+     */
+    void checkActive() {
+        if (this.isCancelled()) {
+            throw new CancellationException(this.cancelled ? "query abandoned" : "query deadline exceeded");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.tuberlin.dbpro.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Execution layer running queries on a dedicated bounded thread pool instead of the servlet thread. Every query gets
+ * a deadline (query.timeout-ms) that is passed on to MongoDB as maxTimeMS; queries are abandoned, and their cursors
+ * closed, once the deadline expires or the client disconnects.
+ */
+@Service
+public class QueryExecutionService {
+
+    /**
+     * Number of queries executed in parallel.
+     */
+    @Value("${query.threads:8}")
+    private int threads = 8;
+
+    /**
+     * Number of queries waiting for a free thread before further requests are rejected.
+     */
+    @Value("${query.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    /**
+     * Time in ms a query may take (including its time in the queue).
+     */
+    @Value("${query.timeout-ms:30000}")
+    private long timeoutMillis = 30000;
+
+    /**
+     * Bounded pool executing the queries.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Creates the query thread pool.
+     */
+    @PostConstruct
+    void initializeExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "query-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Stops the query thread pool on shutdown.
+     */
+    @PreDestroy
+    void shutdownExecutor() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Executes a query on the query thread pool. The deferred result is completed with the query result, with
+     * 503 if all threads and queue slots are busy, or with 504 once the deadline expires; a timeout or a client
+     * disconnect cancels the running query.
+     * @param query query to execute
+     * @param <T> result type
+     * @return deferred query result
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> query) {
+        DeferredResult<T> result = new DeferredResult<>(this.timeoutMillis);
+        CompletableFuture<T> future = this.submitFuture(query);
+
+        result.onTimeout(() -> {
+            future.cancel(true);
+            result.setErrorResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+        });
+        result.onError(error -> future.cancel(true));
+        result.onCompletion(() -> future.cancel(true));
+
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(value);
+            } else if (error instanceof RejectedExecutionException) {
+                result.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+            } else if (error instanceof CancellationException) {
+                result.setErrorResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+            } else {
+                result.setErrorResult(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executes a query on the query thread pool. The future fails with a RejectedExecutionException if all
+     * threads and queue slots are busy and with a CancellationException once the deadline expires; cancelling
+     * the future cancels the running query.
+     * @param query query to execute
+     * @param <T> result type
+     * @return future query result
+     */
+    public <T> CompletableFuture<T> submitFuture(Supplier<T> query) {
+        QueryContext context = new QueryContext(this.timeoutMillis);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                context.cancel();
+            }
+        });
+
+        try {
+            this.executor.execute(() -> {
+                context.attach();
+                try {
+                    // abandoned or expired while waiting in the queue
+                    context.checkActive();
+                    future.complete(query.get());
+                } catch (CancellationException e) {
+                    System.out.println("QUERY CANCELLED: " + e.getMessage());
+                    future.completeExceptionally(e);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    future.completeExceptionally(e);
+                } finally {
+                    QueryContext.detach();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.out.println("QUERY REJECTED: " + this.executor.getActiveCount() + " queries running, " +
+                    this.executor.getQueue().size() + " waiting");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Sets number of query threads for test compatibility (configured in production).
+     * @param threads number of query threads
+     */
+    void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets number of waiting queries for test compatibility (configured in production).
+     * @param queueCapacity number of waiting queries
+     */
+    void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets query timeout for test compatibility (configured in production).
+     * @param timeoutMillis query timeout in ms
+     */
+    void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
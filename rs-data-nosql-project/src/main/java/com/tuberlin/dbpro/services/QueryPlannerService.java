@@ -0,0 +1,247 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Selectivity-based planner for combined label and location queries. It keeps the number of patches per label and
+ * a coarse spatial density histogram (patches per 1 x 1 degree cell, by upper left corner), estimates the number of
+ * matches of the label and the location predicate separately and hints MongoDB to the index of the far more
+ * selective predicate instead of relying on its plan cache.
+ */
+@Service
+public class QueryPlannerService {
+
+    /**
+     * Index key patterns the planner chooses from (hints are passed as key patterns).
+     */
+    static final String LABEL_INDEX_HINT = "{'properties.labels': 1}";
+    static final String GEOSPATIAL_INDEX_HINT = "{'location': '2dsphere'}";
+    static final String COMPOUND_INDEX_HINT = "{'properties.labels': 1, 'location': '2dsphere'}";
+
+    /**
+     * Factor by which one predicate has to be more selective than the other to be scanned alone.
+     */
+    static final int SKEW = 8;
+
+    /**
+     * Number of histogram cells per degree of longitude or latitude.
+     */
+    private static final int CELLS_PER_DEGREE = 1;
+    private static final int COLUMNS = 360 * CELLS_PER_DEGREE;
+    private static final int ROWS = 180 * CELLS_PER_DEGREE;
+
+    /**
+     * MongoTemplate instance for loading the statistics.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Whether the planner is used (query.planner=true).
+     */
+    @Value("${query.planner:false}")
+    private boolean enabled;
+
+    /**
+     * Number of patches in total, per label and per histogram cell.
+     */
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLongArray labelCounts = new AtomicLongArray(Long.SIZE);
+    private final AtomicLongArray cellCounts = new AtomicLongArray(COLUMNS * ROWS);
+
+    /**
+     * Whether the statistics have been loaded.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Loads the statistics from the projected patch summaries once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!this.enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Query query = DatabaseService.withSummaryFields(new Query());
+        try (CloseableIterator<Document> documents = this.mongoTemplate.stream(query, Document.class,
+                this.mongoTemplate.getCollectionName(GeoJson.class))) {
+            while (documents.hasNext()) {
+                PatchSummary summary = DatabaseService.toPatchSummary(documents.next());
+                this.add(summary.getLabels(), summary.getLongitude(), summary.getLatitude());
+            }
+        }
+        this.ready = true;
+
+        System.out.println("QUERY PLANNER: statistics of " + this.total.get() + " patches loaded in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds committed GeoJson objects to the statistics. Re-ingested patches are counted again; the statistics
+     * only need to be roughly right.
+     * @param geoJsons committed GeoJson objects
+     */
+    void addAll(List<GeoJson> geoJsons) {
+        if (!this.ready) {
+            return;
+        }
+
+        for (GeoJson geoJson : geoJsons) {
+            if (geoJson.getProperties() != null && geoJson.getLocation() != null) {
+                Point upperLeft = geoJson.getLocation().getCoordinates().get(0).getCoordinates().get(0);
+                this.add(geoJson.getProperties().getLabels(), upperLeft.getX(), upperLeft.getY());
+            }
+        }
+    }
+
+    /**
+     * Adds a single patch to the statistics.
+     * @param labels character labels of the patch
+     * @param longitude longitude of the upper left corner
+     * @param latitude latitude of the upper left corner
+     */
+    private void add(List<Character> labels, double longitude, double latitude) {
+        this.total.incrementAndGet();
+        if (labels != null) {
+            for (Character label : labels) {
+                this.labelCounts.incrementAndGet(label - 65);
+            }
+        }
+        this.cellCounts.incrementAndGet(row(latitude) * COLUMNS + column(longitude));
+    }
+
+    /**
+     * Returns the index hint for a combined label and location query: the label index if the labels are far more
+     * selective, the geospatial index if the location is far more selective, the compound index otherwise.
+     * @param queryType query type
+     * @param targetLabels requested character labels (null for no label restriction)
+     * @param polygon polygon location (null for no location restriction)
+     * @param bitmask whether labels are matched by the label mask (whose bitwise predicates cannot use an index)
+     * @return index key pattern to hint, or null if there is nothing to choose
+     */
+    String getHint(String queryType, List<Character> targetLabels, GeoJsonPolygon polygon, boolean bitmask) {
+        if (!this.ready || targetLabels == null || targetLabels.isEmpty() || polygon == null || bitmask) {
+            return null;
+        }
+
+        long labelEstimate = this.estimateLabelMatches(queryType, targetLabels);
+        long spatialEstimate = this.estimateSpatialMatches(polygon);
+        String hint = labelEstimate * SKEW <= spatialEstimate ? LABEL_INDEX_HINT
+                : spatialEstimate * SKEW <= labelEstimate ? GEOSPATIAL_INDEX_HINT
+                : COMPOUND_INDEX_HINT;
+
+        System.out.println("QUERY PLAN: ~" + labelEstimate + " label matches, ~" + spatialEstimate +
+                " location matches -> hint " + hint);
+        return hint;
+    }
+
+    /**
+     * Estimates the number of patches matching the label predicate (upper bound for CONTAINS_ALL and
+     * CONTAINS_ONLY: the count of the rarest label).
+     * @param queryType query type
+     * @param targetLabels requested character labels
+     * @return estimated number of matching patches
+     */
+    long estimateLabelMatches(String queryType, List<Character> targetLabels) {
+        long estimate = "CONTAINS_SOME".equals(queryType) ? 0 : Long.MAX_VALUE;
+        for (Character label : targetLabels) {
+            long count = this.labelCounts.get(label - 65);
+            estimate = "CONTAINS_SOME".equals(queryType) ? estimate + count : Math.min(estimate, count);
+        }
+        return Math.min(estimate, this.total.get());
+    }
+
+    /**
+     * Estimates the number of patches located in the bounding box of the polygon, weighting every histogram cell
+     * by the share of its area covered by the box.
+     * @param polygon polygon location
+     * @return estimated number of matching patches
+     */
+    long estimateSpatialMatches(GeoJsonPolygon polygon) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Point point : polygon.getCoordinates().get(0).getCoordinates()) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+
+        double estimate = 0;
+        for (int row = row(minY); row <= row(maxY); row++) {
+            double cellMinY = (double) row / CELLS_PER_DEGREE - 90;
+            double coveredY = overlap(minY, maxY, cellMinY, cellMinY + 1.0 / CELLS_PER_DEGREE);
+            for (int column = column(minX); column <= column(maxX); column++) {
+                double cellMinX = (double) column / CELLS_PER_DEGREE - 180;
+                double coveredX = overlap(minX, maxX, cellMinX, cellMinX + 1.0 / CELLS_PER_DEGREE);
+                estimate += this.cellCounts.get(row * COLUMNS + column) * coveredX * coveredY;
+            }
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the share of a cell's extent covered by the query extent along one axis.
+     * @param min minimum of the query extent
+     * @param max maximum of the query extent
+     * @param cellMin minimum of the cell extent
+     * @param cellMax maximum of the cell extent
+     * @return covered share between 0 and 1
+     */
+    private static double overlap(double min, double max, double cellMin, double cellMax) {
+        return Math.max(0, Math.min(max, cellMax) - Math.max(min, cellMin)) * CELLS_PER_DEGREE;
+    }
+
+    /**
+     * Returns the histogram column of a longitude.
+     * @param longitude longitude
+     * @return histogram column
+     */
+    private static int column(double longitude) {
+        return Math.min(COLUMNS - 1, Math.max(0, (int) Math.floor((longitude + 180) * CELLS_PER_DEGREE)));
+    }
+
+    /**
+     * Returns the histogram row of a latitude.
+     * @param latitude latitude
+     * @return histogram row
+     */
+    private static int row(double latitude) {
+        return Math.min(ROWS - 1, Math.max(0, (int) Math.floor((latitude + 90) * CELLS_PER_DEGREE)));
+    }
+
+    /**
+     * Sets mongo template for test compatibility (injected in production).
+     * @param mongoTemplate Mongo template for test compatibility
+     */
+    void setMongoTemplate(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Enables the planner for test compatibility (configured in production).
+     * @param enabled whether the planner is maintained
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
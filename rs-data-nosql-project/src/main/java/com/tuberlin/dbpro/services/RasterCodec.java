@@ -0,0 +1,262 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.Photo;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Converts the uncompressed 16-bit BigEarthNet GeoTIFF bands into a compact raw raster (little-endian uint16
+ * pixels in row-major order, optionally deflated) and back into pixels, so pixel consumers read a ShortBuffer
+ * without a TIFF parser.
+ */
+public final class RasterCodec {
+
+    /**
+     * Encoding of band images stored as the original TIFF file.
+     */
+    public static final String TIFF = "tiff";
+
+    /**
+     * Encoding of raw little-endian uint16 pixels.
+     */
+    public static final String UINT16 = "uint16";
+
+    /**
+     * Encoding of deflated raw little-endian uint16 pixels.
+     */
+    public static final String UINT16_DEFLATE = "uint16-deflate";
+
+    /**
+     * TIFF tags read by the decoder.
+     */
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_STRIP_OFFSETS = 273;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+    private static final int TAG_TILE_WIDTH = 322;
+    private static final int TAG_MODEL_PIXEL_SCALE = 33550;
+
+    private RasterCodec() {
+    }
+
+    /**
+     * Decodes an uncompressed single-sample 16-bit TIFF into a raster of little-endian uint16 pixels.
+     * @param tiff TIFF file content
+     * @return decoded raster
+     * @throws IllegalArgumentException if the TIFF is not an uncompressed 16-bit single-band strip image
+     */
+    static Raster decodeTiff(ByteBuffer tiff) {
+        ByteBuffer buffer = tiff.duplicate();
+        int start = buffer.position();
+        byte first = buffer.get(start);
+        buffer.order(first == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        if ((first != 'I' && first != 'M') || buffer.getShort(start + 2) != 42) {
+            throw new IllegalArgumentException("Not a TIFF file");
+        }
+
+        int ifd = start + buffer.getInt(start + 4);
+        int entries = buffer.getShort(ifd) & 0xFFFF;
+        int width = 0;
+        int height = 0;
+        int bitsPerSample = 1;
+        int compression = 1;
+        int samplesPerPixel = 1;
+        int[] stripOffsets = null;
+        int[] stripByteCounts = null;
+        double resolution = 0;
+
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            int tag = buffer.getShort(entry) & 0xFFFF;
+            switch (tag) {
+                case TAG_IMAGE_WIDTH:
+                    width = getValues(buffer, start, entry)[0];
+                    break;
+                case TAG_IMAGE_LENGTH:
+                    height = getValues(buffer, start, entry)[0];
+                    break;
+                case TAG_BITS_PER_SAMPLE:
+                    bitsPerSample = getValues(buffer, start, entry)[0];
+                    break;
+                case TAG_COMPRESSION:
+                    compression = getValues(buffer, start, entry)[0];
+                    break;
+                case TAG_SAMPLES_PER_PIXEL:
+                    samplesPerPixel = getValues(buffer, start, entry)[0];
+                    break;
+                case TAG_STRIP_OFFSETS:
+                    stripOffsets = getValues(buffer, start, entry);
+                    break;
+                case TAG_STRIP_BYTE_COUNTS:
+                    stripByteCounts = getValues(buffer, start, entry);
+                    break;
+                case TAG_TILE_WIDTH:
+                    throw new IllegalArgumentException("Tiled TIFF files are not supported");
+                case TAG_MODEL_PIXEL_SCALE:
+                    // GeoTIFF pixel size (x, y, z) as doubles: the x scale is the resolution in metres
+                    resolution = buffer.getDouble(start + buffer.getInt(entry + 8));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (bitsPerSample != 16 || compression != 1 || samplesPerPixel != 1 || stripOffsets == null
+                || stripByteCounts == null) {
+            throw new IllegalArgumentException("Only uncompressed 16-bit single-band TIFF files are supported");
+        }
+
+        // copy the strips in order, swapping big-endian pixels into little-endian order
+        byte[] pixels = new byte[width * height * 2];
+        int position = 0;
+        for (int i = 0; i < stripOffsets.length && position < pixels.length; i++) {
+            int length = Math.min(stripByteCounts[i], pixels.length - position);
+            ByteBuffer strip = buffer.duplicate();
+            strip.position(start + stripOffsets[i]);
+            strip.get(pixels, position, length);
+            position += length;
+        }
+        if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+            for (int i = 0; i + 1 < pixels.length; i += 2) {
+                byte high = pixels[i];
+                pixels[i] = pixels[i + 1];
+                pixels[i + 1] = high;
+            }
+        }
+
+        return new Raster(width, height, resolution, pixels);
+    }
+
+    /**
+     * Returns the values of a SHORT or LONG TIFF entry (stored inline if they fit into 4 bytes).
+     * @param buffer TIFF content
+     * @param start start of the TIFF within the buffer
+     * @param entry position of the IFD entry
+     * @return entry values
+     */
+    private static int[] getValues(ByteBuffer buffer, int start, int entry) {
+        int type = buffer.getShort(entry + 2) & 0xFFFF;
+        int count = buffer.getInt(entry + 4);
+        int size = type == 3 ? 2 : 4;
+        int position = count * size <= 4 ? entry + 8 : start + buffer.getInt(entry + 8);
+
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = type == 3 ? buffer.getShort(position + i * 2) & 0xFFFF : buffer.getInt(position + i * 4);
+        }
+        return values;
+    }
+
+    /**
+     * Encodes the pixels of a raster with the given encoding.
+     * @param raster decoded raster
+     * @param encoding UINT16 or UINT16_DEFLATE
+     * @return encoded pixels
+     */
+    static byte[] encode(Raster raster, String encoding) {
+        if (!UINT16_DEFLATE.equals(encoding)) {
+            return raster.pixels;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raster.pixels);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(raster.pixels.length / 2);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns the pixels of a band image stored with a raw raster encoding.
+     * @param photo band image with raw raster encoding
+     * @return pixels in row-major order (width x height, unsigned 16-bit values)
+     * @throws IllegalArgumentException if the band image is stored as TIFF
+     */
+    public static ShortBuffer getPixels(Photo photo) {
+        return getPixels(photo.getPhoto().getData(), photo.getEncoding(), photo.getWidth() * photo.getHeight());
+    }
+
+    /**
+     * Returns the pixels of encoded band image data.
+     * @param data encoded band image data
+     * @param encoding UINT16 or UINT16_DEFLATE
+     * @param pixelCount number of pixels (width x height)
+     * @return pixels in row-major order (unsigned 16-bit values)
+     * @throws IllegalArgumentException if the data is not stored with a raw raster encoding
+     */
+    public static ShortBuffer getPixels(byte[] data, String encoding, int pixelCount) {
+        byte[] pixels;
+        if (UINT16.equals(encoding)) {
+            pixels = data;
+        } else if (UINT16_DEFLATE.equals(encoding)) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                pixels = new byte[pixelCount * 2];
+                int length = 0;
+                while (length < pixels.length && !inflater.finished()) {
+                    length += inflater.inflate(pixels, length, pixels.length - length);
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupt band image data", e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new IllegalArgumentException("No raw raster encoding: " + encoding);
+        }
+
+        return ByteBuffer.wrap(pixels).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Decoded single band raster.
+     */
+    static class Raster {
+
+        /**
+         * Width and height of the raster in pixels.
+         */
+        final int width;
+        final int height;
+
+        /**
+         * Pixel size in metres (0 if the TIFF carries no GeoTIFF pixel scale).
+         */
+        final double resolution;
+
+        /**
+         * Little-endian uint16 pixels in row-major order.
+         */
+        final byte[] pixels;
+
+        /**
+         * Creates a decoded raster.
+         * @param width width in pixels
+         * @param height height in pixels
+         * @param resolution pixel size in metres
+         * @param pixels little-endian uint16 pixels
+         */
+        Raster(int width, int height, double resolution, byte[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.resolution = resolution;
+            this.pixels = pixels;
+        }
+    }
+}
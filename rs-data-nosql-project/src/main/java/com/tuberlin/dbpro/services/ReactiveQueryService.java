@@ -0,0 +1,115 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import com.tuberlin.dbpro.models.frontend.InputRequest;
+import com.tuberlin.dbpro.models.frontend.PatchResponse;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service class running queries on the reactive MongoDB driver: matching image patches are emitted one by one as
+ * the cursor yields them, without blocking a thread while the database is working.
+ */
+@Service
+public class ReactiveQueryService {
+
+    /**
+     * Reactive MongoTemplate instance for non-blocking queries.
+     */
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    /**
+     * Database service instance providing the configured label encoding.
+     */
+    @Autowired
+    private DatabaseService databaseService;
+
+    /**
+     * Query planner instance choosing the index of combined label and location queries.
+     */
+    @Autowired
+    private QueryPlannerService queryPlannerService;
+
+    /**
+     * Label service instance for label mappings.
+     */
+    @Autowired
+    private LabelService labelService;
+
+    /**
+     * Number of documents fetched per cursor batch.
+     */
+    @Value("${query.cursor-batch-size:1000}")
+    private int cursorBatchSize = 1000;
+
+    /**
+     * Returns the stream of image patches matching the input request. Label and location predicates, projection
+     * and index hint are the same as for the blocking queries (see DatabaseService.getQueryCriteria).
+     * @param inputRequest input request object from frontend
+     * @param polygon polygon location
+     * @return stream of matching image patches
+     */
+    Flux<PatchResponse> streamPatches(InputRequest inputRequest, GeoJsonPolygon polygon) {
+        List<Character> targetLabels = this.labelService.getPassedLabelsEncoded(inputRequest.getLabels());
+        boolean bitmask = this.databaseService.isBitmaskLabelEncoding();
+        Criteria criteria = DatabaseService.getQueryCriteria(inputRequest.getQueryType(), targetLabels, bitmask,
+                polygon, inputRequest.getGeospatialQueryOperator(), this.databaseService.isGeohashCellFiltering());
+        if (criteria == null) {
+            return Flux.empty();
+        }
+
+        Query query = DatabaseService.withSummaryFields(new Query(criteria)).cursorBatchSize(this.cursorBatchSize);
+        String hint = this.databaseService.usesGeohashCells(polygon) ? null : this.queryPlannerService.getHint(
+                inputRequest.getQueryType(), targetLabels.size() == 44 ? null : targetLabels, polygon, bitmask);
+        if (hint != null) {
+            query.withHint(hint);
+        }
+
+        System.out.println("REACTIVE QUERY - " + inputRequest.getQueryType() +
+                (polygon == null ? " - NO COORDINATES" : " - WITH COORDINATES - " +
+                        inputRequest.getGeospatialQueryOperator()));
+        return this.reactiveMongoTemplate
+                .find(query, Document.class, this.reactiveMongoTemplate.getCollectionName(GeoJson.class))
+                .map(document -> this.toPatchResponse(DatabaseService.toPatchSummary(document)));
+    }
+
+    /**
+     * Returns the response of a single image patch with decoded labels.
+     * @param summary patch summary
+     * @return patch response
+     */
+    PatchResponse toPatchResponse(PatchSummary summary) {
+        List<String> labels = new ArrayList<>(summary.getLabels().size());
+        for (Character label : summary.getLabels()) {
+            labels.add(this.labelService.getDecodedCharacter(label));
+        }
+        return new PatchResponse(summary.getPatchName(), summary.getLatitude(), summary.getLongitude(), labels);
+    }
+
+    /**
+     * Sets label service for test compatibility (injected in production).
+     * @param labelService Label service for test compatibility
+     */
+    void setLabelService(LabelService labelService) {
+        this.labelService = labelService;
+    }
+
+    /**
+     * Sets database service for test compatibility (injected in production).
+     * @param databaseService Database service for test compatibility
+     */
+    void setDatabaseService(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+}
@@ -0,0 +1,404 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.bson.BsonBinarySubType;
+import org.bson.types.Binary;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads image patches directly from a (gzip-compressed) BigEarthNet tar archive in one sequential pass, without
+ * extracting it to disk. The entries of each patch folder are grouped in memory and a patch is handed out as soon as
+ * its meta JSON file and all 12 band images have been read. Only a bounded number of incomplete patches is kept,
+ * and band image bytes are only buffered if images are requested.
+ */
+class TarPatchReader implements Iterator<PatchFolder>, Closeable {
+
+    /**
+     * Size of a tar header and data block.
+     */
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * Maximum number of incomplete patches kept in memory (archives list a folder's entries consecutively,
+     * so normally only one patch is open at a time).
+     */
+    private static final int MAX_OPEN_PATCHES = 64;
+
+    /**
+     * Suffix of the meta JSON file of an image patch.
+     */
+    private static final String METADATA_SUFFIX = "_labels_metadata.json";
+
+    /**
+     * Uncompressed archive stream.
+     */
+    private final InputStream input;
+
+    /**
+     * Whether band image bytes are kept for the patch images.
+     */
+    private final boolean includeImages;
+
+    /**
+     * Reusable header buffer.
+     */
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * Incomplete patches by folder name, in the order they were opened.
+     */
+    private final LinkedHashMap<String, OpenPatch> openPatches = new LinkedHashMap<>();
+
+    /**
+     * Next complete patch to hand out (null if not read yet).
+     */
+    private PatchFolder next;
+
+    /**
+     * Whether the end of the archive has been reached.
+     */
+    private boolean endOfArchive;
+
+    /**
+     * Opens the given archive; gzip compression is detected by the file name.
+     * @param archive tar or tar.gz archive
+     * @param includeImages whether band image bytes are kept
+     * @throws IOException if the archive cannot be opened
+     */
+    TarPatchReader(File archive, boolean includeImages) throws IOException {
+        InputStream fileInput = new BufferedInputStream(new FileInputStream(archive), 1 << 16);
+        String name = archive.getName();
+        this.input = name.endsWith(".gz") || name.endsWith(".tgz")
+                ? new BufferedInputStream(new GZIPInputStream(fileInput, 1 << 16), 1 << 16) : fileInput;
+        this.includeImages = includeImages;
+    }
+
+    /**
+     * Reads from the given uncompressed tar stream.
+     * @param input uncompressed tar stream
+     * @param includeImages whether band image bytes are kept
+     */
+    TarPatchReader(InputStream input, boolean includeImages) {
+        this.input = input;
+        this.includeImages = includeImages;
+    }
+
+    /**
+     * Returns whether another complete patch is contained in the archive.
+     * @return whether another complete patch exists
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            while (this.next == null && !this.endOfArchive) {
+                this.next = this.readNextEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this.next != null;
+    }
+
+    /**
+     * Returns the next complete patch of the archive.
+     * @return next complete patch
+     */
+    @Override
+    public PatchFolder next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PatchFolder patchFolder = this.next;
+        this.next = null;
+        return patchFolder;
+    }
+
+    /**
+     * Closes the archive stream.
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+
+    /**
+     * Reads the next archive entry and adds it to its patch.
+     * @return the patch if the entry completed it, otherwise null
+     * @throws IOException if the archive cannot be read
+     */
+    private PatchFolder readNextEntry() throws IOException {
+        String longName = null;
+
+        while (true) {
+            if (!this.readBlock(this.header) || isZeroBlock(this.header)) {
+                this.endOfArchive = true;
+                if (!this.openPatches.isEmpty()) {
+                    System.out.println("ARCHIVE ENDED WITH " + this.openPatches.size() + " INCOMPLETE PATCHES: " +
+                            this.openPatches.keySet());
+                }
+                return null;
+            }
+
+            char type = (char) this.header[156];
+            long size = parseOctal(this.header, 124, 12);
+            String name = longName != null ? longName : getName(this.header);
+            longName = null;
+
+            if (type == 'L') {
+                // GNU long name: the name of the following entry is stored as data
+                longName = trimNull(new String(this.readData(size), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type == 'x') {
+                // PAX extended header: only the path record is of interest
+                longName = getPaxPath(new String(this.readData(size), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type != '0' && type != '\0') {
+                this.skipData(size); // directories, links and other entry types carry no patch data
+                continue;
+            }
+
+            return this.addEntry(name, size, parseOctal(this.header, 136, 12) * 1000);
+        }
+    }
+
+    /**
+     * Adds a file entry to its (open) patch.
+     * @param path path of the entry within the archive
+     * @param size size of the entry data
+     * @param lastModified modification time of the entry in ms since epoch
+     * @return the patch if the entry completed it, otherwise null
+     * @throws IOException if the archive cannot be read
+     */
+    private PatchFolder addEntry(String path, long size, long lastModified) throws IOException {
+        String[] segments = path.split("/");
+        if (segments.length < 2) {
+            this.skipData(size);
+            return null;
+        }
+
+        String patchName = segments[segments.length - 2];
+        String fileName = segments[segments.length - 1];
+        boolean isMetadata = fileName.equals(patchName + METADATA_SUFFIX);
+        boolean isBand = fileName.startsWith(patchName + "_B") && fileName.endsWith(".tif");
+        if (!isMetadata && !isBand) {
+            this.skipData(size);
+            return null;
+        }
+
+        OpenPatch openPatch = this.openPatches.get(patchName);
+        if (openPatch == null) {
+            openPatch = new OpenPatch(patchName);
+            this.openPatches.put(patchName, openPatch);
+            this.evictOldestIfFull();
+        }
+
+        PatchFolder patchFolder = openPatch.patchFolder;
+        patchFolder.setLastModified(Math.max(patchFolder.getLastModified(), lastModified));
+        patchFolder.setSize(patchFolder.getSize() + size);
+
+        if (isMetadata) {
+            patchFolder.setMetadata(this.readData(size));
+        } else {
+            openPatch.bandImages++;
+            if (this.includeImages) {
+                String title = fileName.substring(0, fileName.length() - 4);
+                patchFolder.getPhotos().put(title, new Binary(BsonBinarySubType.BINARY, this.readData(size)));
+            } else {
+                this.skipData(size);
+            }
+        }
+
+        if (openPatch.bandImages == 12 && patchFolder.getMetadata() != null) {
+            this.openPatches.remove(patchName);
+            return patchFolder;
+        }
+        return null;
+    }
+
+    /**
+     * Drops the oldest incomplete patch if too many patches are open, keeping memory bounded.
+     */
+    private void evictOldestIfFull() {
+        if (this.openPatches.size() > MAX_OPEN_PATCHES) {
+            Iterator<String> oldest = this.openPatches.keySet().iterator();
+            System.out.println("ARCHIVE PATCH INCOMPLETE, SKIPPED: " + oldest.next());
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Reads the data of the current entry including its block padding.
+     * @param size size of the entry data
+     * @return entry data
+     * @throws IOException if the archive cannot be read
+     */
+    private byte[] readData(long size) throws IOException {
+        byte[] data = new byte[(int) size];
+        int read = 0;
+        while (read < data.length) {
+            int n = this.input.read(data, read, data.length - read);
+            if (n < 0) {
+                throw new EOFException("Truncated archive entry");
+            }
+            read += n;
+        }
+        this.skipFully(padding(size));
+        return data;
+    }
+
+    /**
+     * Skips the data of the current entry including its block padding.
+     * @param size size of the entry data
+     * @throws IOException if the archive cannot be read
+     */
+    private void skipData(long size) throws IOException {
+        this.skipFully(size + padding(size));
+    }
+
+    /**
+     * Skips exactly the given number of bytes.
+     * @param bytes number of bytes to skip
+     * @throws IOException if the archive ends prematurely
+     */
+    private void skipFully(long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = this.input.skip(bytes);
+            if (skipped <= 0) {
+                if (this.input.read() < 0) {
+                    throw new EOFException("Truncated archive entry");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    /**
+     * Reads a full block.
+     * @param block block buffer
+     * @return false if the archive ended before the block
+     * @throws IOException if the archive cannot be read
+     */
+    private boolean readBlock(byte[] block) throws IOException {
+        int read = 0;
+        while (read < block.length) {
+            int n = this.input.read(block, read, block.length - read);
+            if (n < 0) {
+                return false;
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of padding bytes following entry data of the given size.
+     * @param size size of the entry data
+     * @return number of padding bytes
+     */
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    /**
+     * Returns whether the block only contains zeros (end of archive marker).
+     * @param block header block
+     * @return whether the block is empty
+     */
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entry name of a header, including the ustar prefix.
+     * @param header header block
+     * @return entry name
+     */
+    private static String getName(byte[] header) {
+        String name = trimNull(new String(header, 0, 100, StandardCharsets.UTF_8));
+        boolean ustar = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+        String prefix = ustar ? trimNull(new String(header, 345, 155, StandardCharsets.UTF_8)) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Returns the path record of a PAX extended header.
+     * @param records PAX records ("length key=value\n")
+     * @return path or null if the header contains no path
+     */
+    private static String getPaxPath(String records) {
+        for (String record : records.split("\n")) {
+            int keyStart = record.indexOf(' ') + 1;
+            if (record.startsWith("path=", keyStart)) {
+                return record.substring(keyStart + 5);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an octal header field.
+     * @param header header block
+     * @param offset offset of the field
+     * @param length length of the field
+     * @return parsed value
+     */
+    static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Cuts a header string at its first null character.
+     * @param value header string
+     * @return trimmed string
+     */
+    private static String trimNull(String value) {
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    /**
+     * Patch whose entries are still being read.
+     */
+    private static class OpenPatch {
+
+        /**
+         * Ingestion state collecting the entries of the patch.
+         */
+        private final PatchFolder patchFolder;
+
+        /**
+         * Number of band images read so far.
+         */
+        private int bandImages;
+
+        /**
+         * Creates an open patch.
+         * @param patchName name of the image patch
+         */
+        private OpenPatch(String patchName) {
+            this.patchFolder = new PatchFolder(patchName, null);
+        }
+    }
+}
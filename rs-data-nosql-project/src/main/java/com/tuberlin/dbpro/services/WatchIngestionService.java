@@ -0,0 +1,341 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service for continuous ingestion: watches the data directory for new image patch folders and ingests each folder
+ * as soon as it is complete (12 band images plus the meta JSON file) and no file event arrived for the debounce
+ * interval. Only folders created while the application runs are watched; existing folders are covered by the
+ * (incremental) startup load.
+ */
+@Service
+public class WatchIngestionService {
+
+    /**
+     * Disk reading service instance ingesting the completed folders.
+     */
+    @Autowired
+    private DiskReadingService diskReadingService;
+
+    /**
+     * Whether the data directory is watched for new image patch folders.
+     */
+    @Value("${ingestion.watch:false}")
+    private boolean watch;
+
+    /**
+     * Location of the watched BigEarthNet data set folders.
+     */
+    @Value("${ingestion.data-path:../data}")
+    private String dataPath = "../data";
+
+    /**
+     * Time in ms without file events after which a complete folder is ingested.
+     */
+    @Value("${ingestion.watch-debounce-ms:1000}")
+    private long debounceMillis = 1000;
+
+    /**
+     * Time in ms without file events after which an incomplete folder is no longer watched.
+     */
+    @Value("${ingestion.watch-expiry-ms:600000}")
+    private long expiryMillis = 600000;
+
+    /**
+     * Maximum number of folders ingested (and written) together.
+     */
+    @Value("${ingestion.watch-batch-size:50}")
+    private int watchBatchSize = 50;
+
+    /**
+     * Watch service instance of the data directory and its new sub directories.
+     */
+    private WatchService watchService;
+
+    /**
+     * Watch keys of the observed image patch folders.
+     */
+    private final Map<Path, WatchKey> watchedFolders = new ConcurrentHashMap<>();
+
+    /**
+     * Image patch folders with recent file events and the time of their last event.
+     */
+    private final Map<Path, Long> pendingFolders = new ConcurrentHashMap<>();
+
+    /**
+     * Scheduler checking pending folders for completeness.
+     */
+    private ScheduledExecutorService debounceScheduler;
+
+    /**
+     * Whether a rescan of the data directory is queued on the debounce scheduler.
+     */
+    private final AtomicBoolean rescanPending = new AtomicBoolean();
+
+    /**
+     * Starts watching the data directory once the application is ready (enable with ingestion.watch=true).
+     * @throws IOException if the data directory cannot be watched
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWatching() throws IOException {
+        if (!this.watch) {
+            return;
+        }
+
+        Path root = Paths.get(this.dataPath);
+        this.watchService = root.getFileSystem().newWatchService();
+        root.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE);
+
+        // single thread: ingestion of completed folders and rescans after overflows never run concurrently
+        this.debounceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-watch-debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Thread watchThread = new Thread(() -> this.processEvents(root), "ingestion-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        long checkInterval = Math.max(100, this.debounceMillis / 2);
+        this.debounceScheduler.scheduleWithFixedDelay(this::ingestCompletedFolders, checkInterval, checkInterval,
+                TimeUnit.MILLISECONDS);
+
+        System.out.println("WATCHING FOR NEW IMAGE PATCHES IN: " + root.toAbsolutePath());
+    }
+
+    /**
+     * Stops watching on shutdown.
+     * @throws IOException if the watch service cannot be closed
+     */
+    @PreDestroy
+    void stopWatching() throws IOException {
+        if (this.debounceScheduler != null) {
+            this.debounceScheduler.shutdownNow();
+        }
+        if (this.watchService != null) {
+            this.watchService.close();
+        }
+    }
+
+    /**
+     * Event loop: registers new image patch folders and records the time of every file event within them.
+     * @param root watched data directory
+     */
+    private void processEvents(Path root) {
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                Path directory = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // events were lost: fall back to a single incremental scan of the data directory, run by
+                        // the debounce thread so event processing continues meanwhile
+                        if (this.rescanPending.compareAndSet(false, true)) {
+                            System.out.println("WATCH EVENTS OVERFLOWED - RESCANNING DATA DIRECTORY");
+                            this.debounceScheduler.execute(() -> this.rescan(root));
+                        }
+                        continue;
+                    }
+
+                    Path path = directory.resolve((Path) event.context());
+                    if (directory.equals(root)) {
+                        if (Files.isDirectory(path) && !this.watchedFolders.containsKey(path)) {
+                            this.watchedFolders.put(path, path.register(this.watchService,
+                                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                            this.markPending(path);
+                        }
+                    } else {
+                        this.markPending(directory);
+                    }
+                }
+
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // application shutting down
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records a file event within an image patch folder.
+     * @param folder image patch folder
+     */
+    void markPending(Path folder) {
+        this.pendingFolders.put(folder, System.currentTimeMillis());
+    }
+
+    /**
+     * Incrementally rescans the whole data directory after lost watch events.
+     * @param root watched data directory
+     */
+    private void rescan(Path root) {
+        this.rescanPending.set(false);
+        try {
+            File[] allObjects = root.toFile().listFiles();
+            if (allObjects != null) {
+                this.diskReadingService.readFiles(allObjects);
+            }
+        } catch (Exception e) {
+            // an exception must not cancel the debounce scheduler
+            System.out.println("WATCH RESCAN FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ingests all pending folders that are complete and received no file event for the debounce interval.
+     */
+    private void ingestCompletedFolders() {
+        try {
+            this.ingestPendingFolders();
+        } catch (Exception e) {
+            // an exception must not cancel the periodic task: failed patches are retried by the next incremental load
+            System.out.println("WATCH INGESTION FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ingests the complete and settled pending folders in batches. Deleted folders and folders that stay incomplete
+     * without events for the expiry interval are dropped, so they are not listed again on every check.
+     */
+    void ingestPendingFolders() {
+        long now = System.currentTimeMillis();
+        List<PatchFolder> batch = new ArrayList<>();
+
+        for (Map.Entry<Path, Long> pendingFolder : this.pendingFolders.entrySet()) {
+            if (now - pendingFolder.getValue() < this.debounceMillis) {
+                continue;
+            }
+
+            Path folder = pendingFolder.getKey();
+            File[] files = folder.toFile().listFiles();
+            if (files == null) {
+                if (this.unwatch(folder, pendingFolder.getValue())) {
+                    System.out.println("WATCH INGESTION SKIPPED DELETED FOLDER: " + folder);
+                }
+                continue;
+            }
+            if (!isCompletePatchFolder(folder.getFileName().toString(), files)) {
+                if (now - pendingFolder.getValue() >= this.expiryMillis &&
+                        this.unwatch(folder, pendingFolder.getValue())) {
+                    System.out.println("WATCH INGESTION GAVE UP ON INCOMPLETE FOLDER: " + folder);
+                }
+                continue; // still being written: wait for further events
+            }
+
+            if (this.unwatch(folder, pendingFolder.getValue())) {
+                PatchFolder patchFolder = DiskReadingService.scanPatchFolder(folder.toFile());
+                if (patchFolder != null) {
+                    batch.add(patchFolder);
+                } else {
+                    // deleted or changed after the completeness check
+                    System.out.println("WATCH INGESTION SKIPPED INCOMPLETE FOLDER: " + folder);
+                }
+            }
+
+            if (batch.size() >= this.watchBatchSize) {
+                this.ingest(batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            this.ingest(batch);
+        }
+    }
+
+    /**
+     * Stops watching a pending folder, unless a new file event arrived in the meantime.
+     * @param folder image patch folder
+     * @param lastEvent time of the last file event seen by the caller
+     * @return whether the folder was removed
+     */
+    private boolean unwatch(Path folder, Long lastEvent) {
+        if (!this.pendingFolders.remove(folder, lastEvent)) {
+            return false;
+        }
+        WatchKey key = this.watchedFolders.remove(folder);
+        if (key != null) {
+            key.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Ingests a batch of completed image patch folders.
+     * @param batch completed image patch folders
+     */
+    private void ingest(List<PatchFolder> batch) {
+        long start = System.currentTimeMillis();
+        long persisted = this.diskReadingService.ingestPatchFolders(batch);
+        System.out.println("WATCH INGESTION: " + persisted + " new image patches in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Returns whether the given files form a complete image patch folder: 12 band images and the meta JSON file.
+     * @param patchName name of the image patch (folder name)
+     * @param files files of the folder
+     * @return whether the folder is complete
+     */
+    static boolean isCompletePatchFolder(String patchName, File[] files) {
+        int bandImages = 0;
+        boolean metadata = false;
+
+        for (File file : files) {
+            if (DiskReadingService.isBandFile(patchName, file) && file.length() > 0) {
+                bandImages++;
+            } else if (DiskReadingService.isMetadataFile(patchName, file) && file.length() > 0) {
+                metadata = true;
+            }
+        }
+
+        return bandImages == 12 && metadata;
+    }
+
+    /**
+     * Returns the image patch folders waiting for completion.
+     * @return pending image patch folders
+     */
+    Set<Path> getPendingFolders() {
+        return this.pendingFolders.keySet();
+    }
+
+    /**
+     * Sets debounce interval for test compatibility (configured in production).
+     * @param debounceMillis time in ms without file events after which a complete folder is ingested
+     */
+    void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Sets expiry interval for test compatibility (configured in production).
+     * @param expiryMillis time in ms without file events after which an incomplete folder is no longer watched
+     */
+    void setExpiryMillis(long expiryMillis) {
+        this.expiryMillis = expiryMillis;
+    }
+}
@@ -24,6 +24,17 @@ Number of currently active labels in the drop-down section.
  */
 let n_dropdown_active = 0;
 
+/*
+Radius in screen pixels within which matching image patches are clustered by the server for visual queries.
+ */
+const clusterRadius = 60;
+
+/*
+Geometry of the last visual query (re-queried on zoom changes) and map layer of its results.
+ */
+let lastVisualQueryGeometry = null;
+let resultLayer = null;
+
 /*
 Initially filling the array of possible labels with all 44 available ones to be able to fill the dropdown fields later.
  */
@@ -97,6 +108,13 @@ function initializeMap() {
 
     });
 
+    // clusters depend on the zoom level: repeat the last visual query for the new zoom level
+    map.on('zoomend', function(e) {
+        if (lastVisualQueryGeometry !== null) {
+            sendVisualQuery(lastVisualQueryGeometry, map);
+        }
+    });
+
 
 
 
@@ -207,7 +225,10 @@ function sendVisualQuery(geoJsonGeometry, map) {
         'labels': selectedLabels.length > 0 ? selectedLabels : possible_labels,
         'queryType': $('input[name="query-option-radio"]:checked').val(),
         'geospatialQueryOperator': $('input[name="geospatial-option-radio"]:checked').val(),
+        'zoom': map.getZoom(),
+        'clusterRadius': clusterRadius,
     });
+    lastVisualQueryGeometry = geoJsonGeometry;
     console.log('POSTing as visual query: ', payload);
     const startMillis = Date.now()
 
@@ -234,7 +255,7 @@ function sendVisualQuery(geoJsonGeometry, map) {
 
             // render each result image patch name in output section
             $.each(result.patchNames, function(index, value){
-                if(value !== null && !value.startsWith("patch:")) {
+                if(value !== null && !value.startsWith("patch:") && !value.startsWith("cluster:")) {
                     const div = '<div>' + value + '</div>';
                     $('#' + outputPanelId).append($(div));
                 }
@@ -254,23 +275,33 @@ function sendVisualQuery(geoJsonGeometry, map) {
 
 }
 
+/*
+Draws the result of a visual query: server-side clusters ("cluster: lat;lon;count;labels") as circles sized by their
+number of image patches, individual image patches ("patch: name;lat;lon;labels") as markers.
+ */
 function drawMarkers(map, result){
-
-
-    var markers    = L.markerClusterGroup();
+    if (resultLayer !== null) {
+        map.removeLayer(resultLayer);
+    }
+    resultLayer = L.featureGroup();
+    var markers = L.markerClusterGroup();
 
     $.each(result.patchNames, function(index, value){
        if(value !== null && value.startsWith("patch:")) {
           var res = value.split(";");
           var popup = '<b>'+ res[3] +'</b>';
-          markers.addLayer(L.marker([res[1], res[2]] ) ).bindPopup( popup ).bindTooltip(res[0].substring(6, res[0].length));
-          //console.log(res[0] + "  markers.addLayer(L.marker([" + res[1] + " , " +  res[2] + "])).bindPopup( popup );");
+          markers.addLayer(L.marker([res[1], res[2]] ).bindPopup( popup ).bindTooltip(res[0].substring(6, res[0].length)));
+       } else if (value !== null && value.startsWith("cluster:")) {
+          var res = value.split(";");
+          var latLng = [parseFloat(res[0].substring(8, res[0].length)), parseFloat(res[1])];
+          resultLayer.addLayer(L.circleMarker(latLng, {radius: 8 + 4 * Math.log10(parseInt(res[2])), color: '#97009c'})
+              .bindPopup('<b>' + res[2] + ' image patches</b><br>' + res[3])
+              .bindTooltip(res[2]));
        }
     });
 
-     map.addLayer(markers);
-
-
+    resultLayer.addLayer(markers);
+    map.addLayer(resultLayer);
 }
 
 
@@ -0,0 +1,60 @@
+package com.tuberlin.dbpro.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class BandFileReaderTest {
+
+    private File createBandFile(Path root, String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(root.resolve(name), content).toFile();
+    }
+
+    private byte[] readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1000];
+        int read;
+        while ((read = input.read(chunk, 0, chunk.length)) >= 0) {
+            output.write(chunk, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    void testPooledBufferIsReusedAndGrown(@TempDir Path root) throws IOException {
+        File small = createBandFile(root, "S2A_MSIL2A_20170613T101031_0_45_B01.tif", 28800);
+        File large = createBandFile(root, "S2A_MSIL2A_20170613T101031_0_45_B02.tif", 200000);
+
+        ByteBuffer first = BandFileReader.read(small);
+        assertTrue("Band not read into a direct buffer!", first.isDirect() && first.remaining() == 28800);
+        try (InputStream content = BandFileReader.open(large)) {
+            assertTrue("Content of grown buffer differs from file!",
+                    Arrays.equals(readFully(content), Files.readAllBytes(large.toPath())));
+        }
+        try (InputStream content = BandFileReader.open(small)) {
+            assertTrue("Content of reused buffer differs from file!",
+                    Arrays.equals(readFully(content), Files.readAllBytes(small.toPath())));
+        }
+    }
+
+    @Test
+    void testLargeFileIsMapped(@TempDir Path root) throws IOException {
+        File large = createBandFile(root, "large.tif", BandFileReader.MAX_POOLED_SIZE + 1);
+
+        try (InputStream content = BandFileReader.open(large)) {
+            assertTrue("Content of mapped file differs from file!",
+                    Arrays.equals(readFully(content), Files.readAllBytes(large.toPath())));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.PatchImages;
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class BandStorageServiceTest {
+
+    private final GridFsTemplate gridFsTemplate = mock(GridFsTemplate.class);
+
+    private BandStorageService createService() {
+        BandStorageService bandStorageService = new BandStorageService();
+        bandStorageService.setGridFsTemplate(this.gridFsTemplate);
+        return bandStorageService;
+    }
+
+    private PatchFolder createPatchFolder(String... titles) {
+        PatchFolder patchFolder = new PatchFolder("P1", new File("P1"));
+        for (String title : titles) {
+            patchFolder.getPhotos().put(title, new Binary(new byte[]{1, 2, 3, 4}));
+        }
+        return patchFolder;
+    }
+
+    @Test
+    void testReplaceBands() throws IOException {
+        ObjectId b01 = new ObjectId();
+        ObjectId b02 = new ObjectId();
+        when(this.gridFsTemplate.store(any(InputStream.class), eq("P1_B01"), anyString(), any(Document.class)))
+                .thenReturn(b01);
+        when(this.gridFsTemplate.store(any(InputStream.class), eq("P1_B02"), anyString(), any(Document.class)))
+                .thenReturn(b02);
+
+        PatchImages patchImages = createService().storeBands(createPatchFolder("P1_B01", "P1_B02"), RasterCodec.TIFF);
+
+        assertTrue("Wrong file ids kept!", patchImages.getPatchName().equals("P1") &&
+                patchImages.getBandFileIds().size() == 2 &&
+                patchImages.getBandFileIds().get("P1_B01").equals(b01.toHexString()) &&
+                patchImages.getBandFileIds().get("P1_B02").equals(b02.toHexString()));
+
+        InOrder order = inOrder(this.gridFsTemplate);
+        ArgumentCaptor<Query> deleted = ArgumentCaptor.forClass(Query.class);
+        order.verify(this.gridFsTemplate).store(any(InputStream.class), eq("P1_B01"), anyString(), any(Document.class));
+        order.verify(this.gridFsTemplate).delete(deleted.capture());
+        Document criteria = deleted.getValue().getQueryObject();
+        assertTrue("Other bands deleted!", "P1_B01".equals(criteria.get("filename")));
+        assertTrue("New band deleted!", new Document("$ne", b01).equals(criteria.get("_id")));
+    }
+
+    @Test
+    void testFailedBandKeepsOldVersion() {
+        boolean failed = false;
+        try {
+            // not a TIFF file, so the raw raster encoding cannot be computed
+            createService().storeBands(createPatchFolder("P1_B01"), RasterCodec.UINT16);
+        } catch (IllegalArgumentException | IOException e) {
+            failed = true;
+        }
+
+        assertTrue("Invalid band stored!", failed);
+        verify(this.gridFsTemplate, never()).delete(any(Query.class));
+    }
+}
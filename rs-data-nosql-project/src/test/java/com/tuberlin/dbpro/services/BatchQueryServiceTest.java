@@ -0,0 +1,70 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.frontend.BatchResponse;
+import com.tuberlin.dbpro.models.frontend.InputRequest;
+import com.tuberlin.dbpro.models.frontend.OutputResponse;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class BatchQueryServiceTest {
+
+    private InputRequest createInputRequest(String label) {
+        InputRequest inputRequest = new InputRequest();
+        inputRequest.setQueryType("CONTAINS_SOME");
+        inputRequest.setGeospatialQueryOperator("GEO_INTERSECTS");
+        inputRequest.setLabels(Collections.singletonList(label));
+        return inputRequest;
+    }
+
+    @Test
+    void testBatch() {
+        QueryExecutionService executionService = new QueryExecutionService();
+        executionService.setThreads(4);
+        executionService.setQueueCapacity(16);
+        executionService.initializeExecutor();
+        BatchQueryService batchQueryService = new BatchQueryService();
+        batchQueryService.setQueryExecutionService(executionService);
+        batchQueryService.setConcurrency(3);
+        AtomicInteger queries = new AtomicInteger();
+
+        List<InputRequest> inputRequests = Arrays.asList(createInputRequest("Pastures"),
+                createInputRequest("FAIL"), createInputRequest("Beaches, dunes, sands"),
+                createInputRequest("Pastures"), createInputRequest("UNSUPPORTED"), null);
+        List<BatchResponse> responses = batchQueryService.execute(inputRequests,
+                inputRequest -> !"UNSUPPORTED".equals(inputRequest.getLabels().get(0)),
+                inputRequest -> {
+                    queries.incrementAndGet();
+                    String label = inputRequest.getLabels().get(0);
+                    if ("FAIL".equals(label)) {
+                        throw new IllegalStateException("query failed");
+                    }
+                    if ("Pastures".equals(label)) {
+                        try {
+                            // completes after the later sub-requests
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    OutputResponse response = new OutputResponse();
+                    response.setPatchNames(Collections.singletonList(label));
+                    return response;
+                }).collectList().block();
+
+        assertTrue("Batch is not answered completely!", responses.size() == inputRequests.size());
+        for (int i = 0; i < responses.size(); i++) {
+            assertTrue("Batch responses are out of order!", responses.get(i).getIndex() == i);
+        }
+        assertTrue("Identical sub-requests are executed twice!", queries.get() == 3);
+        assertTrue("Deduplicated sub-request has no response!",
+                responses.get(3).getResponse().getPatchNames().equals(Collections.singletonList("Pastures")));
+        assertTrue("Failing sub-request has no error!", "query failed".equals(responses.get(1).getError()));
+        assertTrue("Failing sub-request aborts the batch!", responses.get(2).getResponse() != null);
+        assertTrue("Unsupported sub-request is executed!", responses.get(4).getError() != null);
+        assertTrue("Missing sub-request is executed!", responses.get(5).getError() != null);
+    }
+}
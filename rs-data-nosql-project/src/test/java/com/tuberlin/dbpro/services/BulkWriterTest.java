@@ -0,0 +1,123 @@
+package com.tuberlin.dbpro.services;
+
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BasicDBObject;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class BulkWriterTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+
+    private BulkWriter<String> createWriter(int batchSize) {
+        when(this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, String.class))
+                .thenReturn(this.bulkOperations);
+        return new BulkWriter<>(this.mongoTemplate, String.class, "_id", document -> document, batchSize, 0);
+    }
+
+    @Test
+    void testBatching() {
+        when(this.bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+                Collections.emptyList()));
+        BulkWriter<String> writer = createWriter(2);
+        List<List<String>> committed = new ArrayList<>();
+        writer.addCommitListener(committed::add);
+
+        writer.write("a");
+        assertTrue("Incomplete batch written!", committed.isEmpty());
+        writer.write("b");
+        writer.write("c");
+        assertTrue("Full batch not written!", committed.size() == 1 &&
+                committed.get(0).equals(Arrays.asList("a", "b")));
+        writer.flush();
+        assertTrue("Remaining documents not flushed!", committed.size() == 2 &&
+                committed.get(1).equals(Collections.singletonList("c")));
+
+        verify(this.bulkOperations, times(2)).execute();
+        assertTrue("Wrong written count!", writer.getWrittenCount() == 3 && writer.getFailedCount() == 0);
+    }
+
+    @Test
+    void testFailedDocuments() {
+        com.mongodb.BulkWriteResult result = mock(com.mongodb.BulkWriteResult.class);
+        when(result.getUpserts()).thenReturn(Collections.singletonList(new com.mongodb.BulkWriteUpsert(2, "c")));
+        BulkWriteException exception = mock(BulkWriteException.class);
+        when(exception.getWriteResult()).thenReturn(result);
+        when(exception.getWriteErrors()).thenReturn(Collections.singletonList(
+                new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 1)));
+        BulkOperationException bulkOperationException = new BulkOperationException("failed", exception);
+        when(this.bulkOperations.execute()).thenThrow(bulkOperationException);
+
+        BulkWriter<String> writer = createWriter(3);
+        List<List<String>> committed = new ArrayList<>();
+        List<List<String>> inserted = new ArrayList<>();
+        writer.addCommitListener(committed::add);
+        writer.addInsertListener(inserted::add);
+        writer.write("a");
+        writer.write("b");
+        writer.write("c");
+
+        assertTrue("Failed document not reported!", writer.getFailedDocuments().equals(Collections.singletonList("b"))
+                && writer.getFailedCount() == 1 && writer.getWrittenCount() == 2);
+        assertTrue("Failed document committed!", committed.size() == 1 &&
+                committed.get(0).equals(Arrays.asList("a", "c")));
+        assertTrue("Inserted documents of a partially failed batch not mapped!", inserted.size() == 1 &&
+                inserted.get(0).equals(Collections.singletonList("c")));
+
+        assertTrue("New failed document not reported!",
+                writer.getNewFailedDocuments().equals(Collections.singletonList("b")));
+        assertTrue("Failed document reported twice!", writer.getNewFailedDocuments().isEmpty() &&
+                writer.getFailedDocuments().equals(Collections.singletonList("b")));
+    }
+
+    @Test
+    void testUpsertIndexes() {
+        when(this.bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, Arrays.asList(
+                new BulkWriteUpsert(0, new BsonString("a")), new BulkWriteUpsert(2, new BsonString("c")))));
+        BulkWriter<String> writer = createWriter(3);
+        List<List<String>> inserted = new ArrayList<>();
+        writer.addInsertListener(inserted::add);
+
+        writer.write("a");
+        writer.write("b");
+        writer.write("c");
+
+        assertTrue("Upsert indexes not mapped to the inserted documents!", inserted.size() == 1 &&
+                inserted.get(0).equals(Arrays.asList("a", "c")));
+    }
+
+    @Test
+    void testFailingListener() {
+        when(this.bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+                Collections.emptyList()));
+        BulkWriter<String> writer = createWriter(1);
+        List<List<String>> committed = new ArrayList<>();
+        writer.addCommitListener(documents -> {
+            throw new IllegalStateException("listener failed");
+        });
+        writer.addCommitListener(committed::add);
+
+        writer.write("a");
+
+        assertTrue("Failing listener stopped the other listeners!", committed.size() == 1);
+        assertTrue("Written document reported as failed!", writer.getWrittenCount() == 1 &&
+                writer.getFailedCount() == 0 && writer.getFailedDocuments().isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.tuberlin.dbpro.services;
+
+import org.junit.jupiter.api.Test;
+import org.osgeo.proj4j.BasicCoordinateTransform;
+import org.osgeo.proj4j.CRSFactory;
+import org.osgeo.proj4j.ProjCoordinate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class CoordinateTransformServiceTest {
+
+    private CoordinateTransformService coordinateTransformService = new CoordinateTransformService();
+
+    private ProjCoordinate transformDirectly(String srcCrs, double x, double y) {
+        CRSFactory factory = new CRSFactory();
+        BasicCoordinateTransform transform = new BasicCoordinateTransform(factory.createFromName("EPSG:" + srcCrs),
+                factory.createFromName("EPSG:4326"));
+        return transform.transform(new ProjCoordinate(x, y), new ProjCoordinate());
+    }
+
+    @Test
+    void testBatchTransformMatchesProj4j() {
+        double[] corners = {499980, 7046040, 501180, 7044840};
+        coordinateTransformService.transformToWgs84("32634", corners, 2);
+
+        ProjCoordinate upperLeft = transformDirectly("32634", 499980, 7046040);
+        ProjCoordinate lowerRight = transformDirectly("32634", 501180, 7044840);
+
+        assertTrue("Upper left corner transformed incorrectly!",
+                Math.abs(corners[0] - upperLeft.x) < 1e-12 && Math.abs(corners[1] - upperLeft.y) < 1e-12);
+        assertTrue("Lower right corner transformed incorrectly!",
+                Math.abs(corners[2] - lowerRight.x) < 1e-12 && Math.abs(corners[3] - lowerRight.y) < 1e-12);
+    }
+
+    @Test
+    void testTransformIsThreadSafe() throws Exception {
+        double[] expected = {499980, 7046040};
+        coordinateTransformService.transformToWgs84("32634", expected, 1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    // mix zones so cached transforms of several zones are used concurrently
+                    double[] other = {500000, 5000000};
+                    coordinateTransformService.transformToWgs84(j % 2 == 0 ? "32632" : "32633", other, 1);
+                    double[] corner = {499980, 7046040};
+                    coordinateTransformService.transformToWgs84("32634", corner, 1);
+                    if (corner[0] != expected[0] || corner[1] != expected[1]) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        pool.shutdown();
+
+        for (Future<Boolean> result : results) {
+            assertTrue("Concurrent transformation produced a different result!", result.get());
+        }
+    }
+}
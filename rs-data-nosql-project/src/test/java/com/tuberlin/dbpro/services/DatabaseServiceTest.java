@@ -2,10 +2,27 @@ package com.tuberlin.dbpro.services;
 
 import com.tuberlin.dbpro.models.database.GeoJson;
 import com.tuberlin.dbpro.models.database.Properties;
+import com.tuberlin.dbpro.models.database.LabelSummary;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import static com.tuberlin.dbpro.services.DatabaseService.getQueryCriteria;
 import static com.tuberlin.dbpro.services.DatabaseService.returnPatchNamesINI;
+import static com.tuberlin.dbpro.services.DatabaseService.summarize;
+import static com.tuberlin.dbpro.services.DatabaseService.toLabelSummary;
+import static com.tuberlin.dbpro.services.DatabaseService.toPatchSummary;
+import static com.tuberlin.dbpro.services.DatabaseService.withSummaryFields;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
 
 class DatabaseServiceTest {
@@ -47,4 +64,95 @@ class DatabaseServiceTest {
         returnedPatchNames = returnPatchNamesINI(geojsons);
         assertTrue("Empty result list mapping false!", returnedPatchNames.size() == 0);
     }
+
+    @Test
+    void testQueryCriteria() {
+        List<Character> labels = Arrays.asList('A', 'C');
+        GeoJsonPolygon polygon = new GeoJsonPolygon(new Point(0, 0), new Point(1, 0), new Point(1, 1),
+                new Point(0, 1), new Point(0, 0));
+
+        Document chars = getQueryCriteria("CONTAINS_ALL", labels, false, null, null).getCriteriaObject();
+        assertTrue("Character label criteria faulty!",
+                chars.get("properties.labels", Document.class).get("$all").equals(Arrays.asList("A", "C")));
+        assertTrue("Pure label criteria must not restrict the location!", !chars.containsKey("location"));
+
+        Document mask = getQueryCriteria("CONTAINS_SOME", labels, true, polygon, "GEO_WITHIN").getCriteriaObject();
+        assertTrue("Label mask criteria faulty!",
+                mask.get("properties.labelMask", Document.class).get("$bitsAnySet").equals(Arrays.asList(0, 2)));
+        assertTrue("Location criteria faulty!", mask.get("location", Document.class).containsKey("$geoWithin"));
+
+        Document only = getQueryCriteria("CONTAINS_ONLY", labels, true, polygon, "GEO_INTERSECTS")
+                .getCriteriaObject();
+        assertTrue("Label mask equality criteria faulty!", only.get("properties.labelMask").equals(5L));
+        assertTrue("Location criteria faulty!", only.get("location", Document.class).containsKey("$geoIntersects"));
+
+        assertTrue("No labels with CONTAINS_ALL must match nothing with the label mask!",
+                getQueryCriteria("CONTAINS_ALL", new ArrayList<>(), true, polygon, "GEO_INTERSECTS") == null);
+        assertTrue("No labels with CONTAINS_ALL must match nothing with character labels!",
+                getQueryCriteria("CONTAINS_ALL", new ArrayList<>(), false, polygon, "GEO_INTERSECTS") == null);
+
+        List<Character> allLabels = new ArrayList<>();
+        for (int i = 0; i < 44; i++) {
+            allLabels.add((char) (65 + i));
+        }
+        assertTrue("All labels with CONTAINS_ALL must match nothing!",
+                getQueryCriteria("CONTAINS_ALL", allLabels, false, null, null) == null);
+        assertTrue("All labels with CONTAINS_SOME must not filter labels!",
+                getQueryCriteria("CONTAINS_SOME", allLabels, false, null, null).getCriteriaObject().isEmpty());
+    }
+
+    @Test
+    void testSummaryProjection() {
+        Document fields = withSummaryFields(new Query()).getFieldsObject();
+        assertTrue("_id must be excluded!", fields.get("_id").equals(0));
+        assertTrue("Patch name must be projected!", fields.get("properties.patchName").equals(1));
+        assertTrue("Labels must be projected!", fields.get("properties.labels").equals(1));
+        assertTrue("Only the outer ring must be projected!",
+                fields.get("location.coordinates", Document.class).get("$slice").equals(1));
+
+        Document document = new Document("properties",
+                new Document("patchName", "S2A_MSIL2A_20170613T101031_0_57").append("labels", Arrays.asList("B", "F")))
+                .append("location", new Document("coordinates", Arrays.asList(Arrays.asList(
+                        Arrays.asList(21.5, 63.2), Arrays.asList(21.6, 63.2), Arrays.asList(21.6, 63.1)))));
+        PatchSummary summary = toPatchSummary(document);
+        assertTrue("Patch name mapping faulty!", summary.getPatchName().equals("S2A_MSIL2A_20170613T101031_0_57"));
+        assertTrue("Label mapping faulty!", summary.getLabels().equals(Arrays.asList('B', 'F')));
+        assertTrue("Upper left corner mapping faulty!",
+                summary.getLongitude() == 21.5 && summary.getLatitude() == 63.2);
+    }
+
+    @Test
+    void testLabelSummary() {
+        LabelSummary counted = summarize(Arrays.asList(
+                new PatchSummary("p1", Arrays.asList('A', 'C'), 0, 0),
+                new PatchSummary("p2", Arrays.asList('C'), 0, 0)));
+        assertTrue("Total faulty!", counted.getTotal() == 2);
+        assertTrue("Label counts faulty!", counted.getLabelCounts().get('A') == 1L
+                && counted.getLabelCounts().get('C') == 2L && counted.getLabelCounts().size() == 2);
+
+        Document result = new Document("total", Arrays.asList(new Document("total", 2)))
+                .append("labels", Arrays.asList(new Document("_id", "C").append("count", 2),
+                        new Document("_id", "A").append("count", 1)));
+        LabelSummary aggregated = toLabelSummary(result);
+        assertTrue("Aggregated summary mapping faulty!", aggregated.getTotal() == counted.getTotal()
+                && aggregated.getLabelCounts().equals(counted.getLabelCounts()));
+
+        LabelSummary empty = toLabelSummary(new Document("total", new ArrayList<>()).append("labels",
+                new ArrayList<>()));
+        assertTrue("Empty aggregation mapping faulty!", empty.getTotal() == 0 && empty.getLabelCounts().isEmpty());
+    }
+
+    @Test
+    void testLabelSummaryPipeline() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        TypeBasedAggregationOperationContext context = new TypeBasedAggregationOperationContext(GeoJson.class,
+                mappingContext, new QueryMapper(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext)));
+
+        List<Document> pipeline = DatabaseService.getLabelSummaryAggregation(
+                getQueryCriteria("CONTAINS_SOME", Arrays.asList('A'), false, null, null)).toPipeline(context);
+        assertTrue("Summary pipeline must match first!", pipeline.get(0).containsKey("$match"));
+        Document facet = pipeline.get(1).get("$facet", Document.class);
+        assertTrue("Summary pipeline must count and group labels!",
+                facet.containsKey("total") && facet.getList("labels", Document.class).size() == 3);
+    }
 }
@@ -29,6 +29,7 @@ class DiskReadingServiceTest {
     void testGetGeoJsonAndProjection(){
         LabelService labelService = new LabelService();
         diskReadingService.setLabelService(labelService);
+        diskReadingService.setCoordinateTransformService(new CoordinateTransformService());
         labelService.initializeLabelMap();
 
         List<String> labelList = new ArrayList<>();
@@ -50,7 +51,13 @@ class DiskReadingServiceTest {
 
         assertTrue("Wrong labels mapped!", geoJson.getProperties().getLabels().get(0).equals('B') &&
                 geoJson.getProperties().getLabels().size() == 1);
+        assertTrue("Label mask stored with the character label encoding!",
+                geoJson.getProperties().getLabelMask() == null);
 
         assertTrue("Projection did not work!", geoJson.getLocation() != null);
+        assertTrue("Geohash cells not computed!", geoJson.getProperties().getGeohashCells().contains(
+                GeohashCells.encode(geoJson.getLocation().getCoordinates().get(0).getCoordinates().get(0).getX(),
+                        geoJson.getLocation().getCoordinates().get(0).getCoordinates().get(0).getY(),
+                        GeohashCells.PRECISION)));
     }
 }
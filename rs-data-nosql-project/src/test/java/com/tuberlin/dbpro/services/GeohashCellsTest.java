@@ -0,0 +1,89 @@
+package com.tuberlin.dbpro.services;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Criteria;
+import java.util.Arrays;
+import java.util.List;
+import static com.tuberlin.dbpro.services.TestFixtures.createRectangle;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class GeohashCellsTest {
+
+    @Test
+    void testEncode() {
+        assertTrue("Wrong geohash!", "u4pru".equals(GeohashCells.encode(10.40744, 57.64911, 5)));
+        assertTrue("Wrong geohash!", "ezs42".equals(GeohashCells.encode(-5.6, 42.6, 5)));
+        assertTrue("Wrong coarse geohash!", "u".equals(GeohashCells.encode(10.40744, 57.64911, 1)));
+    }
+
+    @Test
+    void testPatchCells() {
+        // 1.2 x 1.2 km patch in Portugal
+        List<String> cells = GeohashCells.getCells(createRectangle(-8.5, 40.0, -8.486, 40.011));
+
+        assertTrue("Patch has too many cells!", cells.size() >= 1 && cells.size() <= 4);
+        assertTrue("Upper left corner cell missing!", cells.contains(GeohashCells.encode(-8.5, 40.011, 5)));
+        assertTrue("Lower right corner cell missing!", cells.contains(GeohashCells.encode(-8.486, 40.0, 5)));
+    }
+
+    @Test
+    void testCovering() {
+        GeohashCells.Covering small = GeohashCells.coverRectangle(new double[]{-8.6, 39.9, -8.3, 40.2});
+        assertTrue("Small rectangle not covered at full precision!", small.precision == GeohashCells.PRECISION);
+        assertTrue("Small rectangle has no interior cells!", !small.interior.isEmpty());
+        assertTrue("Small rectangle has no boundary cells!", !small.boundary.isEmpty());
+        assertTrue("Interior cell on the boundary!", !small.interior.contains(GeohashCells.encode(-8.6, 40.0, 5)));
+        assertTrue("Interior cell missing!", small.interior.contains(GeohashCells.encode(-8.45, 40.05, 5)));
+
+        GeohashCells.Covering large = GeohashCells.coverRectangle(new double[]{-10.0, 36.0, 0.0, 44.0});
+        assertTrue("Large rectangle not covered coarsely!", large.precision < GeohashCells.PRECISION);
+        assertTrue("Large rectangle has too many cells!",
+                large.interior.size() + large.boundary.size() <= GeohashCells.MAX_COVERING_CELLS);
+    }
+
+    @Test
+    void testEdgeAlignedCovering() {
+        // longitude -8.4375 and latitude 45.0 are cell edges at precision 5 (column 3904, row 3072)
+        double[] rectangle = {-8.4375, 45.0, -8.2, 45.3};
+        GeohashCells.Covering covering = GeohashCells.coverRectangle(rectangle);
+        String edgeCell = GeohashCells.encode(-8.3, 45.01, GeohashCells.PRECISION);
+        String cornerCell = GeohashCells.encode(-8.43, 45.01, GeohashCells.PRECISION);
+
+        assertTrue("Rectangle not covered at full precision!", covering.precision == GeohashCells.PRECISION);
+        assertTrue("Cell on the lower edge is interior!",
+                covering.boundary.contains(edgeCell) && !covering.interior.contains(edgeCell));
+        assertTrue("Cell on the left edge is interior!",
+                covering.boundary.contains(cornerCell) && !covering.interior.contains(cornerCell));
+
+        // a patch straddling the lower edge is excluded from the unrefined interior branch of GEO_WITHIN
+        List<String> patchCells = GeohashCells.getCells(createRectangle(-8.31, 44.99, -8.3, 45.01));
+        assertTrue("Straddling patch has no boundary cell!", patchCells.stream().anyMatch(covering.boundary::contains));
+    }
+
+    @Test
+    void testCellCriteria() {
+        GeoJsonPolygon rectangle = createRectangle(-8.6, 39.9, -8.3, 40.2);
+
+        Document intersects = GeohashCells.getCellCriteria(rectangle, "GEO_INTERSECTS").getCriteriaObject();
+        List<?> branches = intersects.getList("$or", Document.class);
+        assertTrue("Interior and boundary branches missing!", branches.size() == 2);
+        assertTrue("Interior cells are refined!", !((Document) branches.get(0)).containsKey("location"));
+        assertTrue("Boundary cells are not refined!", ((Document) branches.get(1)).containsKey("location"));
+
+        Document within = GeohashCells.getCellCriteria(rectangle, "GEO_WITHIN").getCriteriaObject();
+        Document interior = (Document) within.getList("$or", Document.class).get(0).get(GeohashCells.FIELD);
+        assertTrue("Patches crossing the boundary are accepted!", interior.containsKey("$nin"));
+
+        GeoJsonPolygon triangle = new GeoJsonPolygon(new Point(-8.6, 39.9), new Point(-8.3, 39.9),
+                new Point(-8.45, 40.2), new Point(-8.6, 39.9));
+        assertTrue("Non-rectangles are prefiltered!", GeohashCells.getCellCriteria(triangle, "GEO_WITHIN") == null);
+
+        Criteria criteria = DatabaseService.getQueryCriteria("CONTAINS_SOME", Arrays.asList('A'), false,
+                rectangle, "GEO_INTERSECTS", true);
+        assertTrue("Label and cell criteria not combined!", criteria.getCriteriaObject().containsKey("$and") &&
+                criteria.getCriteriaObject().containsKey("properties.labels"));
+    }
+}
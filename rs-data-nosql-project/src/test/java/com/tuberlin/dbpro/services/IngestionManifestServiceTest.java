@@ -0,0 +1,152 @@
+package com.tuberlin.dbpro.services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.IngestedPatch;
+import com.tuberlin.dbpro.models.database.PatchImages;
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import com.tuberlin.dbpro.repositories.IngestionManifestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import static com.tuberlin.dbpro.services.TestFixtures.createGeoJson;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class IngestionManifestServiceTest {
+
+    private final DatabaseService databaseService = mock(DatabaseService.class);
+
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+
+    private IngestionManifestService manifestService;
+
+    private PatchFolder createPatchFolder(String patchName, long lastModified, long size) {
+        PatchFolder patchFolder = new PatchFolder(patchName, new File(patchName));
+        patchFolder.setLastModified(lastModified);
+        patchFolder.setSize(size);
+        return patchFolder;
+    }
+
+    private IngestedPatch createIngestedPatch(String patchName, long lastModified, long size) {
+        IngestedPatch ingestedPatch = new IngestedPatch();
+        ingestedPatch.setPatchName(patchName);
+        ingestedPatch.setLastModified(lastModified);
+        ingestedPatch.setSize(size);
+        return ingestedPatch;
+    }
+
+    private IngestionManifestService createService(IngestedPatch... storedPatches) {
+        IngestionManifestRepository repository = mock(IngestionManifestRepository.class);
+        when(repository.findAll()).thenReturn(Arrays.asList(storedPatches));
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, IngestedPatch.class))
+                .thenReturn(this.bulkOperations);
+        when(this.bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0,
+                Collections.emptyList()));
+
+        this.manifestService = new IngestionManifestService();
+        this.manifestService.setIngestionManifestRepository(repository);
+        this.manifestService.setDatabaseService(this.databaseService);
+        this.manifestService.setMongoTemplate(mongoTemplate);
+        this.manifestService.initialize();
+        this.manifestService.load();
+        return this.manifestService;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<List<GeoJson>> captureGeoJsonListener() {
+        ArgumentCaptor<Consumer<List<GeoJson>>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.databaseService).addGeoJsonCommitListener(listener.capture());
+        return listener.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<List<PatchImages>> capturePatchImagesListener() {
+        ArgumentCaptor<Consumer<List<PatchImages>>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(this.databaseService).addPatchImagesCommitListener(listener.capture());
+        return listener.getValue();
+    }
+
+    private PatchImages createPatchImages(String patchName) {
+        PatchImages patchImages = new PatchImages();
+        patchImages.setPatchName(patchName);
+        return patchImages;
+    }
+
+    @AfterEach
+    void close() {
+        if (this.manifestService != null) {
+            this.manifestService.close();
+        }
+    }
+
+    @Test
+    void testIsUpToDate() {
+        IngestionManifestService manifestService = createService(createIngestedPatch("P1", 100, 10));
+
+        assertTrue("Unchanged patch not skipped!", manifestService.isUpToDate(createPatchFolder("P1", 100, 10)));
+        assertTrue("Modified patch skipped!", !manifestService.isUpToDate(createPatchFolder("P1", 200, 10)));
+        assertTrue("Resized patch skipped!", !manifestService.isUpToDate(createPatchFolder("P1", 100, 11)));
+        assertTrue("Unknown patch skipped!", !manifestService.isUpToDate(createPatchFolder("P2", 100, 10)));
+    }
+
+    @Test
+    void testPatchRecordedAfterAllDocuments() {
+        IngestionManifestService manifestService = createService();
+        Consumer<List<GeoJson>> geoJsonListener = captureGeoJsonListener();
+        Consumer<List<PatchImages>> patchImagesListener = capturePatchImagesListener();
+        PatchFolder complete = createPatchFolder("P1", 100, 10);
+        PatchFolder partial = createPatchFolder("P2", 100, 10);
+        manifestService.register(complete, 2);
+        manifestService.register(partial, 2);
+
+        geoJsonListener.accept(Arrays.asList(createGeoJson("P1", 21.0, 63.0, 'A'),
+                createGeoJson("P2", 22.0, 64.0, 'A')));
+        assertTrue("Patch recorded before all of its documents were committed!",
+                !manifestService.isUpToDate(complete) && !manifestService.isUpToDate(partial));
+
+        // the patch images of P2 are never committed, e.g. the load was interrupted
+        patchImagesListener.accept(Collections.singletonList(createPatchImages("P1")));
+        assertTrue("Committed patch not recorded!", manifestService.isUpToDate(complete));
+        assertTrue("Partially committed patch recorded!", !manifestService.isUpToDate(partial));
+
+        // documents of unregistered patches (e.g. a previous run) are ignored
+        geoJsonListener.accept(Collections.singletonList(createGeoJson("P3", 23.0, 65.0, 'A')));
+        assertTrue("Unregistered patch recorded!", !manifestService.isUpToDate(createPatchFolder("P3", 0, 0)));
+
+        manifestService.flush();
+        ArgumentCaptor<Object> written = ArgumentCaptor.forClass(Object.class);
+        verify(this.bulkOperations).replaceOne(any(Query.class), written.capture(), any(FindAndReplaceOptions.class));
+        assertTrue("Wrong manifest entries written!", written.getAllValues().size() == 1 &&
+                "P1".equals(((IngestedPatch) written.getValue()).getPatchName()));
+    }
+
+    @Test
+    void testLoadKeepsPendingPatches() {
+        IngestionManifestService manifestService = createService(createIngestedPatch("P1", 100, 10));
+        Consumer<List<GeoJson>> geoJsonListener = captureGeoJsonListener();
+        PatchFolder changed = createPatchFolder("P1", 200, 10);
+        manifestService.register(changed, 1);
+
+        // a concurrent ingestion run reloads the manifest before the changed patch is committed
+        manifestService.load();
+        geoJsonListener.accept(Collections.singletonList(createGeoJson("P1", 21.0, 63.0, 'A')));
+
+        assertTrue("Changed patch not recorded!", manifestService.isUpToDate(changed));
+        manifestService.load();
+        assertTrue("Reload replaced the recorded patch with the stored one!", manifestService.isUpToDate(changed));
+    }
+}
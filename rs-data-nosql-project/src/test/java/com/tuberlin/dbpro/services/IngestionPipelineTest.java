@@ -0,0 +1,121 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class IngestionPipelineTest {
+
+    private static final String[] BANDS = {"B01", "B02", "B03", "B04", "B05", "B06", "B07", "B08", "B09", "B11",
+            "B12", "B8A"};
+
+    private File createPatchFolder(Path root, String patchName) throws IOException {
+        Path folder = Files.createDirectory(root.resolve(patchName));
+        for (String band : BANDS) {
+            Files.createFile(folder.resolve(patchName + "_" + band + ".tif"));
+        }
+        Files.createFile(folder.resolve(patchName + "_labels_metadata.json"));
+        return folder.toFile();
+    }
+
+    @Test
+    void testScanPatchFolder(@TempDir Path root) throws IOException {
+        File folder = createPatchFolder(root, "S2A_MSIL2A_20170613T101031_0_57");
+        PatchFolder patchFolder = DiskReadingService.scanPatchFolder(folder);
+
+        assertTrue("Patch folder not recognized!", patchFolder != null);
+        assertTrue("Wrong patch name scanned!",
+                patchFolder.getPatchName().equals("S2A_MSIL2A_20170613T101031_0_57"));
+        assertTrue("Meta JSON file not sorted last!",
+                patchFolder.getMetadataFile().getName().endsWith("_labels_metadata.json"));
+        assertTrue("Wrong number of band files!", patchFolder.getBandFiles().length == 12);
+        assertTrue("Plain file accepted as patch folder!",
+                DiskReadingService.scanPatchFolder(Files.createFile(root.resolve("x.txt")).toFile()) == null);
+    }
+
+    @Test
+    void testAllPatchesPassAllStages(@TempDir Path root) throws Exception {
+        File[] folders = new File[50];
+        for (int i = 0; i < folders.length; i++) {
+            folders[i] = createPatchFolder(root, "S2A_MSIL2A_20170613T101031_0_" + i);
+        }
+
+        Set<String> read = ConcurrentHashMap.newKeySet();
+        Set<String> persisted = ConcurrentHashMap.newKeySet();
+        IngestionPipeline pipeline = new IngestionPipeline(
+                patchFolder -> read.add(patchFolder.getPatchName()),
+                patchFolder -> {
+                    if (patchFolder.getPatchName().endsWith("_13")) {
+                        throw new IllegalStateException("faulty patch");
+                    }
+                },
+                patchFolder -> persisted.add(patchFolder.getPatchName()),
+                3, 2, 2, 4);
+
+        long count = pipeline.run(Arrays.stream(folders).map(DiskReadingService::scanPatchFolder).iterator());
+
+        assertTrue("Not all patches were read!", read.size() == 50);
+        assertTrue("Faulty patch aborted or leaked into the load!",
+                count == 49 && persisted.size() == 49 && !persisted.contains("S2A_MSIL2A_20170613T101031_0_13"));
+    }
+
+    @Test
+    @Timeout(10)
+    void testDeadWorkerDoesNotHangThePipeline(@TempDir Path root) throws Exception {
+        File[] folders = new File[50];
+        for (int i = 0; i < folders.length; i++) {
+            folders[i] = createPatchFolder(root, "S2A_MSIL2A_20170613T101031_0_" + i);
+        }
+
+        // the only parse worker dies of an error, while the scan stage still has patches to hand over
+        Set<String> persisted = ConcurrentHashMap.newKeySet();
+        IngestionPipeline pipeline = new IngestionPipeline(
+                patchFolder -> { },
+                patchFolder -> {
+                    if (patchFolder.getPatchName().endsWith("_13")) {
+                        throw new OutOfMemoryError("band too large");
+                    }
+                },
+                patchFolder -> persisted.add(patchFolder.getPatchName()),
+                1, 1, 1, 2);
+
+        long count = pipeline.run(Arrays.stream(folders).map(DiskReadingService::scanPatchFolder).iterator());
+        assertTrue("Patches after the dead worker persisted!", count == persisted.size() && count <= 13);
+    }
+
+    @Test
+    @Timeout(10)
+    void testScanFailureEndsThePipeline() {
+        Iterator<PatchFolder> failingScan = new Iterator<PatchFolder>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public PatchFolder next() {
+                throw new IllegalStateException("unreadable archive");
+            }
+        };
+        IngestionPipeline pipeline = new IngestionPipeline(patchFolder -> { }, patchFolder -> { },
+                patchFolder -> { }, 2, 2, 2, 4);
+
+        boolean rethrown = false;
+        try {
+            pipeline.run(failingScan);
+        } catch (IllegalStateException | InterruptedException e) {
+            rethrown = e.getMessage().equals("unreadable archive");
+        }
+        assertTrue("Scan failure not rethrown!", rethrown);
+    }
+}
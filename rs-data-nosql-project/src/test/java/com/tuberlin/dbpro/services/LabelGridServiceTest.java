@@ -0,0 +1,63 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.LabelGridCell;
+import com.tuberlin.dbpro.models.frontend.OverviewCell;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static com.tuberlin.dbpro.services.TestFixtures.createGeoJson;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class LabelGridServiceTest {
+
+    @Test
+    void testAggregate() {
+        List<GeoJson> geoJsons = new ArrayList<>();
+        geoJsons.add(createGeoJson("P", 10.4, 57.6, 'A', 'B'));
+        geoJsons.add(createGeoJson("P", 10.4, 57.6, 'A'));
+        geoJsons.add(createGeoJson("P", -8.5, 40.0, 'C'));
+
+        Map<String, LabelGridCell> cells = LabelGridService.aggregate(geoJsons);
+        String finestCell = GeohashCells.encode(10.4, 57.6, GeohashCells.PRECISION);
+
+        assertTrue("Not one cell per patch location and level!", cells.size() == 2 * GeohashCells.PRECISION);
+        for (int level = 1; level <= GeohashCells.PRECISION; level++) {
+            LabelGridCell cell = cells.get(finestCell.substring(0, level));
+            assertTrue("Cell missing at level " + level + "!", cell != null && cell.getLevel() == level);
+            assertTrue("Wrong total!", cell.getTotal() == 2);
+            assertTrue("Wrong label counts!", cell.getLabels().get("A") == 2 && cell.getLabels().get("B") == 1);
+        }
+
+        Document increment = LabelGridService.getIncrement(cells.get(finestCell)).getUpdateObject();
+        Document inc = (Document) increment.get("$inc");
+        assertTrue("Total not incremented!", Long.valueOf(2).equals(inc.get("total")));
+        assertTrue("Labels not incremented!", Long.valueOf(1).equals(inc.get("labels.B")));
+        assertTrue("Level not set on insert!", increment.containsKey("$setOnInsert"));
+    }
+
+    @Test
+    void testOverviewCell() {
+        LabelService labelService = new LabelService();
+        labelService.initializeLabelMap();
+        LabelGridService labelGridService = new LabelGridService();
+        labelGridService.setLabelService(labelService);
+
+        LabelGridCell cell = LabelGridService
+                .aggregate(Collections.singletonList(createGeoJson("P", 10.4, 57.6, 'A', 'B')))
+                .get(GeohashCells.encode(10.4, 57.6, 3));
+        OverviewCell overviewCell = labelGridService.toOverviewCell(cell, Collections.singletonList('B'));
+
+        assertTrue("Cell bounds do not contain the patch!", overviewCell.getMinLongitude() <= 10.4 &&
+                overviewCell.getMaxLongitude() > 10.4 && overviewCell.getMinLatitude() <= 57.6 &&
+                overviewCell.getMaxLatitude() > 57.6);
+        assertTrue("Cell bounds do not match the level!",
+                Math.abs(overviewCell.getMaxLongitude() - overviewCell.getMinLongitude() - 360.0 / 256) < 1e-9);
+        assertTrue("Labels not restricted to the requested ones!", overviewCell.getLabels().size() == 1 &&
+                overviewCell.getLabels().containsKey(labelService.getDecodedCharacter('B')));
+        assertTrue("Wrong total!", overviewCell.getTotal() == 1);
+    }
+}
@@ -2,6 +2,7 @@ package com.tuberlin.dbpro.services;
 
 import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
 
@@ -22,4 +23,27 @@ class LabelServiceTest {
         assertTrue("Second label incorrectly mapped!", result.get(1).equals('c'));
         assertTrue("Empty label incorrectly mapped!", result.size() == 2);
     }
+
+    @Test
+    public void testLabelMask() {
+        List<Character> labels = new ArrayList<>();
+        labels.add('A');
+        labels.add('c');
+        labels.add('l');
+
+        long mask = LabelService.getLabelMask(labels);
+        long target = LabelService.getLabelMask(labels.subList(0, 2));
+
+        assertTrue("Label mask incorrectly built!", mask == (1L | 1L << 34 | 1L << 43));
+        assertTrue("Label mask incorrectly decoded!", LabelService.getLabelsFromMask(mask).equals(labels));
+        assertTrue("CONTAINS_ALL incorrectly evaluated!", LabelService.containsAll(mask, target) &&
+                !LabelService.containsAll(target, mask));
+        assertTrue("CONTAINS_SOME incorrectly evaluated!", LabelService.containsSome(target, 1L << 34) &&
+                !LabelService.containsSome(target, 1L << 43));
+        assertTrue("CONTAINS_ONLY incorrectly evaluated!", LabelService.containsOnly(mask, mask) &&
+                !LabelService.containsOnly(mask, target));
+
+        List<Object> stored = new ArrayList<>(Arrays.asList("A", "c", "l"));
+        assertTrue("Stored labels incorrectly migrated!", LabelMaskMigrationService.getLabelMask(stored) == mask);
+    }
 }
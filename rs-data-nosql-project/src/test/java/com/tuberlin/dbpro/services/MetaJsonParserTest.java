@@ -0,0 +1,40 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.MetaJson;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class MetaJsonParserTest {
+
+    private static final String META_JSON = "{\"labels\": [\"Sea and ocean\", \"Mixed forest\"], " +
+            "\"coordinates\": {\"ulx\": 499980, \"uly\": 7046040, \"lrx\": 501180.5, \"lry\": 7044840}, " +
+            "\"projection\": \"PROJCS[\\\"WGS 84 / UTM zone 34N\\\",GEOGCS[\\\"WGS 84\\\"," +
+            "AUTHORITY[\\\"EPSG\\\",\\\"4326\\\"]],PROJECTION[\\\"Transverse_Mercator\\\"]," +
+            "UNIT[\\\"metre\\\",1,AUTHORITY[\\\"EPSG\\\",\\\"9001\\\"]],AUTHORITY[\\\"EPSG\\\",\\\"32634\\\"]]\", " +
+            "\"tile_source\": \"S2A_MSIL1C_20170613T101031_N0205_R022_T34VER_20170613T101025.SAFE\", " +
+            "\"acquisition_date\": \"2017-06-13 10:10:31\"}";
+
+    @Test
+    void testParseNeededFields() throws IOException {
+        MetaJson metaJson = MetaJsonParser.parse(META_JSON.getBytes(StandardCharsets.UTF_8));
+
+        assertTrue("Labels parsed incorrectly!", metaJson.getLabels().size() == 2 &&
+                metaJson.getLabels().get(0).equals("Sea and ocean") &&
+                metaJson.getLabels().get(1).equals("Mixed forest"));
+        assertTrue("Coordinates parsed incorrectly!", metaJson.getCoordinates().getUlx() == 499980 &&
+                metaJson.getCoordinates().getUly() == 7046040 && metaJson.getCoordinates().getLrx() == 501180.5 &&
+                metaJson.getCoordinates().getLry() == 7044840);
+        assertTrue("EPSG code not taken from outermost AUTHORITY!", metaJson.getEpsgCode().equals("32634"));
+        assertTrue("Acquisition date parsed incorrectly!",
+                metaJson.getAcquisition_date().equals("2017-06-13 10:10:31"));
+        assertTrue("Unneeded field materialized!", metaJson.getTile_source() == null);
+    }
+
+    @Test
+    void testParseEpsgCodeFallback() {
+        assertTrue("EPSG code of short notation not parsed!",
+                MetaJsonParser.parseEpsgCode(".............EPSG:32632...").equals("32632"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class PatchClustersTest {
+
+    private List<PatchSummary> createSummaries() {
+        List<PatchSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            summaries.add(new PatchSummary("near_" + i, i % 2 == 0 ? Arrays.asList('A', 'B') : Arrays.asList('A'),
+                    10.0 + i * 0.001, 57.0));
+        }
+        for (int i = 0; i < 3; i++) {
+            summaries.add(new PatchSummary("far_" + i, Arrays.asList('C'), -8.5, 40.0 + i * 0.001));
+        }
+        return summaries;
+    }
+
+    @Test
+    void testCluster() {
+        List<PatchClusters.Cluster> clusters = PatchClusters.cluster(createSummaries(), 5, 60);
+
+        assertTrue("Not one cluster per grid cell!", clusters.size() == 2);
+        PatchClusters.Cluster near = clusters.get(0);
+        assertTrue("Wrong cluster size!", near.getPatches().size() == 20 && clusters.get(1).getPatches().size() == 3);
+        assertTrue("Wrong centroid!", Math.abs(near.getLongitude() - 10.0095) < 1e-9 && near.getLatitude() == 57.0);
+        assertTrue("Wrong label counts!", near.getLabelCounts().get('A') == 20 && near.getLabelCounts().get('B') == 10);
+
+        assertTrue("Crowded cell not clustered!", DatabaseService.isClustered(near, 5, 10));
+        assertTrue("Small cell clustered!", !DatabaseService.isClustered(clusters.get(1), 5, 10));
+        assertTrue("Cell clustered at the highest zoom level!",
+                !DatabaseService.isClustered(near, PatchClusters.MAX_ZOOM, 10));
+    }
+
+    @Test
+    void testZoomLevels() {
+        assertTrue("Patches 186 pixels apart share a cell!",
+                PatchClusters.cluster(createSummaries(), 18, 60).size() == 23);
+        assertTrue("Zoom level not clamped!", PatchClusters.cluster(createSummaries(), -3, 60).size() == 1);
+        assertTrue("Radius not clamped!", PatchClusters.cluster(createSummaries(), 5, 0).size() ==
+                PatchClusters.cluster(createSummaries(), 5, 1).size());
+    }
+}
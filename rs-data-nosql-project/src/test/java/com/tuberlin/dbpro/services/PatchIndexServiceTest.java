@@ -0,0 +1,107 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.LabelSummary;
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import static com.tuberlin.dbpro.services.TestFixtures.createGeoJson;
+import static com.tuberlin.dbpro.services.TestFixtures.createMongoTemplate;
+import static com.tuberlin.dbpro.services.TestFixtures.createRectangle;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class PatchIndexServiceTest {
+
+    private List<String> names(List<PatchSummary> summaries) {
+        return summaries.stream().map(PatchSummary::getPatchName).sorted().collect(Collectors.toList());
+    }
+
+    private PatchIndexService createIndex() {
+        PatchIndexService index = new PatchIndexService();
+        index.setMongoTemplate(createMongoTemplate(GeoJson.class, Arrays.asList(
+                createGeoJson("P1", 21.0, 63.0, 'A', 'c'),
+                createGeoJson("P2", 22.0, 64.0, 'A'),
+                createGeoJson("P3", 23.0, 65.0, 'c', 'l'))));
+        index.setEnabled(true);
+        index.load();
+        return index;
+    }
+
+    @Test
+    void testLabelQueries() {
+        PatchIndexService index = createIndex();
+
+        assertTrue("CONTAINS_ALL incorrectly answered!",
+                names(index.query("CONTAINS_ALL", Arrays.asList('A', 'c'))).equals(Arrays.asList("P1")));
+        assertTrue("CONTAINS_SOME incorrectly answered!",
+                names(index.query("CONTAINS_SOME", Arrays.asList('A', 'l')))
+                        .equals(Arrays.asList("P1", "P2", "P3")));
+        assertTrue("CONTAINS_ONLY incorrectly answered!",
+                names(index.query("CONTAINS_ONLY", Arrays.asList('A'))).equals(Arrays.asList("P2")));
+        assertTrue("Query without labels not handed back to the database!",
+                index.query("CONTAINS_ALL", Arrays.asList()) == null);
+    }
+
+    @Test
+    void testSummariesAndUpdates() {
+        PatchIndexService index = createIndex();
+        PatchSummary summary = index.query("CONTAINS_ONLY", Arrays.asList('c', 'l')).get(0);
+
+        assertTrue("Wrong summary materialized!", summary.getPatchName().equals("P3") &&
+                summary.getLabels().equals(Arrays.asList('c', 'l')) &&
+                summary.getLongitude() == 23.0 && summary.getLatitude() == 65.0);
+
+        // re-ingested patch with changed labels
+        index.addAll(Arrays.asList(createGeoJson("P3", 23.0, 65.0, 'A')));
+        assertTrue("Old labels of updated patch still indexed!",
+                index.query("CONTAINS_SOME", Arrays.asList('l')).isEmpty());
+        assertTrue("Updated patch duplicated!", index.all().size() == 3 &&
+                names(index.query("CONTAINS_ONLY", Arrays.asList('A'))).equals(Arrays.asList("P2", "P3")));
+    }
+
+    @Test
+    void testRectangleQueries() {
+        PatchIndexService index = createIndex();
+        GeoJsonPolygon rectangle = createRectangle(20.5, 62.0, 22.005, 64.5);
+
+        assertTrue("GEO_INTERSECTS incorrectly answered!",
+                names(index.query("CONTAINS_SOME", null, rectangle, "GEO_INTERSECTS"))
+                        .equals(Arrays.asList("P1", "P2")));
+        assertTrue("GEO_WITHIN incorrectly answered!",
+                names(index.query("CONTAINS_SOME", null, rectangle, "GEO_WITHIN")).equals(Arrays.asList("P1")));
+        assertTrue("Labels and rectangle incorrectly combined!",
+                names(index.query("CONTAINS_ALL", Arrays.asList('c'), rectangle, "GEO_INTERSECTS"))
+                        .equals(Arrays.asList("P1")));
+
+        GeoJsonPolygon triangle = new GeoJsonPolygon(new Point(20.5, 62.0), new Point(22.0, 62.0),
+                new Point(20.5, 64.5), new Point(20.5, 62.0));
+        assertTrue("Non-rectangular polygon not handed back to the database!",
+                index.query("CONTAINS_SOME", null, triangle, "GEO_INTERSECTS") == null);
+
+        // moved patch is found at its new location only
+        index.addAll(Arrays.asList(createGeoJson("P1", 40.0, 10.0, 'A', 'c')));
+        assertTrue("Moved patch found at its old location!",
+                names(index.query("CONTAINS_SOME", null, rectangle, "GEO_INTERSECTS")).equals(Arrays.asList("P2")));
+    }
+
+    @Test
+    void testLabelSummaries() {
+        PatchIndexService index = createIndex();
+
+        LabelSummary all = index.summarize("CONTAINS_SOME", null, null, "GEO_INTERSECTS", true);
+        assertTrue("Unrestricted summary incorrect!", all.getTotal() == 3 && all.getLabelCounts().get('A') == 2L
+                && all.getLabelCounts().get('c') == 2L && all.getLabelCounts().get('l') == 1L);
+
+        LabelSummary some = index.summarize("CONTAINS_SOME", Arrays.asList('l'), null, "GEO_INTERSECTS", true);
+        assertTrue("Label summary incorrect!", some.getTotal() == 1 && some.getLabelCounts().size() == 2
+                && some.getLabelCounts().get('c') == 1L && some.getLabelCounts().get('l') == 1L);
+
+        GeoJsonPolygon rectangle = createRectangle(20.5, 62.0, 22.005, 64.5);
+        LabelSummary only = index.summarize("CONTAINS_ONLY", Arrays.asList('A'), rectangle, "GEO_INTERSECTS", false);
+        assertTrue("Count incorrect!", only.getTotal() == 1 && only.getLabelCounts().isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package com.tuberlin.dbpro.services;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class PatchRTreeTest {
+
+    @Test
+    void testSearchMatchesLinearScan() {
+        int count = 20000;
+        Random random = new Random(42);
+        int[] ordinals = new int[count];
+        double[] minX = new double[count];
+        double[] minY = new double[count];
+        double[] maxX = new double[count];
+        double[] maxY = new double[count];
+        for (int i = 0; i < count; i++) {
+            ordinals[i] = i;
+            minX[i] = -10 + random.nextDouble() * 40;
+            minY[i] = 35 + random.nextDouble() * 30;
+            maxX[i] = minX[i] + 0.02;
+            maxY[i] = minY[i] + 0.01;
+        }
+        PatchRTree tree = new PatchRTree(ordinals, count, minX, minY, maxX, maxY);
+
+        for (int query = 0; query < 50; query++) {
+            double qMinX = -10 + random.nextDouble() * 40;
+            double qMinY = 35 + random.nextDouble() * 30;
+            double qMaxX = qMinX + random.nextDouble() * 3;
+            double qMaxY = qMinY + random.nextDouble() * 3;
+
+            for (boolean within : new boolean[]{false, true}) {
+                Set<Integer> expected = new TreeSet<>();
+                for (int i = 0; i < count; i++) {
+                    boolean match = within
+                            ? minX[i] >= qMinX && maxX[i] <= qMaxX && minY[i] >= qMinY && maxY[i] <= qMaxY
+                            : minX[i] <= qMaxX && maxX[i] >= qMinX && minY[i] <= qMaxY && maxY[i] >= qMinY;
+                    if (match) {
+                        expected.add(i);
+                    }
+                }
+
+                Set<Integer> found = new TreeSet<>();
+                tree.search(qMinX, qMinY, qMaxX, qMaxY, within, found::add);
+                assertTrue("R-tree result differs from linear scan!", found.equals(expected));
+            }
+        }
+    }
+
+    @Test
+    void testEmptyTree() {
+        PatchRTree tree = new PatchRTree(new int[0], 0, new double[0], new double[0], new double[0], new double[0]);
+        Set<Integer> found = new TreeSet<>();
+        tree.search(-180, -90, 180, 90, false, found::add);
+
+        assertTrue("Empty tree returned results!", found.isEmpty() && tree.size() == 0);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tuberlin.dbpro.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class QueryCacheServiceTest {
+
+    private GeoJsonPolygon createRectangle(double offset) {
+        return new GeoJsonPolygon(new Point(21.0 + offset, 63.0), new Point(22.0, 63.0), new Point(22.0, 64.0),
+                new Point(21.0 + offset, 64.0), new Point(21.0 + offset, 63.0));
+    }
+
+    @Test
+    void testCanonicalKey() {
+        String key = QueryCacheService.getCanonicalKey("CONTAINS_ALL", Arrays.asList('c', 'A', 'c'),
+                createRectangle(0), "GEO_WITHIN");
+
+        assertTrue("Label order or duplicates change the key!", key.equals(QueryCacheService.getCanonicalKey(
+                "CONTAINS_ALL", Arrays.asList('A', 'c'), createRectangle(0), "GEO_WITHIN")));
+        assertTrue("Rounded coordinates change the key!", key.equals(QueryCacheService.getCanonicalKey(
+                "CONTAINS_ALL", Arrays.asList('A', 'c'), createRectangle(0.0000001), "GEO_WITHIN")));
+        assertTrue("Different polygons share a key!", !key.equals(QueryCacheService.getCanonicalKey(
+                "CONTAINS_ALL", Arrays.asList('A', 'c'), createRectangle(0.001), "GEO_WITHIN")));
+        assertTrue("Different operators share a key!", !key.equals(QueryCacheService.getCanonicalKey(
+                "CONTAINS_ALL", Arrays.asList('A', 'c'), createRectangle(0), "GEO_INTERSECTS")));
+    }
+
+    @Test
+    void testHitsAndInvalidation() {
+        QueryCacheService cache = new QueryCacheService();
+        cache.setMaxBytes(1024 * 1024);
+        cache.initializeCache();
+        AtomicInteger queries = new AtomicInteger();
+
+        List<String> first = cache.get("CONTAINS_SOME", Arrays.asList('A'), null, null, () -> {
+            queries.incrementAndGet();
+            return Arrays.asList("patch: P1;63.0;21.0;Continuous urban fabric, ");
+        });
+        List<String> second = cache.get("CONTAINS_SOME", Arrays.asList('A'), null, null, () -> {
+            queries.incrementAndGet();
+            return Arrays.asList("patch: P2;63.0;21.0;Continuous urban fabric, ");
+        });
+        assertTrue("Repeated request not answered from the cache!", queries.get() == 1 && first.equals(second));
+        assertTrue("Cached bytes not estimated!", cache.getEstimatedBytes() > 0);
+
+        cache.bumpDatasetVersion();
+        List<String> third = cache.get("CONTAINS_SOME", Arrays.asList('A'), null, null, () -> {
+            queries.incrementAndGet();
+            return Arrays.asList("patch: P2;63.0;21.0;Continuous urban fabric, ");
+        });
+        assertTrue("Outdated result returned after ingestion!", queries.get() == 2 && third.get(0).contains("P2"));
+    }
+}
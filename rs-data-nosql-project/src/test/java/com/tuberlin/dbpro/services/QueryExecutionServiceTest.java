@@ -0,0 +1,88 @@
+package com.tuberlin.dbpro.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class QueryExecutionServiceTest {
+
+    private Object await(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return result.getResult();
+    }
+
+    private QueryExecutionService createService(int threads, int queueCapacity, long timeoutMillis) {
+        QueryExecutionService executionService = new QueryExecutionService();
+        executionService.setThreads(threads);
+        executionService.setQueueCapacity(queueCapacity);
+        executionService.setTimeoutMillis(timeoutMillis);
+        executionService.initializeExecutor();
+        return executionService;
+    }
+
+    private boolean hasStatus(Object result, HttpStatus status) {
+        return result instanceof ResponseEntity && ((ResponseEntity<?>) result).getStatusCode() == status;
+    }
+
+    @Test
+    void testQueryResult() throws InterruptedException {
+        QueryExecutionService executionService = createService(2, 2, 5000);
+
+        DeferredResult<Boolean> result = executionService.submit(() -> {
+            QueryContext context = QueryContext.current();
+            return context != null && !context.isCancelled() && context.getRemainingMillis() <= 5000;
+        });
+
+        assertTrue("Query does not run within a query context!", Boolean.TRUE.equals(this.await(result)));
+        assertTrue("Query context leaks to the calling thread!", QueryContext.current() == null);
+    }
+
+    @Test
+    void testDeadline() throws InterruptedException {
+        QueryExecutionService executionService = createService(1, 1, 50);
+
+        DeferredResult<String> result = executionService.submit(() -> {
+            while (true) {
+                QueryContext.current().checkActive();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return "interrupted";
+                }
+            }
+        });
+
+        assertTrue("Query past its deadline is not cancelled!",
+                this.hasStatus(this.await(result), HttpStatus.GATEWAY_TIMEOUT));
+    }
+
+    @Test
+    void testRejection() throws InterruptedException {
+        QueryExecutionService executionService = createService(1, 1, 5000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        DeferredResult<String> running = executionService.submit(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "running";
+        });
+        DeferredResult<String> queued = executionService.submit(() -> "queued");
+        DeferredResult<String> rejected = executionService.submit(() -> "rejected");
+
+        assertTrue("Query beyond the queue capacity is not rejected!",
+                this.hasStatus(rejected.getResult(), HttpStatus.SERVICE_UNAVAILABLE));
+        release.countDown();
+        assertTrue("Running query does not complete!", "running".equals(this.await(running)));
+        assertTrue("Queued query does not complete!", "queued".equals(this.await(queued)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static com.tuberlin.dbpro.services.TestFixtures.createGeoJson;
+import static com.tuberlin.dbpro.services.TestFixtures.createMongoTemplate;
+import static com.tuberlin.dbpro.services.TestFixtures.createRectangle;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class QueryPlannerServiceTest {
+
+    private QueryPlannerService createPlanner() {
+        // 1000 patches spread over 10 x 10 degrees, all with label 'A', every hundredth also with the rare 'B'
+        List<GeoJson> geoJsons = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double longitude = 10 + (i % 10) + 0.5;
+            double latitude = 50 + (i / 100) + 0.5;
+            geoJsons.add(i % 100 == 0 ? createGeoJson("P" + i, longitude, latitude, 'A', 'B')
+                    : createGeoJson("P" + i, longitude, latitude, 'A'));
+        }
+
+        QueryPlannerService planner = new QueryPlannerService();
+        planner.setMongoTemplate(createMongoTemplate(Document.class, Collections.emptyList()));
+        planner.setEnabled(true);
+        planner.load();
+        planner.addAll(geoJsons);
+        return planner;
+    }
+
+    @Test
+    void testEstimates() {
+        QueryPlannerService planner = createPlanner();
+
+        assertTrue("Label estimate incorrect!",
+                planner.estimateLabelMatches("CONTAINS_ALL", Arrays.asList('A', 'B')) == 10);
+        assertTrue("Label estimate incorrect!",
+                planner.estimateLabelMatches("CONTAINS_SOME", Arrays.asList('A', 'B')) == 1000);
+        assertTrue("Spatial estimate incorrect!",
+                planner.estimateSpatialMatches(createRectangle(10, 50, 20, 60)) == 1000);
+        assertTrue("Spatial estimate incorrect!",
+                planner.estimateSpatialMatches(createRectangle(10, 50, 10.5, 51)) == 5);
+    }
+
+    @Test
+    void testHints() {
+        QueryPlannerService planner = createPlanner();
+
+        assertTrue("Rare label not scanned first!", QueryPlannerService.LABEL_INDEX_HINT.equals(
+                planner.getHint("CONTAINS_ALL", Arrays.asList('B'), createRectangle(10, 50, 20, 60), false)));
+        assertTrue("Small area not scanned first!", QueryPlannerService.GEOSPATIAL_INDEX_HINT.equals(
+                planner.getHint("CONTAINS_ALL", Arrays.asList('A'), createRectangle(10, 50, 10.5, 51), false)));
+        assertTrue("Balanced query not sent to the compound index!", QueryPlannerService.COMPOUND_INDEX_HINT.equals(
+                planner.getHint("CONTAINS_ALL", Arrays.asList('A'), createRectangle(10, 50, 20, 60), false)));
+        assertTrue("Bitmask query hinted!",
+                planner.getHint("CONTAINS_ALL", Arrays.asList('B'), createRectangle(10, 50, 20, 60), true) == null);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.Photo;
+import com.tuberlin.dbpro.models.database.PatchImages;
+import org.bson.BsonBinarySubType;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class RasterCodecTest {
+
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 20;
+
+    private int pixel(int index) {
+        return (index * 977) % 65536; // covers values above Short.MAX_VALUE
+    }
+
+    private void writeEntry(ByteBuffer tiff, int tag, int type, int count, int value) {
+        tiff.putShort((short) tag).putShort((short) type).putInt(count);
+        if (type == 3 && count == 1) {
+            tiff.putShort((short) value).putShort((short) 0);
+        } else {
+            tiff.putInt(value);
+        }
+    }
+
+    // uncompressed 16-bit GeoTIFF with two strips and a 60 m pixel scale, like the BigEarthNet B01 band
+    private byte[] createTiff(ByteOrder order) {
+        int entries = 8;
+        int scaleOffset = 8 + 2 + entries * 12 + 4;
+        int offsetsOffset = scaleOffset + 24;
+        int countsOffset = offsetsOffset + 8;
+        int pixelOffset = countsOffset + 8;
+        int stripBytes = WIDTH * HEIGHT;
+
+        ByteBuffer tiff = ByteBuffer.allocate(pixelOffset + WIDTH * HEIGHT * 2).order(order);
+        tiff.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'))
+                .put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M')).putShort((short) 42).putInt(8);
+        tiff.putShort((short) entries);
+        writeEntry(tiff, 256, 3, 1, WIDTH);
+        writeEntry(tiff, 257, 3, 1, HEIGHT);
+        writeEntry(tiff, 258, 3, 1, 16);
+        writeEntry(tiff, 259, 3, 1, 1);
+        writeEntry(tiff, 273, 4, 2, offsetsOffset);
+        writeEntry(tiff, 277, 3, 1, 1);
+        writeEntry(tiff, 279, 4, 2, countsOffset);
+        writeEntry(tiff, 33550, 12, 3, scaleOffset);
+        tiff.putInt(0);
+        tiff.putDouble(60.0).putDouble(60.0).putDouble(0.0);
+        tiff.putInt(pixelOffset).putInt(pixelOffset + stripBytes);
+        tiff.putInt(stripBytes).putInt(stripBytes);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            tiff.putShort((short) pixel(i));
+        }
+        return tiff.array();
+    }
+
+    private boolean hasExpectedPixels(ShortBuffer pixels) {
+        if (pixels.remaining() != WIDTH * HEIGHT) {
+            return false;
+        }
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            if ((pixels.get(i) & 0xFFFF) != pixel(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void testDecodeLittleAndBigEndianTiff() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            RasterCodec.Raster raster = RasterCodec.decodeTiff(ByteBuffer.wrap(createTiff(order)));
+
+            assertTrue("Wrong raster size decoded!", raster.width == WIDTH && raster.height == HEIGHT);
+            assertTrue("Resolution not taken from pixel scale!", raster.resolution == 60.0);
+            assertTrue("Wrong pixels decoded from " + order + " TIFF!", hasExpectedPixels(
+                    RasterCodec.getPixels(raster.pixels, RasterCodec.UINT16, WIDTH * HEIGHT)));
+        }
+    }
+
+    @Test
+    void testDeflatedBandsRoundTripThroughPatchImages() {
+        Map<String, Binary> photoBuffer = new TreeMap<>();
+        photoBuffer.put("S2A_MSIL2A_20170613T101031_0_45_B01",
+                new Binary(BsonBinarySubType.BINARY, createTiff(ByteOrder.LITTLE_ENDIAN)));
+
+        PatchImages patchImages = DiskReadingService.getPatchImages(photoBuffer, RasterCodec.UINT16_DEFLATE);
+        Photo photo = patchImages.getPhotos()[0];
+
+        assertTrue("Raster metadata not stored!", photo.getWidth() == WIDTH && photo.getHeight() == HEIGHT &&
+                photo.getResolution() == 60.0 && RasterCodec.UINT16_DEFLATE.equals(photo.getEncoding()));
+        assertTrue("Deflated band not smaller than the TIFF!",
+                photo.getPhoto().length() < photoBuffer.values().iterator().next().length());
+        assertTrue("Wrong pixels read from deflated band!", hasExpectedPixels(RasterCodec.getPixels(photo)));
+    }
+
+    @Test
+    void testCompressedTiffRejected() {
+        byte[] tiff = createTiff(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer.wrap(tiff).order(ByteOrder.LITTLE_ENDIAN).putShort(10 + 3 * 12 + 8, (short) 5); // LZW
+
+        boolean rejected = false;
+        try {
+            RasterCodec.decodeTiff(ByteBuffer.wrap(tiff));
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue("Compressed TIFF accepted!", rejected);
+    }
+}
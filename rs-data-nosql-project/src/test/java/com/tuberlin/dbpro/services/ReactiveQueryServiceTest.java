@@ -0,0 +1,47 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.PatchSummary;
+import com.tuberlin.dbpro.models.frontend.InputRequest;
+import com.tuberlin.dbpro.models.frontend.PatchResponse;
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class ReactiveQueryServiceTest {
+
+    private ReactiveQueryService createService() {
+        LabelService labelService = new LabelService();
+        labelService.initializeLabelMap();
+        ReactiveQueryService reactiveQueryService = new ReactiveQueryService();
+        reactiveQueryService.setLabelService(labelService);
+        return reactiveQueryService;
+    }
+
+    @Test
+    void testPatchResponse() {
+        PatchResponse response = createService().toPatchResponse(
+                new PatchSummary("S2A_MSIL2A_20170613T101031_0_57", Arrays.asList('A', 'c'), 21.5, 63.2));
+
+        assertTrue("Patch response mapping faulty!", response.getPatchName().equals("S2A_MSIL2A_20170613T101031_0_57")
+                && response.getLatitude() == 63.2 && response.getLongitude() == 21.5);
+        LabelService labelService = new LabelService();
+        labelService.initializeLabelMap();
+        assertTrue("Labels not decoded!", response.getLabels().equals(Arrays.asList(
+                labelService.getDecodedCharacter('A'), labelService.getDecodedCharacter('c'))));
+    }
+
+    @Test
+    void testEmptyStream() {
+        LabelService labelService = new LabelService();
+        labelService.initializeLabelMap();
+        InputRequest inputRequest = new InputRequest();
+        inputRequest.setLabels(labelService.getLabels());
+        inputRequest.setQueryType("CONTAINS_ALL");
+
+        // no patch carries all 44 labels: answered without touching the database
+        ReactiveQueryService reactiveQueryService = createService();
+        reactiveQueryService.setDatabaseService(new DatabaseService());
+        assertTrue("Impossible query not answered empty!",
+                reactiveQueryService.streamPatches(inputRequest, null).count().block() == 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class TarPatchReaderTest {
+
+    private static final String[] BANDS = {"B01", "B02", "B03", "B04", "B05", "B06", "B07", "B08", "B09", "B11",
+            "B12", "B8A"};
+
+    private void writeOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+
+    private void writeEntry(ByteArrayOutputStream tar, String name, char type, byte[] data) {
+        byte[] header = new byte[512];
+        // like tar, move the leading directory into the ustar prefix field if the name does not fit
+        int split = name.length() > 100 ? name.indexOf('/') : -1;
+        byte[] prefixBytes = name.substring(0, Math.max(0, split)).getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name.substring(split + 1).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        System.arraycopy(prefixBytes, 0, header, 345, prefixBytes.length);
+        writeOctal(header, 100, 8, 0644);
+        writeOctal(header, 124, 12, data.length);
+        writeOctal(header, 136, 12, 1497348631L);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        tar.write(header, 0, 512);
+        tar.write(data, 0, data.length);
+        tar.write(new byte[(512 - data.length % 512) % 512], 0, (512 - data.length % 512) % 512);
+    }
+
+    private void writePatch(ByteArrayOutputStream tar, String patchName, int bands) {
+        writeEntry(tar, "BigEarthNet-v1.0/" + patchName + "/", '5', new byte[0]);
+        for (int i = 0; i < bands; i++) {
+            writeEntry(tar, "BigEarthNet-v1.0/" + patchName + "/" + patchName + "_" + BANDS[i] + ".tif", '0',
+                    new byte[700]);
+        }
+        writeEntry(tar, "BigEarthNet-v1.0/" + patchName + "/" + patchName + "_labels_metadata.json", '0',
+                "{\"labels\": []}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCompletePatchesAreGrouped() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writePatch(tar, "S2A_MSIL2A_20170613T101031_0_45", 12);
+        writePatch(tar, "S2A_MSIL2A_20170613T101031_0_46", 5);
+        writePatch(tar, "S2A_MSIL2A_20170613T101031_0_47", 12);
+        tar.write(new byte[1024], 0, 1024);
+
+        List<PatchFolder> patchFolders = new ArrayList<>();
+        try (TarPatchReader reader = new TarPatchReader(new ByteArrayInputStream(tar.toByteArray()), true)) {
+            reader.forEachRemaining(patchFolders::add);
+        }
+
+        assertTrue("Incomplete patch handed out or complete patch missing!", patchFolders.size() == 2);
+        assertTrue("Wrong patch name grouped!",
+                patchFolders.get(0).getPatchName().equals("S2A_MSIL2A_20170613T101031_0_45") &&
+                patchFolders.get(1).getPatchName().equals("S2A_MSIL2A_20170613T101031_0_47"));
+        assertTrue("Meta JSON not read!", new String(patchFolders.get(0).getMetadata(), StandardCharsets.UTF_8)
+                .equals("{\"labels\": []}"));
+        assertTrue("Band images not read!", patchFolders.get(0).getPhotos().size() == 12 &&
+                patchFolders.get(0).getPhotos().get("S2A_MSIL2A_20170613T101031_0_45_B8A").length() == 700);
+        assertTrue("Fingerprint not taken from entries!",
+                patchFolders.get(0).getLastModified() == 1497348631000L &&
+                patchFolders.get(0).getSize() == 12 * 700 + 14);
+    }
+
+    @Test
+    void testBandImagesSkippedWithoutImages() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writePatch(tar, "S2A_MSIL2A_20170613T101031_0_45", 12);
+
+        try (TarPatchReader reader = new TarPatchReader(new ByteArrayInputStream(tar.toByteArray()), false)) {
+            PatchFolder patchFolder = reader.next();
+            assertTrue("Band images buffered although not requested!", patchFolder.getPhotos().isEmpty());
+            assertTrue("End of archive not detected!", !reader.hasNext());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.database.GeoJson;
+import com.tuberlin.dbpro.models.database.Properties;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Documents and database doubles shared by the service tests.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Creates a 0.01 x 0.01 degree patch.
+     * @param patchName patch name
+     * @param longitude longitude of the upper left corner
+     * @param latitude latitude of the upper left corner
+     * @param labels character labels of the patch
+     * @return GeoJson object
+     */
+    static GeoJson createGeoJson(String patchName, double longitude, double latitude, Character... labels) {
+        Properties properties = new Properties();
+        properties.setPatchName(patchName);
+        properties.setLabels(Arrays.asList(labels));
+
+        GeoJson geoJson = new GeoJson();
+        geoJson.setProperties(properties);
+        geoJson.setLocation(createRectangle(longitude, latitude - 0.01, longitude + 0.01, latitude));
+        return geoJson;
+    }
+
+    /**
+     * Creates a rectangle starting at its upper left corner, like the patch locations.
+     * @param minX minimum longitude
+     * @param minY minimum latitude
+     * @param maxX maximum longitude
+     * @param maxY maximum latitude
+     * @return closed polygon
+     */
+    static GeoJsonPolygon createRectangle(double minX, double minY, double maxX, double maxY) {
+        Point upperLeft = new Point(minX, maxY);
+        return new GeoJsonPolygon(upperLeft, new Point(maxX, maxY), new Point(maxX, minY), new Point(minX, minY),
+                upperLeft);
+    }
+
+    /**
+     * Creates a mongo template streaming the passed documents for every query on their type.
+     * @param type document type
+     * @param documents streamed documents
+     * @param <T> document type
+     * @return mocked mongo template
+     */
+    static <T> MongoTemplate createMongoTemplate(Class<T> type, List<T> documents) {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.stream(any(Query.class), eq(type))).thenAnswer(invocation -> stream(documents));
+        when(mongoTemplate.stream(any(Query.class), eq(type), any())).thenAnswer(invocation -> stream(documents));
+        return mongoTemplate;
+    }
+
+    /**
+     * Wraps the passed documents in a database cursor.
+     * @param documents documents
+     * @param <T> document type
+     * @return closeable iterator over the documents
+     */
+    private static <T> CloseableIterator<T> stream(List<T> documents) {
+        Iterator<T> iterator = documents.iterator();
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package com.tuberlin.dbpro.services;
+
+import com.tuberlin.dbpro.models.diskreading.PatchFolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.springframework.test.util.AssertionErrors.assertFalse;
+import static org.springframework.test.util.AssertionErrors.assertTrue;
+
+class WatchIngestionServiceTest {
+
+    private static final String PATCH_NAME = "S2A_MSIL2A_20170613T101031_0_57";
+
+    private static final String[] BANDS = {"B01", "B02", "B03", "B04", "B05", "B06", "B07", "B08", "B09", "B11",
+            "B12", "B8A"};
+
+    @Test
+    void testCompletePatchFolder(@TempDir Path folder) throws IOException {
+        for (String band : BANDS) {
+            Files.write(folder.resolve(PATCH_NAME + "_" + band + ".tif"), new byte[]{1});
+        }
+
+        assertFalse("Folder without meta JSON considered complete!",
+                WatchIngestionService.isCompletePatchFolder(PATCH_NAME, folder.toFile().listFiles()));
+
+        Files.createFile(folder.resolve(PATCH_NAME + "_labels_metadata.json"));
+        assertFalse("Folder with empty meta JSON considered complete!",
+                WatchIngestionService.isCompletePatchFolder(PATCH_NAME, folder.toFile().listFiles()));
+
+        Files.write(folder.resolve(PATCH_NAME + "_labels_metadata.json"), "{}".getBytes());
+        assertTrue("Complete folder not recognized!",
+                WatchIngestionService.isCompletePatchFolder(PATCH_NAME, folder.toFile().listFiles()));
+    }
+
+    @Test
+    void testScanIgnoresLeftoverFiles(@TempDir Path root) throws IOException {
+        Path folder = Files.createDirectory(root.resolve(PATCH_NAME));
+        for (String band : BANDS) {
+            Files.write(folder.resolve(PATCH_NAME + "_" + band + ".tif"), new byte[]{1});
+        }
+        Files.write(folder.resolve(PATCH_NAME + "_B01.tif.part"), new byte[]{1});
+        Files.write(folder.resolve(PATCH_NAME + "_labels_metadata.json"), "{}".getBytes());
+
+        assertTrue("Complete folder with leftover file not recognized!",
+                WatchIngestionService.isCompletePatchFolder(PATCH_NAME, folder.toFile().listFiles()));
+        PatchFolder patchFolder = DiskReadingService.scanPatchFolder(folder.toFile());
+        assertTrue("Meta JSON file not selected by name!",
+                patchFolder.getMetadataFile().getName().equals(PATCH_NAME + "_labels_metadata.json"));
+        assertTrue("Band images not selected by name!", patchFolder.getBandFiles().length == 12 &&
+                patchFolder.getBandFiles()[0].getName().equals(PATCH_NAME + "_B01.tif") &&
+                patchFolder.getBandFiles()[11].getName().equals(PATCH_NAME + "_B8A.tif"));
+
+        Files.delete(folder.resolve(PATCH_NAME + "_B02.tif"));
+        assertTrue("Folder with missing band scanned!", DiskReadingService.scanPatchFolder(folder.toFile()) == null);
+    }
+
+    @Test
+    void testDeletedAndExpiredFoldersDropped(@TempDir Path root) throws IOException {
+        Path incomplete = Files.createDirectory(root.resolve(PATCH_NAME));
+        Files.write(incomplete.resolve(PATCH_NAME + "_B01.tif"), new byte[]{1});
+        Path deleted = root.resolve("S2A_MSIL2A_20170613T101031_0_58");
+        WatchIngestionService watchIngestionService = new WatchIngestionService();
+        watchIngestionService.setDebounceMillis(0);
+        watchIngestionService.markPending(incomplete);
+        watchIngestionService.markPending(deleted);
+
+        watchIngestionService.ingestPendingFolders();
+        assertTrue("Deleted folder still pending!", !watchIngestionService.getPendingFolders().contains(deleted));
+        assertTrue("Incomplete folder dropped before its expiry!",
+                watchIngestionService.getPendingFolders().contains(incomplete));
+
+        watchIngestionService.setExpiryMillis(0);
+        watchIngestionService.ingestPendingFolders();
+        assertTrue("Expired folder still pending!", watchIngestionService.getPendingFolders().isEmpty());
+    }
+}